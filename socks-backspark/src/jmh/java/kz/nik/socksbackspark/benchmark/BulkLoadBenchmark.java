@@ -0,0 +1,116 @@
+package kz.nik.socksbackspark.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.mapper.SocksMapperImpl;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.batch.SocksCopyLoader;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.inventory.InventoryCache;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports one CSV file of {@code rows} rows into PostgreSQL through {@code processCsvFile}, once with the chunked
+ * upsert pipeline and once with the COPY loader. Every invocation starts from an empty table. The score is the
+ * time per file; rows/s is {@code rows} divided by it. Needs Docker for the PostgreSQL container, e.g.
+ * {@code ./gradlew jmh -Pjmh.includes=BulkLoadBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BulkLoadBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"100000"})
+    public int distinctItems;
+
+    @Param({"upsert", "copy"})
+    public String loader;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private SocksServiceImpl socksService;
+    private MockMultipartFile csvFile;
+
+    @Setup
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        ApplicationEventPublisher eventPublisher = event -> {
+        };
+        SocksMetrics socksMetrics = new SocksMetrics(new SimpleMeterRegistry());
+        SocksRepository socksRepository = (SocksRepository) Proxy.newProxyInstance(
+                SocksRepository.class.getClassLoader(), new Class<?>[]{SocksRepository.class},
+                (proxy, method, args) -> {
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        socksService = new SocksServiceImpl(socksRepository, new SocksMapperImpl(),
+                new SocksUpsertEngine(jdbcTemplate, eventPublisher, 1000),
+                new SocksCopyLoader(dataSource, eventPublisher),
+                new InventoryCache(socksRepository, socksMetrics, false, 10000),
+                new InventoryIndex(socksRepository, false), eventPublisher, socksMetrics);
+        ReflectionTestUtils.setField(socksService, "batchLoader", loader);
+
+        StringBuilder csv = new StringBuilder("color,cottonPercentage,quantity\n");
+        for (int i = 0; i < rows; i++) {
+            int item = i % distinctItems;
+            csv.append("color-").append(item / 101).append(',').append(item % 101).append(',').append(i % 50 + 1)
+                    .append('\n');
+        }
+        csvFile = new MockMultipartFile("file", "socks.csv", "text/csv",
+                csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTable() {
+        jdbcTemplate.execute("TRUNCATE socks");
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public BatchImportResult importCsvFile() throws Exception {
+        return socksService.processCsvFile(csvFile);
+    }
+}
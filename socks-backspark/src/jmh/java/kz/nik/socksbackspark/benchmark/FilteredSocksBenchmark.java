@@ -0,0 +1,124 @@
+package kz.nik.socksbackspark.benchmark;
+
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex.CottonRange;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex.Order;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@code GET /api/socks} filters answered by {@link InventoryIndex} with the repository path: the query
+ * the derived repository method runs against PostgreSQL, followed by the {@code Comparator} sort done in
+ * {@code SocksServiceImpl}. Needs Docker for the PostgreSQL container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilteredSocksBenchmark {
+
+    private static final String SELECT = "SELECT id, color, cotton_percentage, quantity FROM socks ";
+
+    private static final RowMapper<Socks> SOCKS_ROW_MAPPER = (resultSet, rowNum) -> new Socks(
+            resultSet.getLong("id"), resultSet.getString("color"), resultSet.getInt("cotton_percentage"),
+            resultSet.getInt("quantity"));
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private PostgreSQLContainer<?> postgres;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private InventoryIndex inventoryIndex;
+
+    @Setup
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+        dataSource = new SingleConnectionDataSource(postgres.getJdbcUrl(), postgres.getUsername(),
+                postgres.getPassword(), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("CREATE TABLE socks (id bigserial PRIMARY KEY, color varchar(255), " +
+                "cotton_percentage integer NOT NULL, quantity integer NOT NULL, " +
+                "UNIQUE (color, cotton_percentage))");
+        List<Object[]> values = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            values.add(new Object[]{"color-" + (i / 101), i % 101, i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO socks (color, cotton_percentage, quantity) VALUES (?, ?, ?)", values);
+        jdbcTemplate.execute("ANALYZE socks");
+
+        List<Socks> catalogue = jdbcTemplate.query(SELECT, SOCKS_ROW_MAPPER);
+        inventoryIndex = new InventoryIndex(repositoryReturning(catalogue), true);
+        inventoryIndex.load();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public List<Socks> repositoryCottonGreaterThanSortedByColor() {
+        List<Socks> socks = jdbcTemplate.query(SELECT + "WHERE cotton_percentage > ?", SOCKS_ROW_MAPPER, 60);
+        socks.sort(Comparator.comparing(Socks::getColor));
+        return socks;
+    }
+
+    @Benchmark
+    public List<Socks> indexCottonGreaterThanSortedByColor() {
+        return inventoryIndex.query(null, CottonRange.greaterThan(60), Order.COLOR_ASC).orElseThrow();
+    }
+
+    @Benchmark
+    public List<Socks> repositoryColorSortedByCottonDesc() {
+        List<Socks> socks = jdbcTemplate.query(SELECT + "WHERE color = ?", SOCKS_ROW_MAPPER, "color-3");
+        socks.sort(Comparator.comparingInt(Socks::getCottonPercentage).reversed());
+        return socks;
+    }
+
+    @Benchmark
+    public List<Socks> indexColorSortedByCottonDesc() {
+        return inventoryIndex.query("color-3", CottonRange.all(), Order.COTTON_DESC).orElseThrow();
+    }
+
+    @Benchmark
+    public List<Socks> repositoryCottonBetween() {
+        return jdbcTemplate.query(SELECT + "WHERE cotton_percentage BETWEEN ? AND ?", SOCKS_ROW_MAPPER, 40, 45);
+    }
+
+    @Benchmark
+    public List<Socks> indexCottonBetween() {
+        return inventoryIndex.query(null, CottonRange.between(40, 45), Order.NONE).orElseThrow();
+    }
+
+    private static SocksRepository repositoryReturning(List<Socks> catalogue) {
+        return (SocksRepository) Proxy.newProxyInstance(SocksRepository.class.getClassLoader(),
+                new Class<?>[]{SocksRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findAll") && method.getParameterCount() == 0) {
+                        return catalogue;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
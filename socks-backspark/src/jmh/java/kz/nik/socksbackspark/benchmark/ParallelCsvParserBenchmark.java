@@ -0,0 +1,61 @@
+package kz.nik.socksbackspark.benchmark;
+
+import kz.nik.socksbackspark.service.batch.ParallelCsvParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link ParallelCsvParser} with the number of threads on a generated supplier file, parsing only (no
+ * database). Every 100th color is quoted and contains a newline, so the boundary scan has quoted records to step
+ * over. Run with {@code ./gradlew jmh -Pjmh.includes=ParallelCsvParserBenchmark}; the speed-up is the 1-thread
+ * score divided by the n-thread score on the same machine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelCsvParserBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"5000000"})
+    public int rows;
+
+    private Path csvFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        csvFile = Files.createTempFile("socks-benchmark-", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8)) {
+            writer.write("color,cottonPercentage,quantity\n");
+            for (int i = 0; i < rows; i++) {
+                String color = i % 100 == 0 ? "\"color\n" + i % 1000 + "\"" : "color-" + i % 1000;
+                writer.write(color + "," + i % 101 + "," + (i % 50 + 1) + "\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(csvFile);
+    }
+
+    @Benchmark
+    public ParallelCsvParser.Result parse() throws Exception {
+        return new ParallelCsvParser(threads).parse(csvFile);
+    }
+}
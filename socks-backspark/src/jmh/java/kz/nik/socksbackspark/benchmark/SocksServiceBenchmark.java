@@ -0,0 +1,167 @@
+package kz.nik.socksbackspark.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksPage;
+import kz.nik.socksbackspark.mapper.SocksMapper;
+import kz.nik.socksbackspark.mapper.SocksMapperImpl;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.inventory.InventoryCache;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline for the CPU-bound hot paths of {@link SocksServiceImpl}, with the repository stubbed in memory and
+ * the upsert statements discarded, so no database is needed:
+ * <ul>
+ *     <li>{@code getAllSocks} served from the inventory cache, by page number and by cursor, including the
+ *     mapping of the page;</li>
+ *     <li>{@code SocksMapper.toDtoList} over the whole catalogue;</li>
+ *     <li>CSV and XLSX parsing in {@code processCsvFile} and {@code processExcelFile}, up to the upsert.</li>
+ * </ul>
+ * Run with {@code ./gradlew jmh} and compare the results with the previous release.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SocksServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private List<Socks> catalogue;
+    private SocksMapper socksMapper;
+    private SocksServiceImpl socksService;
+    private MockMultipartFile csvFile;
+    private MockMultipartFile excelFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        catalogue = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            // ids are a permutation of the (color, cottonPercentage) order, so the sorts have real work to do
+            catalogue.add(new Socks((long) (i * 7919 % rows) + 1, "color-" + i / 101, i % 101, i));
+        }
+
+        ApplicationEventPublisher eventPublisher = event -> {
+        };
+        SocksMetrics socksMetrics = new SocksMetrics(new SimpleMeterRegistry());
+        socksMapper = new SocksMapperImpl();
+        SocksRepository socksRepository = repositoryReturning(catalogue);
+        socksService = new SocksServiceImpl(socksRepository, socksMapper,
+                new SocksUpsertEngine(new DiscardingJdbcTemplate(), eventPublisher, 1000), null,
+                new InventoryCache(socksRepository, socksMetrics, true, rows),
+                new InventoryIndex(socksRepository, false), eventPublisher, socksMetrics);
+
+        csvFile = new MockMultipartFile("file", "socks.csv", "text/csv", csv());
+        excelFile = new MockMultipartFile("file", "socks.xlsx",
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", xlsx());
+    }
+
+    @Benchmark
+    public SocksPage listPageFromCache() {
+        return socksService.getAllSocks(null, rows / 200, 100);
+    }
+
+    @Benchmark
+    public SocksPage listAfterCursorFromCache() {
+        return socksService.getAllSocks((long) rows / 2, 0, 100);
+    }
+
+    @Benchmark
+    public List<SocksDto> mapCatalogueToDtos() {
+        return socksMapper.toDtoList(catalogue);
+    }
+
+    @Benchmark
+    public BatchImportResult parseCsvFile() throws Exception {
+        return socksService.processCsvFile(csvFile);
+    }
+
+    @Benchmark
+    public BatchImportResult parseExcelFile() throws Exception {
+        return socksService.processExcelFile(excelFile);
+    }
+
+    private byte[] csv() {
+        StringBuilder csv = new StringBuilder("color,cottonPercentage,quantity\n");
+        for (Socks sock : catalogue) {
+            csv.append(sock.getColor()).append(',').append(sock.getCottonPercentage()).append(',')
+                    .append(sock.getQuantity()).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] xlsx() throws Exception {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook();
+             ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("color");
+            header.createCell(1).setCellValue("cottonPercentage");
+            header.createCell(2).setCellValue("quantity");
+            for (int i = 0; i < catalogue.size(); i++) {
+                Socks sock = catalogue.get(i);
+                Row row = sheet.createRow(i + 1);
+                row.createCell(0).setCellValue(sock.getColor());
+                row.createCell(1).setCellValue(sock.getCottonPercentage());
+                row.createCell(2).setCellValue(sock.getQuantity());
+            }
+            workbook.write(outputStream);
+            workbook.dispose();
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static SocksRepository repositoryReturning(List<Socks> catalogue) {
+        return (SocksRepository) Proxy.newProxyInstance(SocksRepository.class.getClassLoader(),
+                new Class<?>[]{SocksRepository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findAll") && method.getParameterCount() == 0) {
+                        return catalogue;
+                    }
+                    if (method.getName().equals("findAll") && method.getParameterCount() == 1
+                            && args[0] instanceof Pageable pageable) {
+                        return new PageImpl<>(catalogue, pageable, catalogue.size());
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Accepts the upsert statements without running them, so the file benchmarks stop at the database.
+     */
+    private static class DiscardingJdbcTemplate extends JdbcTemplate {
+        @Override
+        public int update(PreparedStatementCreator psc) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package kz.nik.socksbackspark.loadtest;
+
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.SocksService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent clients add stock to a handful of hot items through the service and the throughput is printed.
+ * Run with:
+ * <pre>./gradlew loadTest --tests '*HotItemIncomeLoadTest' [-PloadTest.hotItems.clients=64]
+ * [-PloadTest.hotItems.incomesPerClient=200]</pre>
+ * Needs Docker.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.root=WARN"
+})
+@Testcontainers(disabledWithoutDocker = true)
+public class HotItemIncomeLoadTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final String[] HOT_COLORS = {"red", "blue", "green", "black", "white"};
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+    }
+
+    @Test
+    void runConcurrentIncomesOnHotItems() throws Exception {
+        int clientCount = Integer.getInteger("loadTest.hotItems.clients", 64);
+        int incomesPerClient = Integer.getInteger("loadTest.hotItems.incomesPerClient", 200);
+        ExecutorService executor = Executors.newFixedThreadPool(clientCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> clients = new ArrayList<>();
+
+        try {
+            for (int client = 0; client < clientCount; client++) {
+                int offset = client;
+                clients.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < incomesPerClient; i++) {
+                        String color = HOT_COLORS[(offset + i) % HOT_COLORS.length];
+                        socksService.addSocks(new SocksDto(null, color, 80, 1));
+                    }
+                    return null;
+                }));
+            }
+
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> client : clients) {
+                client.get(5, TimeUnit.MINUTES);
+            }
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+
+            int total = clientCount * incomesPerClient;
+            System.out.printf("%d incomes from %d clients on %d items in %d ms: %d incomes/s%n", total, clientCount,
+                    HOT_COLORS.length, elapsedMillis, total * 1000L / elapsedMillis);
+
+            List<Socks> socks = socksRepository.findAll();
+            assertEquals(HOT_COLORS.length, socks.size());
+            assertEquals(total, socks.stream().mapToInt(Socks::getQuantity).sum());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
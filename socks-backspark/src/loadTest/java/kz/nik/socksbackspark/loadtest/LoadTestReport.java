@@ -0,0 +1,120 @@
+package kz.nik.socksbackspark.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latency samples of one load-test run and their summary as a JSON report. Each worker thread records into its
+ * own report and the reports are merged at the end, so recording needs no synchronization.
+ * <p>
+ * Keys are written in a fixed order, so the reports of two builds can be compared with a plain {@code diff}.
+ */
+public class LoadTestReport {
+
+    private static final ObjectMapper REPORT_MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+
+    private final Map<String, Samples> samples = new TreeMap<>();
+
+    public void record(String operation, long latencyNanos, boolean success) {
+        samples.computeIfAbsent(operation, key -> new Samples()).add(latencyNanos, success);
+    }
+
+    public void merge(LoadTestReport other) {
+        other.samples.forEach((operation, otherSamples) ->
+                samples.computeIfAbsent(operation, key -> new Samples()).addAll(otherSamples));
+    }
+
+    public long getErrors() {
+        return samples.values().stream().mapToLong(operationSamples -> operationSamples.errors).sum();
+    }
+
+    public void write(File file, Map<String, Object> settings, double elapsedSeconds) throws IOException {
+        Map<String, Object> operations = new TreeMap<>();
+        Samples all = new Samples();
+        samples.forEach((operation, operationSamples) -> {
+            operations.put(operation, operationSamples.summary(elapsedSeconds));
+            all.addAll(operationSamples);
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("finishedAt", Instant.now().toString());
+        report.put("settings", settings);
+        report.put("elapsedSeconds", round(elapsedSeconds));
+        report.put("total", all.summary(elapsedSeconds));
+        report.put("operations", operations);
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create report directory " + directory);
+        }
+        REPORT_MAPPER.writeValue(file, report);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static final class Samples {
+
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+
+        void add(long latencyNanos, boolean success) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        Map<String, Object> summary(double elapsedSeconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+
+            Map<String, Object> latencyMillis = new LinkedHashMap<>();
+            latencyMillis.put("p50", percentile(sorted, 50));
+            latencyMillis.put("p95", percentile(sorted, 95));
+            latencyMillis.put("p99", percentile(sorted, 99));
+            latencyMillis.put("max", size > 0 ? round(sorted[size - 1] / 1_000_000.0) : 0.0);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", size);
+            summary.put("errors", errors);
+            summary.put("errorRate", size > 0 ? round(100.0 * errors / size) / 100.0 : 0.0);
+            summary.put("throughputPerSecond", elapsedSeconds > 0 ? round(size / elapsedSeconds) : 0.0);
+            summary.put("latencyMillis", latencyMillis);
+            return summary;
+        }
+
+        /**
+         * Nearest-rank percentile in milliseconds.
+         */
+        private static double percentile(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return round(sorted[Math.max(rank - 1, 0)] / 1_000_000.0);
+        }
+    }
+}
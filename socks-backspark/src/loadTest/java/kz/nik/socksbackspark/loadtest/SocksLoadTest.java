@@ -0,0 +1,221 @@
+package kz.nik.socksbackspark.loadtest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives a mixed workload against the application booted on a random port with a Testcontainers PostgreSQL and
+ * writes p50/p95/p99 latency, throughput and error rates per endpoint as a JSON report. Run with:
+ * <pre>./gradlew loadTest [-PloadTest.concurrency=16] [-PloadTest.durationSeconds=60]
+ * [-PloadTest.warmupSeconds=10] [-PloadTest.mix=income:40,outcome:20,get:35,batch:5]
+ * [-PloadTest.reportFile=build/reports/load-test/report.json] [-PloadTest.virtualThreads=true]</pre>
+ * The warm-up runs the same workload without recording. Needs Docker.
+ * <p>
+ * To compare platform and virtual threads with 1k concurrent clients, run the same workload twice on a Java 21
+ * runtime and diff the two reports:
+ * <pre>./gradlew loadTest -PruntimeJava=21 -PloadTest.concurrency=1000 -PloadTest.mix=get:50,outcome:50
+ * -PloadTest.virtualThreads=false|true</pre>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.root=WARN"
+})
+@Testcontainers(disabledWithoutDocker = true)
+public class SocksLoadTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final int COLORS = 100;
+    private static final int BATCH_ROWS = 100;
+    private static final String BOUNDARY = "socks-load-test-boundary";
+
+    @DynamicPropertySource
+    static void threadMode(DynamicPropertyRegistry registry) {
+        registry.add("socks.threads.virtual", () -> Boolean.getBoolean("loadTest.virtualThreads"));
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @BeforeEach
+    void seedInventory() {
+        jdbcTemplate.update("DELETE FROM socks");
+        // enough stock that outcome requests never run out during the run
+        jdbcTemplate.update("INSERT INTO socks (color, cotton_percentage, quantity) " +
+                "SELECT 'color-' || c, p, 100000000 FROM generate_series(0, ?) c, generate_series(0, 100) p",
+                COLORS - 1);
+    }
+
+    @Test
+    void runMixedWorkload() throws Exception {
+        int concurrency = Integer.getInteger("loadTest.concurrency", 16);
+        int durationSeconds = Integer.getInteger("loadTest.durationSeconds", 60);
+        int warmupSeconds = Integer.getInteger("loadTest.warmupSeconds", 10);
+        String mix = System.getProperty("loadTest.mix", "income:40,outcome:20,get:35,batch:5");
+        File reportFile = new File(System.getProperty("loadTest.reportFile", "build/reports/load-test/report.json"));
+
+        List<String> operations = weightedOperations(mix);
+        byte[] batchBody = batchBody();
+
+        run(operations, batchBody, concurrency, warmupSeconds);
+
+        long startedAt = System.nanoTime();
+        LoadTestReport report = run(operations, batchBody, concurrency, durationSeconds);
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("concurrency", concurrency);
+        settings.put("durationSeconds", durationSeconds);
+        settings.put("warmupSeconds", warmupSeconds);
+        settings.put("mix", mix);
+        settings.put("batchRows", BATCH_ROWS);
+        settings.put("virtualThreads", Boolean.getBoolean("loadTest.virtualThreads"));
+        settings.put("javaVersion", Runtime.version().feature());
+        report.write(reportFile, settings, elapsedSeconds);
+        System.out.printf("Load-test report written to %s%n", reportFile.getAbsolutePath());
+
+        assertTrue(reportFile.isFile());
+    }
+
+    private LoadTestReport run(List<String> operations, byte[] batchBody, int concurrency, int seconds)
+            throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<LoadTestReport>> workers = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    LoadTestReport workerReport = new LoadTestReport();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        String operation = operations.get(random.nextInt(operations.size()));
+                        HttpRequest request = request(operation, batchBody, random);
+
+                        long sentAt = System.nanoTime();
+                        boolean success;
+                        try {
+                            HttpResponse<Void> response = httpClient.send(request,
+                                    HttpResponse.BodyHandlers.discarding());
+                            success = response.statusCode() < 400;
+                        } catch (Exception e) {
+                            success = false;
+                        }
+                        workerReport.record(operation, System.nanoTime() - sentAt, success);
+                    }
+                    return workerReport;
+                }));
+            }
+
+            LoadTestReport report = new LoadTestReport();
+            for (Future<LoadTestReport> worker : workers) {
+                report.merge(worker.get());
+            }
+            return report;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private HttpRequest request(String operation, byte[] batchBody, ThreadLocalRandom random) {
+        String color = "color-" + random.nextInt(COLORS);
+        int cottonPercentage = random.nextInt(101);
+        return switch (operation) {
+            case "income" -> json("/api/socks/income", color, cottonPercentage, 1 + random.nextInt(10));
+            case "outcome" -> json("/api/socks/outcome", color, cottonPercentage, 1 + random.nextInt(10));
+            case "get" -> HttpRequest.newBuilder(uri(random.nextBoolean()
+                            ? "/api/socks?color=" + color + "&sortBy=cottonPercentage&size=50"
+                            : "/api/socks?operation=greaterThan&cottonPercentage=" + cottonPercentage
+                            + "&sortBy=color&size=50"))
+                    .GET()
+                    .build();
+            case "batch" -> HttpRequest.newBuilder(uri("/api/socks/batch"))
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(batchBody))
+                    .build();
+            default -> throw new IllegalArgumentException("Unknown operation: " + operation);
+        };
+    }
+
+    private HttpRequest json(String path, String color, int cottonPercentage, int quantity) {
+        String body = String.format("{\"color\":\"%s\",\"cottonPercentage\":%d,\"quantity\":%d}", color,
+                cottonPercentage, quantity);
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    /**
+     * @return each operation repeated by its weight, so that a uniform pick follows the mix
+     */
+    private static List<String> weightedOperations(String mix) {
+        List<String> operations = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid loadTest.mix entry: " + entry);
+            }
+            for (int i = 0; i < Integer.parseInt(parts[1].trim()); i++) {
+                operations.add(parts[0].trim());
+            }
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("loadTest.mix has no operations: " + mix);
+        }
+        return operations;
+    }
+
+    private static byte[] batchBody() {
+        StringBuilder body = new StringBuilder()
+                .append("--").append(BOUNDARY).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"file\"; filename=\"load-test.csv\"\r\n")
+                .append("Content-Type: text/csv\r\n\r\n")
+                .append("color,cottonPercentage,quantity\n");
+        for (int i = 0; i < BATCH_ROWS; i++) {
+            body.append("color-").append(i % COLORS).append(',').append(i % 101).append(",1\n");
+        }
+        body.append("\r\n--").append(BOUNDARY).append("--\r\n");
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,106 @@
+package kz.nik.socksbackspark.api;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Writes one access-log line per request to the {@code access} logger, with method, path, status, duration and
+ * correlation ID as key=value pairs. The correlation ID is taken from the {@code X-Correlation-Id} request header
+ * or generated, returned in the same response header and kept in the {@code correlationId} MDC entry, so that
+ * every log line of the request carries it. Asynchronous requests such as the export are logged when they
+ * complete.
+ */
+@Slf4j(topic = "access")
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    public static final String CORRELATION_ID_HEADER = "X-Correlation-Id";
+    public static final String CORRELATION_ID_MDC_KEY = "correlationId";
+
+    // a client-supplied ID ends up in every log line, so anything unusual is replaced
+    private static final Pattern VALID_CORRELATION_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String correlationId = correlationId(request);
+        long startedAt = System.nanoTime();
+        MDC.put(CORRELATION_ID_MDC_KEY, correlationId);
+        response.setHeader(CORRELATION_ID_HEADER, correlationId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AccessLogListener(request, response, correlationId,
+                        startedAt));
+            } else {
+                logAccess(request, response.getStatus(), startedAt);
+            }
+            MDC.remove(CORRELATION_ID_MDC_KEY);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // the async dispatch is covered by the listener registered on the initial request
+        return true;
+    }
+
+    private static String correlationId(HttpServletRequest request) {
+        String correlationId = request.getHeader(CORRELATION_ID_HEADER);
+        if (correlationId != null && VALID_CORRELATION_ID.matcher(correlationId).matches()) {
+            return correlationId;
+        }
+        return UUID.randomUUID().toString();
+    }
+
+    private static void logAccess(HttpServletRequest request, int status, long startedAt) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        double durationMillis = (System.nanoTime() - startedAt) / 1_000 / 1_000.0;
+        log.info("method={} path={} status={} durationMs={} correlationId={}", request.getMethod(),
+                request.getRequestURI(), status, durationMillis, MDC.get(CORRELATION_ID_MDC_KEY));
+    }
+
+    private record AccessLogListener(HttpServletRequest request, HttpServletResponse response,
+                                     String correlationId, long startedAt) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            MDC.put(CORRELATION_ID_MDC_KEY, correlationId);
+            try {
+                logAccess(request, response.getStatus(), startedAt);
+            } finally {
+                MDC.remove(CORRELATION_ID_MDC_KEY);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
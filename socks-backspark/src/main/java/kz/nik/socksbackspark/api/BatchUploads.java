@@ -0,0 +1,40 @@
+package kz.nik.socksbackspark.api;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Shared parts of the raw-body batch uploads: the body is the file itself and its Content-Type tells the format,
+ * so no multipart parsing or buffering happens before the import reads it.
+ */
+final class BatchUploads {
+
+    static final String CSV_VALUE = "text/csv";
+    static final String XLSX_VALUE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private static final MediaType CSV = MediaType.parseMediaType(CSV_VALUE);
+
+    private BatchUploads() {
+    }
+
+    /**
+     * @return {@code csv} or {@code xlsx}; the mappings only accept these two content types
+     */
+    static String format(String contentType) {
+        return MediaType.parseMediaType(contentType).isCompatibleWith(CSV) ? "csv" : "xlsx";
+    }
+
+    /**
+     * @return true if the declared length alone is over the limit; chunked uploads are cut off while they stream
+     */
+    static boolean declaredTooLarge(Long contentLength, DataSize maxSize) {
+        return contentLength != null && contentLength > maxSize.toBytes();
+    }
+
+    static ResponseEntity<String> tooLarge(DataSize maxSize) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Upload is larger than " + maxSize +
+                ". Файл больше " + maxSize + ".");
+    }
+}
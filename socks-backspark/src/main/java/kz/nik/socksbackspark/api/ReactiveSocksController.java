@@ -0,0 +1,176 @@
+package kz.nik.socksbackspark.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.exceptions.FileProcessingException;
+import kz.nik.socksbackspark.exceptions.InsufficientStockException;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.handler.ErrorDetails;
+import kz.nik.socksbackspark.service.ReactiveSocksService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Same endpoints as {@link SocksController}, served by WebFlux in the {@code reactive} profile. Listings are
+ * streamed as the rows arrive from the database, so they carry no {@code X-Total-Count} or {@code X-Next-Cursor}
+ * headers; with {@code Accept: application/x-ndjson} they are written one object per line. Errors raised before
+ * the first row are answered by {@link kz.nik.socksbackspark.handler.ReactiveExceptionHandler}.
+ */
+@Slf4j
+@RestController
+@Profile("reactive")
+@RequiredArgsConstructor
+@RequestMapping(value = "/api/socks")
+public class ReactiveSocksController {
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final ReactiveSocksService socksService;
+
+    @Operation(summary = "Retrieve socks with filters.Извлечение с фильтром")
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public Flux<SocksDto> getSocks(
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) String operation,
+            @RequestParam(required = false) Integer cottonPercentage,
+            @RequestParam(required = false) Integer cottonPercentageFrom,
+            @RequestParam(required = false) Integer cottonPercentageTo,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortDirection,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) Long cursor
+    ) {
+        if (color == null && operation == null && cottonPercentage == null &&
+                cottonPercentageFrom == null && cottonPercentageTo == null) {
+            return socksService.getAllSocks(cursor, page, size);
+        }
+        if (cursor != null) {
+            return Flux.error(new InvalidDataFormatException("cursor is only supported without filters, " +
+                    "use page instead."));
+        }
+        return socksService.getFilteredSocks(color, operation, cottonPercentage, cottonPercentageFrom,
+                cottonPercentageTo, sortBy, sortDirection, page, size);
+    }
+
+
+    @Operation(summary = "Total quantity of socks by filter. Общее количество по фильтру.")
+    @GetMapping("/total")
+    public Mono<ResponseEntity<?>> getTotalQuantity(
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) String operation,
+            @RequestParam(required = false) Integer cottonPercentage,
+            @RequestParam(required = false) Integer cottonPercentageFrom,
+            @RequestParam(required = false) Integer cottonPercentageTo,
+            @RequestParam(required = false) String groupBy
+    ) {
+        return socksService.getTotalQuantity(color, operation, cottonPercentage, cottonPercentageFrom,
+                        cottonPercentageTo, groupBy)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(InvalidDataFormatException.class, e -> Mono.just(ResponseEntity.badRequest()
+                        .body(new ErrorDetails(HttpStatus.BAD_REQUEST, "Invalid data format. Неверный формат.",
+                                e.getMessage()))))
+                .onErrorResume(e -> {
+                    log.error("Error totalling socks: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new
+                            ErrorDetails(HttpStatus.INTERNAL_SERVER_ERROR, "Error totalling socks. Ошибка при " +
+                            "подсчёте носков", e.getMessage())));
+                });
+    }
+
+
+    @Operation(summary = "Export all socks as NDJSON. Выгрузка всех носков.")
+    @GetMapping(value = "/export", produces = NDJSON_VALUE)
+    public Flux<SocksDto> exportSocks() {
+        // the status is committed with the first row, later failures can only abort the stream
+        return socksService.exportSocks();
+    }
+
+
+    @Operation(summary = "Update socks details. Обновление.")
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<?>> updateSocks(@PathVariable Long id, @RequestBody SocksDto socksDto) {
+        return socksService.updateSock(id, socksDto)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(InsufficientStockException.class, e -> Mono.just(ResponseEntity
+                        .status(HttpStatus.NOT_FOUND).body("Sock not found with id. Не найден. " + id)))
+                .onErrorResume(e -> {
+                    log.error("Error updating sock: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error updating " +
+                            "sock. Ошибка обновления"));
+                });
+    }
+
+
+    @Operation(summary = "Add new socks. Добавление.")
+    @PostMapping("/income")
+    public Mono<ResponseEntity<String>> addSocks(@RequestBody SocksDto socksDto) {
+        return socksService.addSocks(socksDto)
+                .thenReturn(ResponseEntity.ok("Income processed successfully. Успешное Добавление."))
+                .onErrorResume(e -> {
+                    log.error("Error adding socks: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error " +
+                            "processing income. Ошибка при добавлении"));
+                });
+    }
+
+
+    @Operation(summary = "Outcome socks quantity. Уменьшение количества. ")
+    @PostMapping("/outcome")
+    public Mono<ResponseEntity<String>> decreaseSocksQuantity(@RequestBody SocksDto socksDto) {
+        return socksService.decreaseSocksQuantity(socksDto.getColor(), socksDto.getCottonPercentage(),
+                        socksDto.getQuantity())
+                .thenReturn(ResponseEntity.ok("Socks quantity decreased successfully. Успешно уменьшено."))
+                .onErrorResume(e -> e instanceof InsufficientStockException || e instanceof IllegalArgumentException,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage())))
+                .onErrorResume(e -> {
+                    log.error("Error decreasing socks quantity: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error " +
+                            "decreasing socks quantity. Ошибка уменьшения."));
+                });
+    }
+
+
+    @Operation(summary = "Process batch file. Добавление из файла.")
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ResponseEntity<String>> addBatch(@RequestPart("file") FilePart file) {
+        log.debug("Received request to process batch file: {}", file.filename());
+
+        String fileName = file.filename();
+        Mono<BatchImportResult> result;
+        if (fileName.endsWith(".csv")) {
+            result = socksService.processCsvFile(file);
+        } else if (fileName.endsWith(".xlsx") || fileName.endsWith(".xls")) {
+            result = socksService.processExcelFile(file);
+        } else {
+            return Mono.just(ResponseEntity.badRequest().body("Invalid file type. Only CSV and Excel are " +
+                    "supported.Неверный файл. Только csv и excel."));
+        }
+        return result.map(this::batchProcessed)
+                .onErrorResume(FileProcessingException.class, e -> Mono.just(ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST).body("Error processing file: " + e.getMessage())))
+                .onErrorResume(e -> {
+                    log.error("Error processing batch file: {}", e.getMessage());
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error " +
+                            "processing batch file. Ошибка загрузки."));
+                });
+    }
+
+    private ResponseEntity<String> batchProcessed(BatchImportResult result) {
+        return ResponseEntity.ok()
+                .header("X-Rows-Processed", String.valueOf(result.getRowsProcessed()))
+                .header("X-Rows-Per-Second", String.valueOf(Math.round(result.getRowsPerSecond())))
+                .header("X-Peak-Chunk-Size", String.valueOf(result.getPeakChunkSize()))
+                .body("Batch processed successfully. Успешная загрузка.");
+    }
+}
@@ -6,34 +6,53 @@ import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import kz.nik.socksbackspark.dto.BatchImportResult;
 import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksPage;
+import kz.nik.socksbackspark.dto.SocksTotalDto;
 import kz.nik.socksbackspark.exceptions.FileProcessingException;
 import kz.nik.socksbackspark.exceptions.InsufficientStockException;
 import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.exceptions.UploadTooLargeException;
 import kz.nik.socksbackspark.handler.ErrorDetails;
 import kz.nik.socksbackspark.service.SocksService;
+import kz.nik.socksbackspark.service.batch.LimitedInputStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.List;
 
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 @RequestMapping(value = "/api/socks")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SocksController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
     private final SocksService socksService;
 
+    @Value("${socks.batch.upload.max-size:1GB}")
+    private DataSize maxUploadSize = DataSize.ofGigabytes(1);
+
     @Operation(summary = "Retrieve socks with filters.Извлечение с фильтром",
             description = "Fetch socks based on optional filters such as color, cotton percentage range, and sorting " +
-                    "options. Выбор по дополнительным фильтрам, таким как цвет, процентное содержание хлопка и " +
-                    "параметры сортировки.")
+                    "options. Results are paged with page/size; the unfiltered list also accepts the id cursor " +
+                    "from X-Next-Cursor. Выбор по дополнительным фильтрам, таким как цвет, процентное содержание " +
+                    "хлопка и параметры сортировки, с постраничной выдачей.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Successfully retrieved socks. Успех.",
@@ -58,21 +77,29 @@ public class SocksController {
             @RequestParam(required = false) Integer cottonPercentageFrom,
             @RequestParam(required = false) Integer cottonPercentageTo,
             @RequestParam(required = false) String sortBy,
-            @RequestParam(required = false) String sortDirection
+            @RequestParam(required = false) String sortDirection,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) Long cursor
     ) {
-        log.info("Request to get socks with filters: color={}, operation={}, cottonPercentage={}, " +
-                        "cottonPercentageFrom={}, cottonPercentageTo={}, sortBy={}, sortDirection={}",
-                color, operation, cottonPercentage, cottonPercentageFrom, cottonPercentageTo, sortBy, sortDirection);
+        if (log.isDebugEnabled()) {
+            log.debug("Request to get socks with filters: color={}, operation={}, cottonPercentage={}, " +
+                            "cottonPercentageFrom={}, cottonPercentageTo={}, sortBy={}, sortDirection={}, page={}, " +
+                            "size={}, cursor={}", color, operation, cottonPercentage, cottonPercentageFrom,
+                    cottonPercentageTo, sortBy, sortDirection, page, size, cursor);
+        }
 
         try {
             if (color == null && operation == null && cottonPercentage == null &&
                     cottonPercentageFrom == null && cottonPercentageTo == null) {
-                List<SocksDto> allSocks = socksService.getAllSocks();
-                return ResponseEntity.ok(allSocks);
+                return paged(socksService.getAllSocks(cursor, page, size));
             }
-            List<SocksDto> socks = socksService.getFilteredSocks(color, operation, cottonPercentage,
-                    cottonPercentageFrom, cottonPercentageTo, sortBy, sortDirection);
-            return ResponseEntity.ok(socks);
+            if (cursor != null) {
+                throw new InvalidDataFormatException("cursor is only supported without filters, use page instead.");
+            }
+            SocksPage socks = socksService.getFilteredSocks(color, operation, cottonPercentage,
+                    cottonPercentageFrom, cottonPercentageTo, sortBy, sortDirection, page, size);
+            return paged(socks);
         } catch (InvalidDataFormatException e) {
             log.error("Invalid data format: {}", e.getMessage());
             return ResponseEntity.badRequest().body(new ErrorDetails(HttpStatus.BAD_REQUEST,
@@ -86,6 +113,78 @@ public class SocksController {
     }
 
 
+    @Operation(summary = "Total quantity of socks by filter. Общее количество по фильтру.",
+            description = "Sums the quantity of the socks matching the filters in the database, optionally grouped " +
+                    "by color or cottonPercentage. Суммирует количество носков по фильтрам, с группировкой по цвету " +
+                    "или процентному содержанию хлопка.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Successfully totalled socks. Успех.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = SocksTotalDto.class),
+                            examples = @ExampleObject(value = "{\"totalQuantity\": 250}"))),
+            @ApiResponse(responseCode = "400",
+                    description = "Invalid filter parameters. Неверные параметры.",
+                    content = @Content(mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"error\": \"Invalid data format\"}"))),
+            @ApiResponse(responseCode = "500",
+                    description = "Internal server error. Ошибка сервера.",
+                    content = @Content(mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"error\": \"Unexpected server error\"}")))
+    })
+    @GetMapping("/total")
+    public ResponseEntity<?> getTotalQuantity(
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) String operation,
+            @RequestParam(required = false) Integer cottonPercentage,
+            @RequestParam(required = false) Integer cottonPercentageFrom,
+            @RequestParam(required = false) Integer cottonPercentageTo,
+            @RequestParam(required = false) String groupBy
+    ) {
+        if (log.isDebugEnabled()) {
+            log.debug("Request to total socks with filters: color={}, operation={}, cottonPercentage={}, " +
+                            "cottonPercentageFrom={}, cottonPercentageTo={}, groupBy={}", color, operation,
+                    cottonPercentage, cottonPercentageFrom, cottonPercentageTo, groupBy);
+        }
+
+        try {
+            return ResponseEntity.ok(socksService.getTotalQuantity(color, operation, cottonPercentage,
+                    cottonPercentageFrom, cottonPercentageTo, groupBy));
+        } catch (InvalidDataFormatException e) {
+            log.error("Invalid data format: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(new ErrorDetails(HttpStatus.BAD_REQUEST,
+                    "Invalid data format. Неверный формат.", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error totalling socks: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new
+                    ErrorDetails(HttpStatus.INTERNAL_SERVER_ERROR, "Error totalling socks. Ошибка при " +
+                    "подсчёте носков", e.getMessage()));
+        }
+    }
+
+
+    @Operation(summary = "Export all socks as NDJSON. Выгрузка всех носков.",
+            description = "Streams the whole inventory as one JSON object per line while it is read from the " +
+                    "database. Потоковая выгрузка всего склада, по одному объекту JSON на строку.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Export started. Выгрузка начата.",
+                    content = @Content(mediaType = NDJSON_VALUE,
+                            examples = @ExampleObject(value = "{\"id\":1,\"color\":\"red\"," +
+                                    "\"cottonPercentage\":50,\"quantity\":100}")))
+    })
+    @GetMapping(value = "/export", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportSocks() {
+        log.debug("Request to export all socks");
+
+        // the status is committed with the first bytes, later failures can only abort the stream
+        StreamingResponseBody body = socksService::exportSocks;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
+    }
+
+
     @Operation(summary = "Update socks details. Обновление.",
             description = "Update the details of a specific sock item by its ID. Обновление по идентификатору.")
     @ApiResponses(value = {
@@ -106,7 +205,7 @@ public class SocksController {
     })
     @PutMapping("/{id}")
     public ResponseEntity<?> updateSocks(@PathVariable Long id, @RequestBody SocksDto socksDto) {
-        log.info("Request to update sock with id={} to {}", id, socksDto);
+        log.debug("Request to update sock with id={} to {}", id, socksDto);
 
         try {
             SocksDto updatedSock = socksService.updateSock(id, socksDto);
@@ -134,7 +233,7 @@ public class SocksController {
     })
     @PostMapping("/income")
     public ResponseEntity<String> addSocks(@RequestBody SocksDto socksDto) {
-        log.info("Received request to add batch of socks: {}", socksDto);
+        log.debug("Received request to add batch of socks: {}", socksDto);
 
         try {
             socksService.addSocks(socksDto);
@@ -163,7 +262,7 @@ public class SocksController {
     })
     @PostMapping("/outcome")
     public ResponseEntity<String> decreaseSocksQuantity(@RequestBody SocksDto socksDto) {
-        log.info("Request to decrease socks quantity: {}", socksDto);
+        log.debug("Request to decrease socks quantity: {}", socksDto);
 
         try {
             socksService.decreaseSocksQuantity(socksDto.getColor(), socksDto.getCottonPercentage(),
@@ -200,19 +299,67 @@ public class SocksController {
     })
     @PostMapping("/batch")
     public ResponseEntity<String> addBatch(@RequestParam("file") MultipartFile file) {
-        log.info("Received request to process batch file: {}", file.getOriginalFilename());
+        log.debug("Received request to process batch file: {}", file.getOriginalFilename());
 
         try {
             String fileName = file.getOriginalFilename();
+            BatchImportResult result = null;
             if (fileName.endsWith(".csv")) {
-                socksService.processCsvFile(file);
+                result = socksService.processCsvFile(file);
             } else if (fileName.endsWith(".xlsx") || fileName.endsWith(".xls")) {
-                socksService.processExcelFile(file);
+                result = socksService.processExcelFile(file);
             } else {
                 return ResponseEntity.badRequest().body("Invalid file type. Only CSV and Excel are supported." +
                         "Неверный файл. Только csv и excel.");
             }
-            return ResponseEntity.ok("Batch processed successfully. Успешная загрузка.");
+            return batchProcessed(result);
+        } catch (FileProcessingException e) {
+            log.error("Error processing file: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error processing file: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Error processing batch file: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error processing batch file. " +
+                    "Ошибка загрузки.");
+        }
+    }
+
+    @Operation(summary = "Process a batch file sent as the request body. Добавление из файла без multipart.",
+            description = "The body is the CSV or Excel file itself, chosen by Content-Type. A CSV is parsed while " +
+                    "it streams in, an Excel file is spooled to disk first; neither is buffered in memory. " +
+                    "Uploads over socks.batch.upload.max-size are rejected. Тело запроса - сам файл.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Batch processed successfully. Успех."),
+            @ApiResponse(responseCode = "400",
+                    description = "Processing error. Ошибка обработки файла",
+                    content = @Content(mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"error\": \"Error processing file\"}"))),
+            @ApiResponse(responseCode = "413",
+                    description = "Upload too large. Файл слишком большой."),
+            @ApiResponse(responseCode = "500",
+                    description = "Internal server error. Ошибка сервера.",
+                    content = @Content(mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"error\": \"Error processing batch file\"}")))
+    })
+    @PostMapping(value = "/batch/stream", consumes = {BatchUploads.CSV_VALUE, BatchUploads.XLSX_VALUE})
+    public ResponseEntity<String> addBatchStream(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            InputStream body) {
+        log.debug("Received request to stream batch file of type {}, {} bytes", contentType, contentLength);
+
+        if (BatchUploads.declaredTooLarge(contentLength, maxUploadSize)) {
+            return BatchUploads.tooLarge(maxUploadSize);
+        }
+        try {
+            InputStream limitedBody = new LimitedInputStream(body, maxUploadSize.toBytes());
+            BatchImportResult result = "csv".equals(BatchUploads.format(contentType))
+                    ? socksService.processCsvStream(limitedBody)
+                    : socksService.processExcelStream(limitedBody);
+            return batchProcessed(result);
+        } catch (UploadTooLargeException e) {
+            log.error("Upload too large: {}", e.getMessage());
+            return BatchUploads.tooLarge(maxUploadSize);
         } catch (FileProcessingException e) {
             log.error("Error processing file: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error processing file: " + e.getMessage());
@@ -222,4 +369,27 @@ public class SocksController {
                     "Ошибка загрузки.");
         }
     }
+
+    private ResponseEntity<List<SocksDto>> paged(SocksPage socksPage) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header("X-Page", String.valueOf(socksPage.getPage()))
+                .header("X-Page-Size", String.valueOf(socksPage.getSize()));
+        if (socksPage.getTotalElements() != null) {
+            response.header("X-Total-Count", String.valueOf(socksPage.getTotalElements()));
+        }
+        if (socksPage.getNextCursor() != null) {
+            response.header("X-Next-Cursor", String.valueOf(socksPage.getNextCursor()));
+        }
+        return response.body(socksPage.getContent());
+    }
+
+    private ResponseEntity<String> batchProcessed(BatchImportResult result) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result != null) {
+            response.header("X-Rows-Processed", String.valueOf(result.getRowsProcessed()))
+                    .header("X-Rows-Per-Second", String.valueOf(Math.round(result.getRowsPerSecond())))
+                    .header("X-Peak-Chunk-Size", String.valueOf(result.getPeakChunkSize()));
+        }
+        return response.body("Batch processed successfully. Успешная загрузка.");
+    }
 }
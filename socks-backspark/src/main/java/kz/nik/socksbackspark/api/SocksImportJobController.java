@@ -0,0 +1,169 @@
+package kz.nik.socksbackspark.api;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import kz.nik.socksbackspark.dto.ImportJobDto;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.exceptions.TooManyImportsException;
+import kz.nik.socksbackspark.exceptions.UploadTooLargeException;
+import kz.nik.socksbackspark.service.batch.LimitedInputStream;
+import kz.nik.socksbackspark.service.batch.SocksImportJobManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.net.URI;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping(value = "/api/socks/batch/jobs")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class SocksImportJobController {
+
+    private final SocksImportJobManager importJobManager;
+
+    @Value("${socks.batch.upload.max-size:1GB}")
+    private DataSize maxUploadSize = DataSize.ofGigabytes(1);
+
+    @Operation(summary = "Start a background batch import. Фоновая загрузка из файла.",
+            description = "Spools the CSV or Excel file and returns the job at once; progress is polled at the " +
+                    "Location URL. Файл сохраняется на диск, загрузка идёт в фоне.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Import job queued. Задача создана.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ImportJobDto.class),
+                            examples = @ExampleObject(value = "{\"id\": \"3f0c...\", \"fileName\": \"socks.csv\", " +
+                                    "\"status\": \"QUEUED\", \"rowsParsed\": 0}"))),
+            @ApiResponse(responseCode = "400", description = "Invalid file type. Неверный файл.",
+                    content = @Content(mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"error\": \"Invalid file type\"}"))),
+            @ApiResponse(responseCode = "503", description = "Too many imports in progress. Слишком много загрузок.",
+                    content = @Content(mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"error\": \"Too many imports\"}")))
+    })
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestParam("file") MultipartFile file) {
+        log.debug("Received request to import batch file in the background: {}", file.getOriginalFilename());
+
+        try {
+            ImportJobDto job = importJobManager.submit(file);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/socks/batch/jobs/" + job.getId()))
+                    .body(job);
+        } catch (InvalidDataFormatException e) {
+            return ResponseEntity.badRequest().body("Invalid file type. Only CSV and Excel are supported." +
+                    "Неверный файл. Только csv и excel.");
+        } catch (TooManyImportsException e) {
+            log.error("Import rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .body("Too many imports in progress, try again later. Слишком много загрузок, повторите позже.");
+        } catch (Exception e) {
+            log.error("Error submitting import job: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error processing batch file. " +
+                    "Ошибка загрузки.");
+        }
+    }
+
+
+    @Operation(summary = "Start a background import of a file sent as the request body. Фоновая загрузка без " +
+            "multipart.",
+            description = "The body is the CSV or Excel file itself, chosen by Content-Type; it is streamed to disk " +
+                    "without being buffered in memory. Uploads over socks.batch.upload.max-size are rejected. " +
+                    "Тело запроса - сам файл.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Import job queued. Задача создана.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ImportJobDto.class))),
+            @ApiResponse(responseCode = "413", description = "Upload too large. Файл слишком большой."),
+            @ApiResponse(responseCode = "503", description = "Too many imports in progress. Слишком много загрузок.",
+                    content = @Content(mediaType = "application/json",
+                            examples = @ExampleObject(value = "{\"error\": \"Too many imports\"}")))
+    })
+    @PostMapping(value = "/stream", consumes = {BatchUploads.CSV_VALUE, BatchUploads.XLSX_VALUE})
+    public ResponseEntity<?> submitStream(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            @RequestParam(value = "fileName", required = false) String fileName,
+            InputStream body) {
+        log.debug("Received request to import streamed batch file in the background: {}", fileName);
+
+        if (BatchUploads.declaredTooLarge(contentLength, maxUploadSize)) {
+            return BatchUploads.tooLarge(maxUploadSize);
+        }
+        String format = BatchUploads.format(contentType);
+        try {
+            ImportJobDto job = importJobManager.submit(fileName != null ? fileName : "upload." + format, format,
+                    new LimitedInputStream(body, maxUploadSize.toBytes()));
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/socks/batch/jobs/" + job.getId()))
+                    .body(job);
+        } catch (UploadTooLargeException e) {
+            log.error("Upload too large: {}", e.getMessage());
+            return BatchUploads.tooLarge(maxUploadSize);
+        } catch (TooManyImportsException e) {
+            log.error("Import rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .body("Too many imports in progress, try again later. Слишком много загрузок, повторите позже.");
+        } catch (Exception e) {
+            log.error("Error submitting import job: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error processing batch file. " +
+                    "Ошибка загрузки.");
+        }
+    }
+
+
+    @Operation(summary = "Progress of a background import. Ход фоновой загрузки.",
+            description = "Rows parsed, written and rejected, throughput and status of the job. Количество " +
+                    "прочитанных, записанных и отклонённых строк.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Job found. Задача найдена.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ImportJobDto.class))),
+            @ApiResponse(responseCode = "404", description = "Job not found. Задача не найдена.")
+    })
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable String id) {
+        return importJobManager.find(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> notFound(id));
+    }
+
+
+    @Operation(summary = "Cancel a background import. Отмена фоновой загрузки.",
+            description = "A queued job is dropped, a running one stops at its next row; chunks already written " +
+                    "stay. Записанные части остаются.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cancellation requested. Отмена запрошена.",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ImportJobDto.class))),
+            @ApiResponse(responseCode = "404", description = "Job not found. Задача не найдена.")
+    })
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancelJob(@PathVariable String id) {
+        log.debug("Request to cancel import job {}", id);
+
+        return importJobManager.cancel(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> notFound(id));
+    }
+
+    private static ResponseEntity<?> notFound(String id) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Import job not found. Задача не найдена. " + id);
+    }
+}
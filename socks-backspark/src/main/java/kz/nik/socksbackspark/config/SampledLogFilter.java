@@ -0,0 +1,33 @@
+package kz.nik.socksbackspark.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logback filter that lets one in {@code sampleRate} events through and denies the rest, so that a noisy logger
+ * such as the slow-query log keeps a bounded volume under load. Events at WARN or above always pass.
+ */
+public class SampledLogFilter extends Filter<ILoggingEvent> {
+
+    private final AtomicLong events = new AtomicLong();
+    private int sampleRate = 1;
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = Math.max(sampleRate, 1);
+    }
+
+    @Override
+    public FilterReply decide(ILoggingEvent event) {
+        if (!isStarted()) {
+            return FilterReply.NEUTRAL;
+        }
+        if (event.getLevel().isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        return events.getAndIncrement() % sampleRate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+}
@@ -0,0 +1,62 @@
+package kz.nik.socksbackspark.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in virtual-thread mode, enabled with {@code socks.threads.virtual=true} on a Java 21 runtime. Tomcat runs
+ * every request, and with it the service and JDBC calls, on its own virtual thread instead of the bounded
+ * platform-thread pool; asynchronous MVC work such as the streaming export uses the same executor.
+ * <p>
+ * Request concurrency is then limited by the HikariCP pool rather than by {@code server.tomcat.threads.max}, so
+ * {@code spring.datasource.hikari.maximum-pool-size} is the setting to size against the database.
+ * <p>
+ * The project still compiles for Java 17, so the executor is created reflectively; starting with the flag on an
+ * older runtime fails instead of silently falling back to platform threads.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "socks.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public ExecutorService virtualThreadExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+            log.info("Virtual-thread mode enabled on Java {}", Runtime.version());
+            return executor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("socks.threads.virtual=true needs Java 21 or later, running on " +
+                    Runtime.version(), e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Error creating the virtual-thread executor", e);
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(
+            ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncSupport(ExecutorService virtualThreadExecutor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(new TaskExecutorAdapter(virtualThreadExecutor));
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package kz.nik.socksbackspark.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchImportResult {
+    private long rowsProcessed;
+    private int chunks;
+    /**
+     * Distinct stock items in the largest chunk, the unit {@code socks.batch.chunk-size} is counted in.
+     */
+    private int peakChunkSize;
+    private long durationMillis;
+
+    public double getRowsPerSecond() {
+        if (durationMillis <= 0) {
+            return rowsProcessed;
+        }
+        return rowsProcessed * 1000.0 / durationMillis;
+    }
+}
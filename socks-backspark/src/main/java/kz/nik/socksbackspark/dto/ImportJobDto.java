@@ -0,0 +1,38 @@
+package kz.nik.socksbackspark.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Progress of an asynchronous batch import, as reported by {@code GET /api/socks/batch/jobs/{id}}.
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportJobDto {
+    private String id;
+    private String fileName;
+    /**
+     * {@code QUEUED}, {@code RUNNING}, {@code COMPLETED}, {@code FAILED} or {@code CANCELLED}.
+     */
+    private String status;
+    private long rowsParsed;
+    /**
+     * Rows whose chunk has been committed; chunks written before a cancellation or failure stay committed.
+     */
+    private long rowsWritten;
+    /**
+     * Rows skipped because a column is missing or not a number.
+     */
+    private long rowsRejected;
+    private double rowsPerSecond;
+    private String error;
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,16 @@
+package kz.nik.socksbackspark.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SocksGroupTotalDto {
+    private String color;
+    private Integer cottonPercentage;
+    private long totalQuantity;
+}
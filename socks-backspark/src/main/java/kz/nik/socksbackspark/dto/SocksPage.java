@@ -0,0 +1,24 @@
+package kz.nik.socksbackspark.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SocksPage {
+    private List<SocksDto> content;
+    private int page;
+    private int size;
+    /**
+     * Number of matching rows, not counted for cursor requests.
+     */
+    private Long totalElements;
+    /**
+     * Id to pass as {@code cursor} for the next page of the unfiltered listing, null on the last page.
+     */
+    private Long nextCursor;
+}
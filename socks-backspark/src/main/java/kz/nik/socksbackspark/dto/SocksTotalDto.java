@@ -0,0 +1,20 @@
+package kz.nik.socksbackspark.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SocksTotalDto {
+    private long totalQuantity;
+    /**
+     * Per-group totals, only present when {@code groupBy} was requested.
+     */
+    private List<SocksGroupTotalDto> groups;
+}
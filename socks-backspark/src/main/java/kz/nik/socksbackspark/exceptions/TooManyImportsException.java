@@ -0,0 +1,7 @@
+package kz.nik.socksbackspark.exceptions;
+
+public class TooManyImportsException extends RuntimeException {
+    public TooManyImportsException(String message) {
+        super(message);
+    }
+}
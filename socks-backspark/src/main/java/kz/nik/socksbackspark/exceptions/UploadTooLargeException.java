@@ -0,0 +1,7 @@
+package kz.nik.socksbackspark.exceptions;
+
+public class UploadTooLargeException extends RuntimeException {
+    public UploadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -3,6 +3,7 @@ package kz.nik.socksbackspark.handler;
 import kz.nik.socksbackspark.exceptions.FileProcessingException;
 import kz.nik.socksbackspark.exceptions.InsufficientStockException;
 import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
@@ -12,6 +13,7 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class MainExceptionHandler {
 
     @ExceptionHandler(InvalidDataFormatException.class)
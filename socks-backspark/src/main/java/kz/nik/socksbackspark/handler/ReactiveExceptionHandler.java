@@ -0,0 +1,62 @@
+package kz.nik.socksbackspark.handler;
+
+import kz.nik.socksbackspark.exceptions.FileProcessingException;
+import kz.nik.socksbackspark.exceptions.InsufficientStockException;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+
+/**
+ * WebFlux counterpart of {@link MainExceptionHandler} for the {@code reactive} profile, with the same bodies. Only
+ * errors raised before the first byte of a streamed response reach it.
+ */
+@ControllerAdvice
+@Profile("reactive")
+public class ReactiveExceptionHandler {
+
+    @ExceptionHandler(InvalidDataFormatException.class)
+    public ResponseEntity<Object> handleInvalidDataFormat(InvalidDataFormatException ex, ServerWebExchange exchange) {
+        ErrorDetails errorDetails = new ErrorDetails(HttpStatus.BAD_REQUEST, ex.getMessage(), description(exchange));
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<ErrorDetails> handleServerWebInput(ServerWebInputException ex, ServerWebExchange exchange) {
+        String message = "Invalid input data: " + ex.getReason();
+        ErrorDetails errorDetails = new ErrorDetails(HttpStatus.BAD_REQUEST, message, description(exchange));
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<Object> handleInsufficientStock(InsufficientStockException ex, ServerWebExchange exchange) {
+        ErrorDetails errorDetails = new ErrorDetails(HttpStatus.BAD_REQUEST, ex.getMessage(), description(exchange));
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
+
+    @ExceptionHandler(FileProcessingException.class)
+    public ResponseEntity<Object> handleFileProcessingError(FileProcessingException ex, ServerWebExchange exchange) {
+        ErrorDetails errorDetails = new ErrorDetails(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage(),
+                description(exchange));
+        return new ResponseEntity<>(errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<Object> handleAllExceptions(Exception ex, ServerWebExchange exchange) {
+        ErrorDetails errorDetails = new ErrorDetails(HttpStatus.INTERNAL_SERVER_ERROR, ex.getMessage(),
+                description(exchange));
+        return new ResponseEntity<>(errorDetails, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    // same format as WebRequest.getDescription(false) in the servlet stack
+    private static String description(ServerWebExchange exchange) {
+        return "uri=" + exchange.getRequest().getPath().value();
+    }
+}
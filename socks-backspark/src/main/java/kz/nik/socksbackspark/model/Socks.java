@@ -3,7 +3,10 @@ package kz.nik.socksbackspark.model;
 import jakarta.persistence.*;
 import lombok.*;
 
-@Table(name = "socks")
+// the schema is owned by the Flyway migrations in db/migration, these only document it
+@Table(name = "socks", uniqueConstraints = @UniqueConstraint(name = "uk_socks_color_cotton_percentage",
+        columnNames = {"color", "cottonPercentage"}),
+        indexes = @Index(name = "idx_socks_cotton_percentage", columnList = "cottonPercentage"))
 @Entity
 @Getter
 @Setter
@@ -11,8 +14,12 @@ import lombok.*;
 @NoArgsConstructor
 @AllArgsConstructor
 public class Socks {
+    // the Spring Data annotation marks the id for the R2DBC repository, JPA reads the jakarta one;
+    // ids are reserved 50 at a time from the sequence, which IDENTITY cannot do, so inserts can be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @org.springframework.data.annotation.Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "socks_seq")
+    @SequenceGenerator(name = "socks_seq", sequenceName = "socks_seq", allocationSize = 50)
     private Long id;
     @Column(name = "color")
     private String color;
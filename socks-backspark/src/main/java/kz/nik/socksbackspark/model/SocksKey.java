@@ -0,0 +1,18 @@
+package kz.nik.socksbackspark.model;
+
+import java.util.Comparator;
+
+/**
+ * Identifies a stock item: a (color, cottonPercentage) combination is unique in the socks table.
+ */
+public record SocksKey(String color, int cottonPercentage) implements Comparable<SocksKey> {
+
+    // items without a color sort last, as PostgreSQL orders NULLs in an ascending sort
+    private static final Comparator<String> COLOR_ORDER = Comparator.nullsLast(Comparator.naturalOrder());
+
+    @Override
+    public int compareTo(SocksKey other) {
+        int byColor = COLOR_ORDER.compare(color, other.color);
+        return byColor != 0 ? byColor : Integer.compare(cottonPercentage, other.cottonPercentage);
+    }
+}
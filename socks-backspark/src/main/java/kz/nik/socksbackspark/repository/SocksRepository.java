@@ -1,20 +1,106 @@
 package kz.nik.socksbackspark.repository;
 
+import jakarta.persistence.QueryHint;
 import kz.nik.socksbackspark.model.Socks;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface SocksRepository extends JpaRepository<Socks, Long> {
-    List<Socks> findByColor(String color);
-    List<Socks> findByCottonPercentageGreaterThan(Integer cottonPercentage);
-    List<Socks> findByCottonPercentageLessThan(Integer cottonPercentage);
-    List<Socks> findByCottonPercentage(Integer cottonPercentage);
-    List<Socks> findByColorAndCottonPercentageGreaterThan(String color, int cottonPercentage);
-    List<Socks> findByColorAndCottonPercentageLessThan(String color, int cottonPercentage);
+    Page<Socks> findByColor(String color, Pageable pageable);
+    Page<Socks> findByCottonPercentageGreaterThan(Integer cottonPercentage, Pageable pageable);
+    Page<Socks> findByCottonPercentageLessThan(Integer cottonPercentage, Pageable pageable);
+    Page<Socks> findByCottonPercentage(Integer cottonPercentage, Pageable pageable);
+    Page<Socks> findByColorAndCottonPercentageGreaterThan(String color, int cottonPercentage, Pageable pageable);
+    Page<Socks> findByColorAndCottonPercentageLessThan(String color, int cottonPercentage, Pageable pageable);
+    Page<Socks> findByColorAndCottonPercentage(String color, int cottonPercentage, Pageable pageable);
+    Page<Socks> findByCottonPercentageBetween(int cottonPercentageFrom, int cottonPercentageTo, Pageable pageable);
     List<Socks> findByColorAndCottonPercentage(String color, int cottonPercentage);
-    List<Socks> findByCottonPercentageBetween(int cottonPercentageFrom, int cottonPercentageTo);
+    boolean existsByColorAndCottonPercentage(String color, int cottonPercentage);
 
+    /**
+     * Keyset page of the unfiltered listing: the rows after {@code id} in id order, without a count query.
+     */
+    List<Socks> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Streams the whole table through a server-side cursor, {@code fetchSize} rows per round-trip. Has to be
+     * consumed and closed inside a transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select s from Socks s order by s.id")
+    Stream<Socks> streamAll();
+
+    /**
+     * Total quantity of the rows whose cotton percentage lies in {@code [from, to]}, summed by the database.
+     */
+    @Query("select coalesce(sum(s.quantity), 0L) from Socks s where s.cottonPercentage between :from and :to")
+    long sumQuantity(@Param("from") int cottonPercentageFrom, @Param("to") int cottonPercentageTo);
+
+    @Query("select coalesce(sum(s.quantity), 0L) from Socks s " +
+            "where s.color = :color and s.cottonPercentage between :from and :to")
+    long sumQuantityByColor(@Param("color") String color, @Param("from") int cottonPercentageFrom,
+                            @Param("to") int cottonPercentageTo);
+
+    @Query("select s.color as color, sum(s.quantity) as totalQuantity from Socks s " +
+            "where s.cottonPercentage between :from and :to group by s.color order by s.color")
+    List<ColorTotal> sumQuantityGroupByColor(@Param("from") int cottonPercentageFrom,
+                                             @Param("to") int cottonPercentageTo);
+
+    @Query("select s.color as color, sum(s.quantity) as totalQuantity from Socks s " +
+            "where s.color = :color and s.cottonPercentage between :from and :to group by s.color")
+    List<ColorTotal> sumQuantityByColorGroupByColor(@Param("color") String color,
+                                                    @Param("from") int cottonPercentageFrom,
+                                                    @Param("to") int cottonPercentageTo);
+
+    @Query("select s.cottonPercentage as cottonPercentage, sum(s.quantity) as totalQuantity from Socks s " +
+            "where s.cottonPercentage between :from and :to " +
+            "group by s.cottonPercentage order by s.cottonPercentage")
+    List<CottonPercentageTotal> sumQuantityGroupByCottonPercentage(@Param("from") int cottonPercentageFrom,
+                                                                   @Param("to") int cottonPercentageTo);
+
+    @Query("select s.cottonPercentage as cottonPercentage, sum(s.quantity) as totalQuantity from Socks s " +
+            "where s.color = :color and s.cottonPercentage between :from and :to " +
+            "group by s.cottonPercentage order by s.cottonPercentage")
+    List<CottonPercentageTotal> sumQuantityByColorGroupByCottonPercentage(@Param("color") String color,
+                                                                          @Param("from") int cottonPercentageFrom,
+                                                                          @Param("to") int cottonPercentageTo);
+
+    /**
+     * Decrements the stock in a single conditional statement.
+     *
+     * @return 1 if the stock was decreased, 0 if the item does not exist or has less than {@code quantity}
+     */
+    @Modifying
+    @Transactional
+    @Query("update Socks s set s.quantity = s.quantity - :quantity " +
+            "where s.color = :color and s.cottonPercentage = :cottonPercentage and s.quantity >= :quantity")
+    int decreaseQuantity(@Param("color") String color, @Param("cottonPercentage") int cottonPercentage,
+                         @Param("quantity") int quantity);
+
+    interface ColorTotal {
+        String getColor();
+
+        Long getTotalQuantity();
+    }
+
+    interface CottonPercentageTotal {
+        Integer getCottonPercentage();
+
+        Long getTotalQuantity();
+    }
 }
@@ -0,0 +1,111 @@
+package kz.nik.socksbackspark.repository.reactive;
+
+import kz.nik.socksbackspark.model.Socks;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking R2DBC counterpart of {@link kz.nik.socksbackspark.repository.SocksRepository}, used by the
+ * {@code reactive} profile. Rows are mapped by Spring Data Relational's default naming, so {@code cottonPercentage}
+ * reads the {@code cotton_percentage} column of the same Flyway-managed table. Paged finders return the rows of
+ * one page as a {@link Flux}, without a count query.
+ */
+@Repository
+public interface ReactiveSocksRepository extends R2dbcRepository<Socks, Long> {
+    Flux<Socks> findByColor(String color, Pageable pageable);
+    Flux<Socks> findByCottonPercentageGreaterThan(Integer cottonPercentage, Pageable pageable);
+    Flux<Socks> findByCottonPercentageLessThan(Integer cottonPercentage, Pageable pageable);
+    Flux<Socks> findByCottonPercentage(Integer cottonPercentage, Pageable pageable);
+    Flux<Socks> findByColorAndCottonPercentageGreaterThan(String color, int cottonPercentage, Pageable pageable);
+    Flux<Socks> findByColorAndCottonPercentageLessThan(String color, int cottonPercentage, Pageable pageable);
+    Flux<Socks> findByColorAndCottonPercentage(String color, int cottonPercentage, Pageable pageable);
+    Flux<Socks> findByCottonPercentageBetween(int cottonPercentageFrom, int cottonPercentageTo, Pageable pageable);
+    Flux<Socks> findAllBy(Pageable pageable);
+    Flux<Socks> findByColorAndCottonPercentage(String color, int cottonPercentage);
+    Mono<Boolean> existsByColorAndCottonPercentage(String color, int cottonPercentage);
+
+    /**
+     * Keyset page of the unfiltered listing: the rows after {@code id} in id order.
+     */
+    Flux<Socks> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    /**
+     * Streams the whole table in id order; rows are fetched as the subscriber requests them.
+     */
+    @Query("SELECT id, color, cotton_percentage, quantity FROM socks ORDER BY id")
+    Flux<Socks> streamAll();
+
+    @Query("SELECT coalesce(sum(quantity), 0) FROM socks WHERE cotton_percentage BETWEEN :from AND :to")
+    Mono<Long> sumQuantity(@Param("from") int cottonPercentageFrom, @Param("to") int cottonPercentageTo);
+
+    @Query("SELECT coalesce(sum(quantity), 0) FROM socks " +
+            "WHERE color = :color AND cotton_percentage BETWEEN :from AND :to")
+    Mono<Long> sumQuantityByColor(@Param("color") String color, @Param("from") int cottonPercentageFrom,
+                                  @Param("to") int cottonPercentageTo);
+
+    @Query("SELECT color, sum(quantity) AS total_quantity FROM socks " +
+            "WHERE cotton_percentage BETWEEN :from AND :to GROUP BY color ORDER BY color")
+    Flux<ColorTotal> sumQuantityGroupByColor(@Param("from") int cottonPercentageFrom,
+                                             @Param("to") int cottonPercentageTo);
+
+    @Query("SELECT color, sum(quantity) AS total_quantity FROM socks " +
+            "WHERE color = :color AND cotton_percentage BETWEEN :from AND :to GROUP BY color")
+    Flux<ColorTotal> sumQuantityByColorGroupByColor(@Param("color") String color,
+                                                    @Param("from") int cottonPercentageFrom,
+                                                    @Param("to") int cottonPercentageTo);
+
+    @Query("SELECT cotton_percentage, sum(quantity) AS total_quantity FROM socks " +
+            "WHERE cotton_percentage BETWEEN :from AND :to GROUP BY cotton_percentage ORDER BY cotton_percentage")
+    Flux<CottonPercentageTotal> sumQuantityGroupByCottonPercentage(@Param("from") int cottonPercentageFrom,
+                                                                   @Param("to") int cottonPercentageTo);
+
+    @Query("SELECT cotton_percentage, sum(quantity) AS total_quantity FROM socks " +
+            "WHERE color = :color AND cotton_percentage BETWEEN :from AND :to " +
+            "GROUP BY cotton_percentage ORDER BY cotton_percentage")
+    Flux<CottonPercentageTotal> sumQuantityByColorGroupByCottonPercentage(@Param("color") String color,
+                                                                          @Param("from") int cottonPercentageFrom,
+                                                                          @Param("to") int cottonPercentageTo);
+
+    /**
+     * Decrements the stock in a single conditional statement.
+     *
+     * @return 1 if the stock was decreased, 0 if the item does not exist or has less than {@code quantity}
+     */
+    @Modifying
+    @Query("UPDATE socks SET quantity = quantity - :quantity " +
+            "WHERE color = :color AND cotton_percentage = :cottonPercentage AND quantity >= :quantity")
+    Mono<Integer> decreaseQuantity(@Param("color") String color, @Param("cottonPercentage") int cottonPercentage,
+                                   @Param("quantity") int quantity);
+
+    /**
+     * Adds stock for a single item without a prior SELECT, as {@code SocksUpsertEngine.upsert} does.
+     */
+    @Modifying
+    @Query("INSERT INTO socks (color, cotton_percentage, quantity) VALUES (:color, :cottonPercentage, :quantity) " +
+            "ON CONFLICT (color, cotton_percentage) DO UPDATE SET quantity = socks.quantity + excluded.quantity")
+    Mono<Integer> increaseQuantity(@Param("color") String color, @Param("cottonPercentage") int cottonPercentage,
+                                   @Param("quantity") int quantity);
+
+    /**
+     * Set-based upsert of pre-aggregated quantities, the same statement {@code SocksUpsertEngine} runs over JDBC.
+     */
+    @Modifying
+    @Query("INSERT INTO socks (color, cotton_percentage, quantity) " +
+            "SELECT * FROM unnest(:colors::varchar[], :cottonPercentages::int[], :quantities::int[]) " +
+            "ON CONFLICT (color, cotton_percentage) DO UPDATE SET quantity = socks.quantity + excluded.quantity")
+    Mono<Integer> upsertQuantities(@Param("colors") String[] colors,
+                                   @Param("cottonPercentages") Integer[] cottonPercentages,
+                                   @Param("quantities") Integer[] quantities);
+
+    record ColorTotal(String color, Long totalQuantity) {
+    }
+
+    record CottonPercentageTotal(Integer cottonPercentage, Long totalQuantity) {
+    }
+}
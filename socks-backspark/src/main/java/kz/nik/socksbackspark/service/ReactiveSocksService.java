@@ -0,0 +1,60 @@
+package kz.nik.socksbackspark.service;
+
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksTotalDto;
+import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link SocksService} for the {@code reactive} profile. Reads are streamed as
+ * {@link Flux} rows instead of {@link kz.nik.socksbackspark.dto.SocksPage}s, so no total count is computed.
+ */
+public interface ReactiveSocksService {
+
+    Flux<SocksDto> getFilteredSocks(
+            String color,
+            String operation,
+            Integer cottonPercentage,
+            Integer cottonPercentageFrom,
+            Integer cottonPercentageTo,
+            String sortBy,
+            String sortDirection,
+            int page,
+            Integer size);
+
+    /**
+     * Lists all socks in id order, either by page index or, when {@code cursor} is set, as the rows after that id.
+     */
+    Flux<SocksDto> getAllSocks(Long cursor, int page, Integer size);
+
+    /**
+     * Same filters and grouping as {@link SocksService#getTotalQuantity}.
+     */
+    Mono<SocksTotalDto> getTotalQuantity(
+            String color,
+            String operation,
+            Integer cottonPercentage,
+            Integer cottonPercentageFrom,
+            Integer cottonPercentageTo,
+            String groupBy);
+
+    Mono<SocksDto> updateSock(Long id, SocksDto socksDto);
+
+    Mono<Void> addSocks(SocksDto socksDto);
+
+    Mono<Void> decreaseSocksQuantity(String color, int cottonPercentage, int quantity);
+
+    /**
+     * Spools the upload to a temporary file, then parses and writes it off the event loop.
+     */
+    Mono<BatchImportResult> processCsvFile(FilePart file);
+
+    Mono<BatchImportResult> processExcelFile(FilePart file);
+
+    /**
+     * Streams every row in id order, fetched from the database as the client consumes them.
+     */
+    Flux<SocksDto> exportSocks();
+}
@@ -1,24 +1,47 @@
 package kz.nik.socksbackspark.service;
 
 import com.opencsv.CSVReader;
+import kz.nik.socksbackspark.dto.BatchImportResult;
 import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksPage;
+import kz.nik.socksbackspark.dto.SocksTotalDto;
 import kz.nik.socksbackspark.model.Socks;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.List;
 
 public interface SocksService {
 
-    List<SocksDto> getFilteredSocks(
+    SocksPage getFilteredSocks(
             String color,
             String operation,
             Integer cottonPercentage,
             Integer cottonPercentageFrom,
             Integer cottonPercentageTo,
             String sortBy,
-            String sortDirection);
-    List<SocksDto>getAllSocks();
+            String sortDirection,
+            int page,
+            Integer size);
+
+    /**
+     * Lists all socks in id order, either by page index or, when {@code cursor} is set, as the rows after that id.
+     */
+    SocksPage getAllSocks(Long cursor, int page, Integer size);
+
+    /**
+     * Sums the quantity of the matching socks in the database, optionally grouped by {@code color} or
+     * {@code cottonPercentage}. Takes the same filters as {@link #getFilteredSocks}, all of them optional.
+     */
+    SocksTotalDto getTotalQuantity(
+            String color,
+            String operation,
+            Integer cottonPercentage,
+            Integer cottonPercentageFrom,
+            Integer cottonPercentageTo,
+            String groupBy);
 
     SocksDto updateSock(Long id, SocksDto socksDto);
 
@@ -26,8 +49,32 @@ public interface SocksService {
 
     void decreaseSocksQuantity(String color, int cottonPercentage, int quantity);
 
-     void processCsvFile(MultipartFile file) throws Exception;
-     void processExcelFile(MultipartFile file) throws Exception;
+     BatchImportResult processCsvFile(MultipartFile file) throws Exception;
+     BatchImportResult processExcelFile(MultipartFile file) throws Exception;
+
+    /**
+     * Imports a CSV read straight from {@code inputStream}, e.g. a raw request body, without storing it first.
+     *
+     * @throws kz.nik.socksbackspark.exceptions.UploadTooLargeException if the stream enforces a size limit and
+     *                                                                  the upload exceeds it
+     */
+    BatchImportResult processCsvStream(InputStream inputStream) throws Exception;
+
+    /**
+     * Imports an Excel workbook from {@code inputStream}; it is spooled to local disk first, as the OOXML
+     * package needs random access.
+     *
+     * @throws kz.nik.socksbackspark.exceptions.UploadTooLargeException if the stream enforces a size limit and
+     *                                                                  the upload exceeds it
+     */
+    BatchImportResult processExcelStream(InputStream inputStream) throws Exception;
+
+    /**
+     * Writes every row as one JSON object per line (NDJSON) without buffering the inventory in memory.
+     *
+     * @return number of rows written
+     */
+    long exportSocks(OutputStream outputStream);
 
 
 }
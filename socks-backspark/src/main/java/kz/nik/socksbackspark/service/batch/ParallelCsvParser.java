@@ -0,0 +1,208 @@
+package kz.nik.socksbackspark.service.batch;
+
+import com.opencsv.CSVReader;
+import kz.nik.socksbackspark.model.SocksKey;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a spooled CSV file on several cores. The file is split into up to {@code parallelism} byte ranges that
+ * end on a record boundary, each range is parsed by OpenCSV on a fork-join pool into its own
+ * {@link SocksQuantityAggregate}, and the partial aggregates are merged per (color, cottonPercentage).
+ * <p>
+ * Finding the boundaries takes one sequential byte scan up to the last split point that tracks whether it is
+ * inside a quoted field, so quoted newlines never split a record. Quotes are escaped by doubling them or with a
+ * backslash, as OpenCSV's default parser accepts. The split points fall on {@code '\n'} bytes, which never occur
+ * inside a multi-byte UTF-8 character. Memory is bounded by the number of distinct stock items, not by rows.
+ */
+public class ParallelCsvParser {
+
+    private static final long DEFAULT_MIN_RANGE_BYTES = 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final int parallelism;
+    private final long minRangeBytes;
+
+    public ParallelCsvParser(int parallelism) {
+        this(parallelism, DEFAULT_MIN_RANGE_BYTES);
+    }
+
+    /**
+     * @param minRangeBytes smaller files are split into fewer ranges, so that small uploads stay on one thread
+     */
+    public ParallelCsvParser(int parallelism, long minRangeBytes) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        this.minRangeBytes = Math.max(1, minRangeBytes);
+    }
+
+    /**
+     * Parses the file, whose first record is a header, into one quantity per stock item.
+     */
+    public Result parse(Path file) throws Exception {
+        List<long[]> ranges = split(file);
+        if (ranges.size() == 1) {
+            SocksQuantityAggregate aggregate = parseRange(file, 0, ranges.get(0)[1], true);
+            return new Result(aggregate.getQuantities(), aggregate.getRows(), 1);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Callable<SocksQuantityAggregate>> tasks = new ArrayList<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                boolean header = i == 0;
+                tasks.add(() -> parseRange(file, range[0], range[1], header));
+            }
+
+            Map<SocksKey, Integer> quantities = new HashMap<>();
+            long rows = 0;
+            for (Future<SocksQuantityAggregate> partial : pool.invokeAll(tasks)) {
+                SocksQuantityAggregate aggregate = unwrap(partial);
+                aggregate.getQuantities().forEach((key, quantity) -> quantities.merge(key, quantity,
+                        Math::addExact));
+                rows += aggregate.getRows();
+            }
+            return new Result(quantities, rows, ranges.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return {@code {start, end}} byte ranges covering the whole file, each starting at a record
+     */
+    private List<long[]> split(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int rangeCount = (int) Math.max(1, Math.min(parallelism, size / minRangeBytes));
+
+            List<long[]> ranges = new ArrayList<>();
+            long start = 0;
+            int next = 1;
+            long target = size * next / rangeCount;
+            boolean inQuotes = false;
+            boolean escaped = false;
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            long position = 0;
+
+            while (next < rangeCount && channel.read(buffer, position) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining() && next < rangeCount) {
+                    byte b = buffer.get();
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\' && inQuotes) {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (b == '\n' && !inQuotes && position >= target) {
+                        ranges.add(new long[]{start, position + 1});
+                        start = position + 1;
+                        // a long record may run past several split points
+                        while (next < rangeCount && size * next / rangeCount <= position) {
+                            next++;
+                        }
+                        target = size * next / rangeCount;
+                    }
+                    position++;
+                }
+                buffer.clear();
+            }
+            if (start < size || ranges.isEmpty()) {
+                ranges.add(new long[]{start, size});
+            }
+            return ranges;
+        }
+    }
+
+    private static SocksQuantityAggregate parseRange(Path file, long start, long end, boolean header)
+            throws Exception {
+        SocksQuantityAggregate aggregate = new SocksQuantityAggregate();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             CSVReader csvReader = new CSVReader(new InputStreamReader(new BufferedInputStream(
+                     new RangeInputStream(channel, start, end), SCAN_BUFFER_SIZE), StandardCharsets.UTF_8))) {
+            if (header) {
+                csvReader.readNext();
+            }
+
+            String[] row;
+            while ((row = csvReader.readNext()) != null) {
+                aggregate.add(row[0], Integer.parseInt(row[1]), Integer.parseInt(row[2]));
+            }
+        }
+        return aggregate;
+    }
+
+    private static SocksQuantityAggregate unwrap(Future<SocksQuantityAggregate> partial) throws Exception {
+        try {
+            return partial.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param quantities one quantity per stock item, summed over the whole file
+     * @param rows       data rows parsed
+     * @param ranges     byte ranges the file was split into
+     */
+    public record Result(Map<SocksKey, Integer> quantities, long rows, int ranges) {
+    }
+
+    /**
+     * Reads {@code [start, end)} of the channel with positional reads, so ranges of one file can be read in
+     * parallel.
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int toRead = (int) Math.min(length, end - position);
+            int read = channel.read(ByteBuffer.wrap(bytes, offset, toRead), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package kz.nik.socksbackspark.service.batch;
+
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.SocksDto;
+
+/**
+ * Folds parsed batch rows into one quantity per (color, cottonPercentage) and hands them to the
+ * {@link SocksUpsertEngine} when the file is finished, so every stock item is written once per file. Memory is
+ * bounded by {@code chunkSize} distinct stock items: a larger catalogue is flushed early in several chunks.
+ * Not thread-safe: one writer per imported file.
+ */
+public class SocksBatchWriter {
+
+    private final SocksUpsertEngine upsertEngine;
+    private final int chunkSize;
+    private final SocksQuantityAggregate aggregate = new SocksQuantityAggregate();
+    private final long startedAt = System.currentTimeMillis();
+
+    private long rowsProcessed;
+    private long rowsWritten;
+    private int chunks;
+    private int peakChunkSize;
+
+    public SocksBatchWriter(SocksUpsertEngine upsertEngine, int chunkSize) {
+        this.upsertEngine = upsertEngine;
+        this.chunkSize = chunkSize;
+    }
+
+    public void add(SocksDto socksDto) {
+        add(socksDto.getColor(), socksDto.getCottonPercentage(), socksDto.getQuantity());
+    }
+
+    public void add(String color, int cottonPercentage, int quantity) {
+        aggregate.add(color, cottonPercentage, quantity);
+        rowsProcessed++;
+        if (aggregate.size() >= chunkSize) {
+            flush();
+        }
+    }
+
+    /**
+     * @return number of added rows whose chunk has already been written to the database
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Writes the remaining rows and returns the import statistics.
+     */
+    public BatchImportResult finish() {
+        flush();
+        return BatchImportResult.builder()
+                .rowsProcessed(rowsProcessed)
+                .chunks(chunks)
+                .peakChunkSize(peakChunkSize)
+                .durationMillis(System.currentTimeMillis() - startedAt)
+                .build();
+    }
+
+    private void flush() {
+        if (aggregate.isEmpty()) {
+            return;
+        }
+        upsertEngine.apply(aggregate.getQuantities());
+        peakChunkSize = Math.max(peakChunkSize, aggregate.size());
+        rowsWritten += aggregate.getRows();
+        chunks++;
+        aggregate.clear();
+    }
+}
@@ -0,0 +1,163 @@
+package kz.nik.socksbackspark.service.batch;
+
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.service.inventory.SocksChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk-loads batch rows with the PostgreSQL {@code COPY FROM STDIN} protocol instead of INSERT statements. Rows
+ * are streamed into a temporary staging table as they are parsed, then merged into the socks table by one
+ * set-based {@code INSERT ... SELECT ... GROUP BY ... ON CONFLICT} that sums duplicate rows and adds the totals
+ * to existing stock. Rows are not aggregated in the JVM, so memory stays flat whatever the file size.
+ * <p>
+ * A load is one transaction: if the producer or the merge fails, nothing is written. A
+ * {@link SocksChangedEvent} with the merged items is published after the commit.
+ */
+@Slf4j
+@Component
+public class SocksCopyLoader {
+
+    static final String CREATE_STAGING_SQL = "CREATE TEMPORARY TABLE socks_staging (color varchar(255), " +
+            "cotton_percentage integer NOT NULL, quantity integer NOT NULL) ON COMMIT DROP";
+
+    static final String COPY_SQL = "COPY socks_staging (color, cotton_percentage, quantity) FROM STDIN " +
+            "(FORMAT csv)";
+
+    // a stable key order keeps concurrent imports from locking the same rows in opposite order
+    static final String MERGE_SQL = "INSERT INTO socks (color, cotton_percentage, quantity) " +
+            "SELECT color, cotton_percentage, sum(quantity) FROM socks_staging " +
+            "GROUP BY color, cotton_percentage ORDER BY color, cotton_percentage " +
+            "ON CONFLICT (color, cotton_percentage) DO UPDATE SET quantity = socks.quantity + excluded.quantity " +
+            "RETURNING color, cotton_percentage";
+
+    private static final int COPY_BUFFER_CHARS = 32 * 1024;
+
+    private final DataSource dataSource;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SocksCopyLoader(DataSource dataSource, ApplicationEventPublisher eventPublisher) {
+        this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Copies the rows passed by {@code producer} to its {@link RowSink} and merges them into the socks table.
+     * Exceptions of the producer are rethrown as they are, after the transaction has been rolled back.
+     */
+    public Result load(RowProducer producer) throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_STAGING_SQL);
+                }
+
+                long rows = copy(connection, producer);
+                List<SocksKey> keys = merge(connection);
+                connection.commit();
+
+                eventPublisher.publishEvent(SocksChangedEvent.of(keys));
+                log.debug("Copied {} rows and merged {} stock items", rows, keys.size());
+                return new Result(rows, keys.size());
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static long copy(Connection connection, RowProducer producer) throws Exception {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+        try {
+            CopyRowSink sink = new CopyRowSink(copyIn);
+            producer.produce(sink);
+            sink.flush();
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static List<SocksKey> merge(Connection connection) throws SQLException {
+        List<SocksKey> keys = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(MERGE_SQL)) {
+            while (resultSet.next()) {
+                keys.add(new SocksKey(resultSet.getString(1), resultSet.getInt(2)));
+            }
+        }
+        return keys;
+    }
+
+    @FunctionalInterface
+    public interface RowProducer {
+        void produce(RowSink sink) throws Exception;
+    }
+
+    public interface RowSink {
+        void add(String color, int cottonPercentage, int quantity) throws SQLException;
+    }
+
+    /**
+     * @param rows  rows copied into the staging table
+     * @param items distinct stock items inserted or updated
+     */
+    public record Result(long rows, int items) {
+    }
+
+    /**
+     * Encodes rows as CSV records and hands them to the COPY stream in blocks of {@link #COPY_BUFFER_CHARS}.
+     * The color is always quoted, so an empty color stays an empty string instead of becoming NULL.
+     */
+    private static class CopyRowSink implements RowSink {
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(COPY_BUFFER_CHARS + 256);
+
+        CopyRowSink(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        @Override
+        public void add(String color, int cottonPercentage, int quantity) throws SQLException {
+            buffer.append('"');
+            for (int i = 0; i < color.length(); i++) {
+                char c = color.charAt(i);
+                if (c == '"') {
+                    buffer.append('"');
+                }
+                buffer.append(c);
+            }
+            buffer.append("\",").append(cottonPercentage).append(',').append(quantity).append('\n');
+            if (buffer.length() >= COPY_BUFFER_CHARS) {
+                flush();
+            }
+        }
+
+        void flush() throws SQLException {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package kz.nik.socksbackspark.service.batch;
+
+import kz.nik.socksbackspark.dto.SocksDto;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Row-by-row XLSX reader built on the POI event API. Only the current row is kept in memory, so heap usage
+ * does not depend on the size of the sheet. The first row of the first sheet is treated as a header.
+ */
+public class SocksExcelStreamReader {
+
+    /**
+     * Reads the first sheet of the workbook and passes every data row to {@code rowConsumer}.
+     *
+     * @return number of data rows read
+     */
+    public long read(File file, Consumer<SocksDto> rowConsumer) throws Exception {
+        return read(file, rowConsumer, e -> {
+            throw e;
+        });
+    }
+
+    /**
+     * Like {@link #read(File, Consumer)}, but passes rows with missing or malformed numeric cells to
+     * {@code rejectedRowHandler} instead of failing the whole sheet; the handler may still rethrow.
+     *
+     * @return number of data rows read, rejected rows included
+     */
+    public long read(File file, Consumer<SocksDto> rowConsumer,
+                     Consumer<IllegalArgumentException> rejectedRowHandler) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            RowHandler rowHandler = new RowHandler(rowConsumer, rejectedRowHandler);
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return 0;
+            }
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null, strings,
+                        rowHandler, new RawNumberFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+            return rowHandler.rowsRead;
+        }
+    }
+
+    // numeric cells are passed through unformatted so that e.g. "#,##0" styles do not break parsing
+    private static class RawNumberFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            return Double.toString(value);
+        }
+    }
+
+    private static class RowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Consumer<SocksDto> rowConsumer;
+        private final Consumer<IllegalArgumentException> rejectedRowHandler;
+        private final String[] values = new String[3];
+        private int currentColumn;
+        private long rowsRead;
+
+        RowHandler(Consumer<SocksDto> rowConsumer, Consumer<IllegalArgumentException> rejectedRowHandler) {
+            this.rowConsumer = rowConsumer;
+            this.rejectedRowHandler = rejectedRowHandler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            values[0] = null;
+            values[1] = null;
+            values[2] = null;
+            currentColumn = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum == 0 || values[0] == null) {
+                return;
+            }
+
+            rowsRead++;
+            SocksDto socksDto = new SocksDto();
+            socksDto.setColor(values[0]);
+            try {
+                socksDto.setCottonPercentage(toInt(values[1]));
+                socksDto.setQuantity(toInt(values[2]));
+            } catch (IllegalArgumentException e) {
+                rejectedRowHandler.accept(e);
+                return;
+            }
+
+            rowConsumer.accept(socksDto);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : currentColumn + 1;
+            currentColumn = column;
+            if (column < values.length) {
+                values[column] = formattedValue;
+            }
+        }
+
+        private static int toInt(String value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Missing numeric cell value");
+            }
+            return (int) Double.parseDouble(value);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package kz.nik.socksbackspark.service.batch;
+
+import kz.nik.socksbackspark.dto.ImportJobDto;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * State of one asynchronous batch import. Updated by the worker that runs it and read by any request thread, so
+ * every field is either final or volatile; the counters have a single writer.
+ */
+public class SocksImportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String fileName;
+    private final String format;
+    private final Path spoolFile;
+    private final Instant createdAt = Instant.now();
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUED);
+
+    private volatile Future<?> future;
+    private volatile boolean cancelRequested;
+    private volatile long rowsParsed;
+    private volatile long rowsWritten;
+    private volatile long rowsRejected;
+    private volatile String error;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+
+    SocksImportJob(String fileName, String format, Path spoolFile) {
+        this.fileName = fileName;
+        this.format = format;
+        this.spoolFile = spoolFile;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    String getFormat() {
+        return format;
+    }
+
+    Path getSpoolFile() {
+        return spoolFile;
+    }
+
+    Future<?> getFuture() {
+        return future;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * @return false if the job was cancelled while it was queued
+     */
+    boolean start() {
+        if (!status.compareAndSet(Status.QUEUED, Status.RUNNING)) {
+            return false;
+        }
+        startedAt = Instant.now();
+        return true;
+    }
+
+    /**
+     * Cancels a queued job at once; a running job stops at its next row.
+     *
+     * @return true if the job was still queued
+     */
+    boolean cancel() {
+        cancelRequested = true;
+        if (status.compareAndSet(Status.QUEUED, Status.CANCELLED)) {
+            finishedAt = Instant.now();
+            return true;
+        }
+        return false;
+    }
+
+    void rowParsed(long rowsWritten) {
+        rowsParsed++;
+        this.rowsWritten = rowsWritten;
+    }
+
+    void rowRejected() {
+        rowsParsed++;
+        rowsRejected++;
+    }
+
+    void finish(Status finalStatus, long rowsWritten, String error) {
+        this.rowsWritten = rowsWritten;
+        this.error = error;
+        finishedAt = Instant.now();
+        status.set(finalStatus);
+    }
+
+    public ImportJobDto toDto() {
+        Instant started = startedAt;
+        Instant finished = finishedAt;
+        long written = rowsWritten;
+        double rowsPerSecond = 0;
+        if (started != null) {
+            long millis = (finished != null ? finished : Instant.now()).toEpochMilli() - started.toEpochMilli();
+            rowsPerSecond = millis > 0 ? written * 1000.0 / millis : written;
+        }
+        return ImportJobDto.builder()
+                .id(id)
+                .fileName(fileName)
+                .status(status.get().name())
+                .rowsParsed(rowsParsed)
+                .rowsWritten(written)
+                .rowsRejected(rowsRejected)
+                .rowsPerSecond(rowsPerSecond)
+                .error(error)
+                .createdAt(createdAt)
+                .startedAt(started)
+                .finishedAt(finished)
+                .build();
+    }
+}
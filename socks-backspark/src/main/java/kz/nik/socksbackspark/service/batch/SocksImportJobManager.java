@@ -0,0 +1,294 @@
+package kz.nik.socksbackspark.service.batch;
+
+import com.opencsv.CSVReader;
+import jakarta.annotation.PreDestroy;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.ImportJobDto;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.exceptions.TooManyImportsException;
+import kz.nik.socksbackspark.service.batch.SocksImportJob.Status;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batch imports in the background. The upload is spooled to local disk and the request returns a job id at
+ * once; at most {@code socks.batch.jobs.max-concurrent} imports run at the same time and up to
+ * {@code socks.batch.jobs.max-queued} more wait for a worker, further submissions are rejected with
+ * {@link TooManyImportsException}. A slot is reserved before the upload is spooled, so a rejected submission
+ * does not write anything to disk.
+ * <p>
+ * Rows are written through a {@link SocksBatchWriter}, so every chunk is committed on its own: a cancelled or
+ * failed job keeps the chunks written before it stopped. Unlike the synchronous import, a row with a missing or
+ * malformed column is counted as rejected and skipped instead of failing the file. Finished jobs are forgotten
+ * after {@code socks.batch.jobs.retention-minutes}, checked whenever jobs are submitted or looked up.
+ */
+@Slf4j
+@Component
+public class SocksImportJobManager {
+
+    private final SocksUpsertEngine upsertEngine;
+    private final SocksMetrics socksMetrics;
+    private final Duration retention;
+    private final ThreadPoolExecutor workers;
+    // running and queued jobs; taken before spooling, given back when the job ends or leaves the queue
+    private final Semaphore slots;
+    private final SocksExcelStreamReader excelReader = new SocksExcelStreamReader();
+    private final Map<String, SocksImportJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${socks.batch.chunk-size:1000}")
+    private int batchChunkSize = 1000;
+
+    public SocksImportJobManager(SocksUpsertEngine upsertEngine,
+                                 SocksMetrics socksMetrics,
+                                 @Value("${socks.batch.jobs.max-concurrent:2}") int maxConcurrent,
+                                 @Value("${socks.batch.jobs.max-queued:8}") int maxQueued,
+                                 @Value("${socks.batch.jobs.retention-minutes:60}") long retentionMinutes) {
+        this.upsertEngine = upsertEngine;
+        this.socksMetrics = socksMetrics;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.slots = new Semaphore(maxConcurrent + maxQueued);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        // the queue is bounded by the slots: a finishing job gives its slot back before its worker is free again
+        this.workers = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "socks-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Spools the upload and queues its import.
+     *
+     * @throws InvalidDataFormatException if the file is neither CSV nor Excel
+     * @throws TooManyImportsException    if every worker is busy and the queue is full
+     */
+    public ImportJobDto submit(MultipartFile file) throws IOException {
+        String fileName = file.getOriginalFilename();
+        String format;
+        if (fileName != null && fileName.endsWith(".csv")) {
+            format = "csv";
+        } else if (fileName != null && (fileName.endsWith(".xlsx") || fileName.endsWith(".xls"))) {
+            format = "xlsx";
+        } else {
+            throw new InvalidDataFormatException("Only CSV and Excel files are supported.");
+        }
+        evictFinished();
+        reserveSlot();
+
+        Path spoolFile;
+        try {
+            spoolFile = Files.createTempFile("socks-import-", "." + format);
+        } catch (IOException | RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        try {
+            file.transferTo(spoolFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spoolFile);
+            slots.release();
+            throw e;
+        }
+        return queue(fileName, format, spoolFile);
+    }
+
+    /**
+     * Spools a raw upload, e.g. a request body, and queues its import.
+     *
+     * @param format {@code csv} or {@code xlsx}
+     * @throws kz.nik.socksbackspark.exceptions.UploadTooLargeException if the stream enforces a size limit and
+     *                                                                  the upload exceeds it
+     * @throws TooManyImportsException                                  if every worker is busy and the queue is
+     *                                                                  full
+     */
+    public ImportJobDto submit(String fileName, String format, InputStream inputStream) throws IOException {
+        evictFinished();
+        reserveSlot();
+
+        Path spoolFile;
+        try {
+            spoolFile = SpoolFiles.spool(inputStream, "." + format);
+        } catch (IOException | RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        return queue(fileName, format, spoolFile);
+    }
+
+    private void reserveSlot() {
+        if (!slots.tryAcquire()) {
+            throw new TooManyImportsException("Too many imports in progress, " + workers.getQueue().size() +
+                    " queued.");
+        }
+    }
+
+    // expects a reserved slot, which it gives back if the job cannot be queued
+    private ImportJobDto queue(String fileName, String format, Path spoolFile) throws IOException {
+        try {
+            SocksImportJob job = new SocksImportJob(fileName, format, spoolFile);
+            jobs.put(job.getId(), job);
+            try {
+                job.setFuture(workers.submit(() -> run(job)));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.getId());
+                throw new TooManyImportsException("Too many imports in progress, " + workers.getQueue().size() +
+                        " queued.");
+            }
+            log.info("Queued import job {} for file {}", job.getId(), fileName);
+            return job.toDto();
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(spoolFile);
+            slots.release();
+            throw e;
+        }
+    }
+
+    public Optional<ImportJobDto> find(String id) {
+        evictFinished();
+        return Optional.ofNullable(jobs.get(id)).map(SocksImportJob::toDto);
+    }
+
+    /**
+     * Cancels the job: a queued job is dropped at once, a running one stops at its next row.
+     *
+     * @return the job state after the request, or empty if the id is unknown
+     */
+    public Optional<ImportJobDto> cancel(String id) {
+        evictFinished();
+        SocksImportJob job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (job.cancel()) {
+            // frees the queue slot; the task would otherwise only see the cancellation when a worker takes it
+            if (workers.remove((Runnable) job.getFuture())) {
+                slots.release();
+            }
+            deleteSpoolFile(job);
+            log.info("Cancelled queued import job {}", id);
+        }
+        return Optional.of(job.toDto());
+    }
+
+    private void run(SocksImportJob job) {
+        try {
+            runJob(job);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private void runJob(SocksImportJob job) {
+        if (!job.start()) {
+            return;
+        }
+        log.info("Started import job {}", job.getId());
+        SocksBatchWriter batchWriter = new SocksBatchWriter(upsertEngine, batchChunkSize);
+        try {
+            if ("csv".equals(job.getFormat())) {
+                readCsv(job, batchWriter);
+            } else {
+                excelReader.read(job.getSpoolFile().toFile(), row -> {
+                    checkCancelled(job);
+                    batchWriter.add(row);
+                    job.rowParsed(batchWriter.getRowsWritten());
+                }, e -> {
+                    checkCancelled(job);
+                    job.rowRejected();
+                });
+            }
+            checkCancelled(job);
+
+            BatchImportResult result = batchWriter.finish();
+            long rowsRejected = job.toDto().getRowsRejected();
+            socksMetrics.batchImported(job.getFormat(), result, rowsRejected);
+            job.finish(Status.COMPLETED, result.getRowsProcessed(), null);
+            log.info("Finished import job {}: {} rows in {} chunks ({} rows/s), {} rejected", job.getId(),
+                    result.getRowsProcessed(), result.getChunks(), Math.round(result.getRowsPerSecond()),
+                    rowsRejected);
+        } catch (Exception e) {
+            if (job.isCancelRequested()) {
+                job.finish(Status.CANCELLED, batchWriter.getRowsWritten(), null);
+                log.info("Cancelled import job {} after {} written rows", job.getId(), batchWriter.getRowsWritten());
+            } else {
+                job.finish(Status.FAILED, batchWriter.getRowsWritten(), e.getMessage());
+                socksMetrics.batchFailed(job.getFormat(), false);
+                log.error("Error in import job {}: {}", job.getId(), e.getMessage());
+            }
+        } finally {
+            deleteSpoolFile(job);
+        }
+    }
+
+    private void readCsv(SocksImportJob job, SocksBatchWriter batchWriter) throws Exception {
+        try (CSVReader csvReader = new CSVReader(Files.newBufferedReader(job.getSpoolFile(),
+                StandardCharsets.UTF_8))) {
+            // header row
+            csvReader.readNext();
+
+            String[] row;
+            while ((row = csvReader.readNext()) != null) {
+                checkCancelled(job);
+                int cottonPercentage;
+                int quantity;
+                try {
+                    cottonPercentage = Integer.parseInt(row[1]);
+                    quantity = Integer.parseInt(row[2]);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    job.rowRejected();
+                    continue;
+                }
+                batchWriter.add(row[0], cottonPercentage, quantity);
+                job.rowParsed(batchWriter.getRowsWritten());
+            }
+        }
+    }
+
+    private static void checkCancelled(SocksImportJob job) {
+        if (job.isCancelRequested() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Import job " + job.getId() + " was cancelled");
+        }
+    }
+
+    private void evictFinished() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static void deleteSpoolFile(SocksImportJob job) {
+        try {
+            Files.deleteIfExists(job.getSpoolFile());
+        } catch (IOException e) {
+            log.error("Error deleting spool file of import job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(SocksImportJob::cancel);
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,322 @@
+package kz.nik.socksbackspark.service.batch;
+
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Batch import as three stages connected by bounded queues, so that parsing and database writes overlap:
+ * <ol>
+ *     <li>parse - the caller's thread, which passes raw rows to {@link #add};</li>
+ *     <li>validate - one thread that converts the raw rows and folds them into one quantity per stock item,
+ *     handing a chunk on every {@code chunkSize} distinct items, as {@link SocksBatchWriter} does;</li>
+ *     <li>write - {@code writers} threads that apply the chunks with the {@link SocksUpsertEngine}.</li>
+ * </ol>
+ * A full queue blocks the stage in front of it, so memory is bounded by {@code queueCapacity} row batches,
+ * {@code queueCapacity} chunks and one chunk per writer. Chunks are committed on their own and are additive, so
+ * writers may apply them in any order; a failure in one stage stops the others.
+ * <p>
+ * Each stage reports the rows it handled, the time it was busy and the time it was blocked on its queues
+ * ({@code socks.batch.stage.*}); the live queue depths are published as {@code socks.batch.queue.depth}. A stage
+ * that is mostly busy while the others are blocked is the bottleneck. Not thread-safe on the parse side: one
+ * caller per pipeline.
+ *
+ * @param <T> raw row type produced by the parser
+ */
+@Slf4j
+public class SocksImportPipeline<T> implements AutoCloseable {
+
+    public enum Stage {
+        PARSE,
+        VALIDATE,
+        WRITE
+    }
+
+    private static final int ROW_BATCH_SIZE = 256;
+    private static final long POLL_MILLIS = 100;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+    private static final Chunk END = new Chunk(Map.of(), 0);
+
+    private final SocksUpsertEngine upsertEngine;
+    private final Function<T, SocksDto> validator;
+    private final SocksMetrics socksMetrics;
+    private final String format;
+    private final int chunkSize;
+    private final int writers;
+    private final long startedAt = System.currentTimeMillis();
+    private final long parseStartedAt = System.nanoTime();
+
+    private final BlockingQueue<List<T>> rowQueue;
+    private final BlockingQueue<Chunk> chunkQueue;
+    private final AtomicReference<StageException> failure = new AtomicReference<>();
+    private final ExecutorService stages;
+    private final List<Future<?>> stageFutures = new ArrayList<>();
+    private final Map<Stage, StageStats> stats = new EnumMap<>(Stage.class);
+
+    private List<T> rowBatch = new ArrayList<>(ROW_BATCH_SIZE);
+    private int chunks;
+    private int peakChunkSize;
+    private long rowsProcessed;
+    private boolean finished;
+
+    public SocksImportPipeline(SocksUpsertEngine upsertEngine, Function<T, SocksDto> validator,
+                               SocksMetrics socksMetrics, String format, int chunkSize, int writers,
+                               int queueCapacity) {
+        this.upsertEngine = upsertEngine;
+        this.validator = validator;
+        this.socksMetrics = socksMetrics;
+        this.format = format;
+        this.chunkSize = chunkSize;
+        this.writers = writers;
+        this.rowQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.chunkQueue = new ArrayBlockingQueue<>(queueCapacity);
+        for (Stage stage : Stage.values()) {
+            stats.put(stage, new StageStats());
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.stages = Executors.newFixedThreadPool(1 + writers, runnable -> {
+            Thread thread = new Thread(runnable, "socks-batch-" + format + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        stageFutures.add(stages.submit(() -> runStage(Stage.VALIDATE, this::validate)));
+        for (int i = 0; i < writers; i++) {
+            stageFutures.add(stages.submit(() -> runStage(Stage.WRITE, this::write)));
+        }
+    }
+
+    /**
+     * Hands one raw row to the validate stage; blocks while its queue is full.
+     *
+     * @throws StageException if a later stage has failed
+     */
+    public void add(T row) {
+        rowBatch.add(row);
+        if (rowBatch.size() >= ROW_BATCH_SIZE) {
+            enqueueRows(rowBatch);
+            rowBatch = new ArrayList<>(ROW_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Waits until every row has been written and reports the statistics of the stages.
+     *
+     * @throws StageException if a stage has failed
+     */
+    public BatchImportResult finish() {
+        StageStats parse = stats.get(Stage.PARSE);
+        if (!rowBatch.isEmpty()) {
+            enqueueRows(rowBatch);
+        }
+        parse.busyNanos.add(System.nanoTime() - parseStartedAt - parse.blockedNanos.sum());
+        // an empty batch marks the end of the rows
+        enqueueRows(new ArrayList<>());
+
+        for (Future<?> stage : stageFutures) {
+            try {
+                stage.get();
+            } catch (ExecutionException e) {
+                // the failure itself is recorded by the stage
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StageException(Stage.PARSE, e);
+            }
+        }
+        finished = true;
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        parse.rows.add(rowsProcessed);
+        stats.forEach(this::report);
+        return BatchImportResult.builder()
+                .rowsProcessed(rowsProcessed)
+                .chunks(chunks)
+                .peakChunkSize(peakChunkSize)
+                .durationMillis(System.currentTimeMillis() - startedAt)
+                .build();
+    }
+
+    /**
+     * Stops the stages and waits up to {@value #CLOSE_TIMEOUT_SECONDS} s for writes in progress to end, so that no
+     * chunk is still being applied once the caller reports the import as failed; rows not written yet are dropped.
+     * Does nothing after a successful {@link #finish()}.
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            failure.compareAndSet(null, new StageException(Stage.PARSE, new CancellationException("Import aborted")));
+        }
+        stages.shutdownNow();
+        try {
+            if (!stages.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Batch {} stages did not stop within {} s", format, CLOSE_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rowQueue.forEach(batch -> socksMetrics.batchQueueChanged("rows", -1));
+        chunkQueue.forEach(chunk -> socksMetrics.batchQueueChanged("chunks", -1));
+    }
+
+    private void enqueueRows(List<T> batch) {
+        try {
+            put(rowQueue, batch, "rows", stats.get(Stage.PARSE));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StageException(Stage.PARSE, e);
+        }
+    }
+
+    private void validate() throws InterruptedException {
+        StageStats validateStats = stats.get(Stage.VALIDATE);
+        SocksQuantityAggregate aggregate = new SocksQuantityAggregate();
+        long stageStartedAt = System.nanoTime();
+
+        List<T> batch;
+        while (!(batch = take(rowQueue, "rows", validateStats)).isEmpty()) {
+            for (T raw : batch) {
+                SocksDto row = validator.apply(raw);
+                aggregate.add(row.getColor(), row.getCottonPercentage(), row.getQuantity());
+                rowsProcessed++;
+                if (aggregate.size() >= chunkSize) {
+                    emit(aggregate, validateStats);
+                }
+            }
+        }
+        if (!aggregate.isEmpty()) {
+            emit(aggregate, validateStats);
+        }
+        validateStats.rows.add(rowsProcessed);
+        validateStats.busyNanos.add(System.nanoTime() - stageStartedAt - validateStats.blockedNanos.sum());
+
+        for (int i = 0; i < writers; i++) {
+            put(chunkQueue, END, "chunks", validateStats);
+        }
+    }
+
+    private void emit(SocksQuantityAggregate aggregate, StageStats validateStats) throws InterruptedException {
+        peakChunkSize = Math.max(peakChunkSize, aggregate.size());
+        chunks++;
+        put(chunkQueue, new Chunk(aggregate.getQuantities(), aggregate.getRows()), "chunks", validateStats);
+        aggregate.clear();
+    }
+
+    private void write() throws InterruptedException {
+        StageStats writeStats = stats.get(Stage.WRITE);
+        Chunk chunk;
+        while ((chunk = take(chunkQueue, "chunks", writeStats)) != END) {
+            long writeStartedAt = System.nanoTime();
+            upsertEngine.apply(chunk.quantities());
+            writeStats.busyNanos.add(System.nanoTime() - writeStartedAt);
+            writeStats.rows.add(chunk.rows());
+        }
+    }
+
+    private void runStage(Stage stage, StageTask task) {
+        try {
+            task.run();
+        } catch (StageException e) {
+            // another stage failed first
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            failure.compareAndSet(null, new StageException(stage, e));
+        }
+    }
+
+    private <E> void put(BlockingQueue<E> queue, E item, String queueName, StageStats stageStats)
+            throws InterruptedException {
+        long waitStartedAt = System.nanoTime();
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkFailed();
+        }
+        stageStats.blockedNanos.add(System.nanoTime() - waitStartedAt);
+        socksMetrics.batchQueueChanged(queueName, 1);
+        checkFailed();
+    }
+
+    private <E> E take(BlockingQueue<E> queue, String queueName, StageStats stageStats)
+            throws InterruptedException {
+        long waitStartedAt = System.nanoTime();
+        E item;
+        while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            checkFailed();
+        }
+        stageStats.blockedNanos.add(System.nanoTime() - waitStartedAt);
+        socksMetrics.batchQueueChanged(queueName, -1);
+        return item;
+    }
+
+    private void checkFailed() {
+        StageException stageFailure = failure.get();
+        if (stageFailure != null) {
+            throw stageFailure;
+        }
+    }
+
+    private void report(Stage stage, StageStats stageStats) {
+        long rows = stageStats.rows.sum();
+        long busyNanos = stageStats.busyNanos.sum();
+        long blockedNanos = stageStats.blockedNanos.sum();
+        socksMetrics.batchStage(format, stage.name().toLowerCase(), rows, busyNanos, blockedNanos);
+        if (log.isDebugEnabled()) {
+            log.debug("Batch {} stage {}: {} rows, busy {} ms ({} rows/s), blocked {} ms", format, stage, rows,
+                    TimeUnit.NANOSECONDS.toMillis(busyNanos),
+                    busyNanos > 0 ? Math.round(rows * 1_000_000_000.0 / busyNanos) : rows,
+                    TimeUnit.NANOSECONDS.toMillis(blockedNanos));
+        }
+    }
+
+    /**
+     * Failure of one stage, reported to the parser thread by {@link #add} or {@link #finish()}.
+     */
+    public static class StageException extends RuntimeException {
+        private final Stage stage;
+
+        StageException(Stage stage, Throwable cause) {
+            super(stage.name().toLowerCase() + " stage failed: " + cause.getMessage(), cause);
+            this.stage = stage;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageTask {
+        void run() throws Exception;
+    }
+
+    private record Chunk(Map<SocksKey, Integer> quantities, long rows) {
+    }
+
+    // written by the stage threads, read once every stage is done
+    private static class StageStats {
+        final LongAdder rows = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+    }
+}
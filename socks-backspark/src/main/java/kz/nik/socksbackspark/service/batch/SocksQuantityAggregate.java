@@ -0,0 +1,47 @@
+package kz.nik.socksbackspark.service.batch;
+
+import kz.nik.socksbackspark.model.SocksKey;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Folds incoming rows into one quantity per (color, cottonPercentage) so that every stock item is written once.
+ */
+public class SocksQuantityAggregate {
+
+    private Map<SocksKey, Integer> quantities = new HashMap<>();
+    private long rows;
+
+    public void add(String color, int cottonPercentage, int quantity) {
+        quantities.merge(new SocksKey(color, cottonPercentage), quantity, Math::addExact);
+        rows++;
+    }
+
+    public Map<SocksKey, Integer> getQuantities() {
+        return quantities;
+    }
+
+    /**
+     * @return number of rows folded in since the last {@link #clear()}
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public int size() {
+        return quantities.size();
+    }
+
+    public boolean isEmpty() {
+        return quantities.isEmpty();
+    }
+
+    /**
+     * Starts a new aggregate; maps previously returned by {@link #getQuantities()} are left untouched.
+     */
+    public void clear() {
+        quantities = new HashMap<>();
+        rows = 0;
+    }
+}
@@ -0,0 +1,120 @@
+package kz.nik.socksbackspark.service.batch;
+
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.service.inventory.SocksChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Applies pre-aggregated quantities to the socks table with set-based
+ * {@code INSERT ... ON CONFLICT DO UPDATE} statements: new stock items are inserted, existing ones get the
+ * quantity added. One statement covers up to {@code socks.batch.upsert-statement-size} stock items.
+ * A {@link SocksChangedEvent} with the written items is published after every change.
+ */
+@Slf4j
+@Component
+public class SocksUpsertEngine {
+
+    static final String UPSERT_SQL = "INSERT INTO socks (color, cotton_percentage, quantity) " +
+            "SELECT * FROM unnest(?::varchar[], ?::int[], ?::int[]) " +
+            "ON CONFLICT (color, cotton_percentage) DO UPDATE SET quantity = socks.quantity + excluded.quantity";
+
+    static final String INCREMENT_SQL = "INSERT INTO socks (color, cotton_percentage, quantity) VALUES (?, ?, ?) " +
+            "ON CONFLICT (color, cotton_percentage) DO UPDATE SET quantity = socks.quantity + excluded.quantity";
+
+    static final String DECREMENT_SQL = "UPDATE socks SET quantity = quantity - ? " +
+            "WHERE color = ? AND cotton_percentage = ? AND quantity >= ? RETURNING quantity";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int statementSize;
+
+    public SocksUpsertEngine(JdbcTemplate jdbcTemplate,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${socks.batch.upsert-statement-size:1000}") int statementSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.statementSize = statementSize;
+    }
+
+    /**
+     * Adds stock for a single item in one atomic statement, without a prior SELECT. Concurrent calls for the
+     * same item are serialized by the row lock taken by the statement, so no increment is lost.
+     */
+    public void upsert(String color, int cottonPercentage, int quantity) {
+        jdbcTemplate.update(INCREMENT_SQL, color, cottonPercentage, quantity);
+        eventPublisher.publishEvent(SocksChangedEvent.of(new SocksKey(color, cottonPercentage)));
+    }
+
+    /**
+     * Applies a signed quantity change to one item. A negative delta is only applied if the stock covers it.
+     *
+     * @return the stored quantity after the change, or empty if a negative delta was rejected
+     */
+    public OptionalInt applyDelta(SocksKey key, int delta) {
+        if (delta >= 0) {
+            Integer stored = jdbcTemplate.queryForObject(INCREMENT_SQL + " RETURNING quantity", Integer.class,
+                    key.color(), key.cottonPercentage(), delta);
+            eventPublisher.publishEvent(SocksChangedEvent.of(key));
+            return OptionalInt.of(stored);
+        }
+        List<Integer> stored = jdbcTemplate.queryForList(DECREMENT_SQL, Integer.class, -delta, key.color(),
+                key.cottonPercentage(), -delta);
+        if (stored.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        eventPublisher.publishEvent(SocksChangedEvent.of(key));
+        return OptionalInt.of(stored.get(0));
+    }
+
+    /**
+     * @return number of stock items inserted or updated
+     */
+    public int apply(Map<SocksKey, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return 0;
+        }
+
+        // a stable key order keeps concurrent imports from locking the same rows in opposite order
+        List<SocksKey> keys = new ArrayList<>(quantities.keySet());
+        keys.sort(null);
+
+        int affected = 0;
+        for (int from = 0; from < keys.size(); from += statementSize) {
+            List<SocksKey> statementKeys = keys.subList(from, Math.min(from + statementSize, keys.size()));
+            affected += applyStatement(statementKeys, quantities);
+            eventPublisher.publishEvent(SocksChangedEvent.of(List.copyOf(statementKeys)));
+        }
+        log.debug("Upserted {} stock items", affected);
+        return affected;
+    }
+
+    private int applyStatement(List<SocksKey> keys, Map<SocksKey, Integer> quantities) {
+        String[] colors = new String[keys.size()];
+        Integer[] cottonPercentages = new Integer[keys.size()];
+        Integer[] quantityValues = new Integer[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            SocksKey key = keys.get(i);
+            colors[i] = key.color();
+            cottonPercentages[i] = key.cottonPercentage();
+            quantityValues[i] = quantities.get(key);
+        }
+
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);
+            statement.setArray(1, connection.createArrayOf("varchar", colors));
+            statement.setArray(2, connection.createArrayOf("integer", cottonPercentages));
+            statement.setArray(3, connection.createArrayOf("integer", quantityValues));
+            return statement;
+        });
+    }
+}
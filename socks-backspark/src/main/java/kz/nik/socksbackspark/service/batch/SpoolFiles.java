@@ -0,0 +1,42 @@
+package kz.nik.socksbackspark.service.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Spools uploads to local temp files for readers that need random access or for imports that run later.
+ * The stream is moved into the file with {@link FileChannel#transferFrom}, which reads through one small fixed
+ * buffer, so the heap stays flat however large the upload is.
+ */
+public final class SpoolFiles {
+
+    private static final long TRANSFER_SIZE = 8L * 1024 * 1024;
+
+    private SpoolFiles() {
+    }
+
+    /**
+     * Copies the stream into a new temp file and closes the stream; the caller deletes the file.
+     */
+    public static Path spool(InputStream inputStream, String suffix) throws IOException {
+        Path file = Files.createTempFile("socks-batch-", suffix);
+        try (ReadableByteChannel source = Channels.newChannel(inputStream);
+             FileChannel target = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+                position += transferred;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+}
@@ -0,0 +1,459 @@
+package kz.nik.socksbackspark.service.impl;
+
+import com.opencsv.CSVReader;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksGroupTotalDto;
+import kz.nik.socksbackspark.dto.SocksTotalDto;
+import kz.nik.socksbackspark.exceptions.FileProcessingException;
+import kz.nik.socksbackspark.exceptions.InsufficientStockException;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.mapper.SocksMapper;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.repository.reactive.ReactiveSocksRepository;
+import kz.nik.socksbackspark.service.ReactiveSocksService;
+import kz.nik.socksbackspark.service.batch.SocksExcelStreamReader;
+import kz.nik.socksbackspark.service.batch.SocksQuantityAggregate;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ReactiveSocksService} on the {@link ReactiveSocksRepository}. Mirrors {@link SocksServiceImpl}: the same
+ * filters, sorting, page limits and error messages, but nothing blocks an event-loop thread. Batch files are
+ * aggregated and upserted {@code socks.batch.chunk-size} distinct items at a time.
+ * <p>
+ * Batch uploads are not parsed as they arrive. The whole upload is first written to a temporary file, because
+ * a quoted CSV field may span lines and the Excel package needs random access. The file is then parsed on a
+ * bounded-elastic thread that blocks on each chunk's upsert. Writes therefore slow the parser down but not the
+ * upload, which is held on disk rather than in memory.
+ */
+@Slf4j
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveSocksServiceImpl implements ReactiveSocksService {
+
+    private final ReactiveSocksRepository socksRepository;
+    private final SocksMapper socksMapper;
+    private final SocksMetrics socksMetrics;
+    private final TransactionalOperator transactionalOperator;
+    private final SocksExcelStreamReader excelReader = new SocksExcelStreamReader();
+
+    @Value("${socks.batch.chunk-size:1000}")
+    private int batchChunkSize = 1000;
+
+    @Value("${socks.api.default-page-size:100}")
+    private int defaultPageSize = 100;
+
+    @Value("${socks.api.max-page-size:1000}")
+    private int maxPageSize = 1000;
+
+    @Override
+    public Flux<SocksDto> getFilteredSocks(
+            String color,
+            String operation,
+            Integer cottonPercentage,
+            Integer cottonPercentageFrom,
+            Integer cottonPercentageTo,
+            String sortBy,
+            String sortDirection,
+            int page,
+            Integer size) {
+        return Flux.defer(() -> {
+            if (log.isDebugEnabled()) {
+                log.debug("Request to filter socks with color={}, operation={}, cottonPercentage={}, " +
+                                "cottonPercentageFrom={}, cottonPercentageTo={}, sortBy={}, sortDirection={}, " +
+                                "page={}, size={}", color, operation, cottonPercentage, cottonPercentageFrom,
+                        cottonPercentageTo, sortBy, sortDirection, page, size);
+            }
+
+            PageRequest pageRequest = PageRequest.of(validPage(page), validSize(size),
+                    SocksServiceImpl.sort(sortBy, sortDirection));
+
+            if (color != null && !color.isEmpty()) {
+                if (operation == null || operation.isEmpty()) {
+                    return toDtos(socksRepository.findByColor(color, pageRequest));
+                }
+                return toDtos(filterByCottonPercentage(color, operation, cottonPercentage, pageRequest));
+            } else if (cottonPercentage != null) {
+                return toDtos(filterByCottonPercentage(null, operation, cottonPercentage, pageRequest));
+            } else if (cottonPercentageFrom != null && cottonPercentageTo != null) {
+                return toDtos(socksRepository.findByCottonPercentageBetween(cottonPercentageFrom,
+                        cottonPercentageTo, pageRequest));
+            }
+            throw new InvalidDataFormatException("At least one parameter (color, cottonPercentage, " +
+                    "cottonPercentageFrom or cottonPercentageTo) must be provided.");
+        }).onErrorMap(e -> failure(e, "getFilteredSocks", "Error retrieving filtered socks"));
+    }
+
+    @Override
+    public Flux<SocksDto> getAllSocks(Long cursor, int page, Integer size) {
+        return Flux.defer(() -> {
+            int pageSize = validSize(size);
+            if (cursor != null) {
+                return toDtos(socksRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, pageSize)));
+            }
+            return toDtos(socksRepository.findAllBy(PageRequest.of(validPage(page), pageSize, Sort.by("id"))));
+        }).onErrorMap(e -> failure(e, "getAllSocks", "Error retrieving all socks"));
+    }
+
+    private Flux<Socks> filterByCottonPercentage(String color, String operation, Integer cottonPercentage,
+                                                 PageRequest pageRequest) {
+        switch (operation) {
+            case "greaterThan":
+                return color != null
+                        ? socksRepository.findByColorAndCottonPercentageGreaterThan(color, cottonPercentage,
+                        pageRequest)
+                        : socksRepository.findByCottonPercentageGreaterThan(cottonPercentage, pageRequest);
+            case "lessThan":
+                return color != null
+                        ? socksRepository.findByColorAndCottonPercentageLessThan(color, cottonPercentage,
+                        pageRequest)
+                        : socksRepository.findByCottonPercentageLessThan(cottonPercentage, pageRequest);
+            case "equalTo":
+                return color != null
+                        ? socksRepository.findByColorAndCottonPercentage(color, cottonPercentage, pageRequest)
+                        : socksRepository.findByCottonPercentage(cottonPercentage, pageRequest);
+            default:
+                throw new InvalidDataFormatException("Invalid operation. Please use 'greaterThan'," +
+                        " 'lessThan' or 'equalTo'.");
+        }
+    }
+
+    /**
+     * Maps the rows as they arrive and records the read once the page is complete.
+     */
+    private Flux<SocksDto> toDtos(Flux<Socks> socks) {
+        AtomicInteger returned = new AtomicInteger();
+        return socks.map(sock -> {
+                    returned.incrementAndGet();
+                    return socksMapper.toDto(sock);
+                })
+                .doOnComplete(() -> socksMetrics.rowsRead("database", returned.get(), returned.get()));
+    }
+
+    private int validPage(int page) {
+        if (page < 0) {
+            throw new InvalidDataFormatException("Page index must not be negative.");
+        }
+        return page;
+    }
+
+    private int validSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new InvalidDataFormatException("Page size must be at least 1.");
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    @Override
+    public Mono<SocksTotalDto> getTotalQuantity(
+            String color,
+            String operation,
+            Integer cottonPercentage,
+            Integer cottonPercentageFrom,
+            Integer cottonPercentageTo,
+            String groupBy) {
+        return Mono.defer(() -> {
+            String colorFilter = color != null && !color.isEmpty() ? color : null;
+            int[] range = SocksServiceImpl.cottonPercentageRange(operation, cottonPercentage, cottonPercentageFrom,
+                    cottonPercentageTo);
+            if (groupBy != null && !"color".equalsIgnoreCase(groupBy)
+                    && !"cottonPercentage".equalsIgnoreCase(groupBy)) {
+                throw new InvalidDataFormatException("Invalid groupBy. Please use 'color' or 'cottonPercentage'.");
+            }
+
+            if (range == null) {
+                // e.g. lessThan the smallest possible value: nothing can match
+                return Mono.just(SocksTotalDto.builder().totalQuantity(0).groups(groupBy != null ? List.of() : null)
+                        .build());
+            }
+
+            if (groupBy == null) {
+                Mono<Long> total = colorFilter != null
+                        ? socksRepository.sumQuantityByColor(colorFilter, range[0], range[1])
+                        : socksRepository.sumQuantity(range[0], range[1]);
+                return total.map(quantity -> SocksTotalDto.builder().totalQuantity(quantity).build());
+            }
+
+            Flux<SocksGroupTotalDto> groups;
+            if ("color".equalsIgnoreCase(groupBy)) {
+                groups = (colorFilter != null
+                        ? socksRepository.sumQuantityByColorGroupByColor(colorFilter, range[0], range[1])
+                        : socksRepository.sumQuantityGroupByColor(range[0], range[1]))
+                        .map(total -> SocksGroupTotalDto.builder().color(total.color())
+                                .totalQuantity(total.totalQuantity()).build());
+            } else {
+                groups = (colorFilter != null
+                        ? socksRepository.sumQuantityByColorGroupByCottonPercentage(colorFilter, range[0], range[1])
+                        : socksRepository.sumQuantityGroupByCottonPercentage(range[0], range[1]))
+                        .map(total -> SocksGroupTotalDto.builder().cottonPercentage(total.cottonPercentage())
+                                .totalQuantity(total.totalQuantity()).build());
+            }
+            return groups.collectList().map(list -> SocksTotalDto.builder()
+                    .totalQuantity(list.stream().mapToLong(SocksGroupTotalDto::getTotalQuantity).sum())
+                    .groups(list)
+                    .build());
+        }).onErrorMap(e -> failure(e, "getTotalQuantity", "Error totalling socks"));
+    }
+
+    /**
+     * Merges into the row already holding the new (color, cottonPercentage), as {@link SocksServiceImpl} does.
+     */
+    @Override
+    public Mono<SocksDto> updateSock(Long id, SocksDto socksDto) {
+        log.debug("Request to update sock with id={} to {}", id, socksDto);
+
+        return socksRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new InsufficientStockException("Sock not found with id: " + id)))
+                .flatMap(existingSock -> socksRepository
+                        .findByColorAndCottonPercentage(socksDto.getColor(), socksDto.getCottonPercentage())
+                        .filter(sock -> !sock.getId().equals(id))
+                        .next()
+                        .flatMap(mergedSock -> {
+                            mergedSock.setQuantity(mergedSock.getQuantity() + socksDto.getQuantity());
+                            return socksRepository.delete(existingSock).then(socksRepository.save(mergedSock));
+                        })
+                        .switchIfEmpty(Mono.defer(() -> {
+                            existingSock.setColor(socksDto.getColor());
+                            existingSock.setCottonPercentage(socksDto.getCottonPercentage());
+                            existingSock.setQuantity(socksDto.getQuantity());
+                            return socksRepository.save(existingSock);
+                        })))
+                .as(transactionalOperator::transactional)
+                .map(socksMapper::toDto)
+                .onErrorMap(e -> failure(e, "updateSock", "Error updating sock"));
+    }
+
+    @Override
+    public Mono<Void> addSocks(SocksDto socksDto) {
+        log.debug("Processing sock: {}", socksDto);
+
+        return socksRepository.increaseQuantity(socksDto.getColor(), socksDto.getCottonPercentage(),
+                        socksDto.getQuantity())
+                .then()
+                .onErrorMap(e -> failure(e, "addSock", "Error adding sock"));
+    }
+
+    @Override
+    public Mono<Void> decreaseSocksQuantity(String color, int cottonPercentage, int quantity) {
+        return socksRepository.decreaseQuantity(color, cottonPercentage, quantity)
+                .flatMap(updated -> {
+                    if (updated > 0) {
+                        return Mono.<Void>empty();
+                    }
+                    socksMetrics.stockRejected();
+                    // only the rejected path pays for a second round-trip to tell "missing" from "not enough"
+                    return socksRepository.existsByColorAndCottonPercentage(color, cottonPercentage)
+                            .flatMap(exists -> Mono.<Void>error(exists
+                                    ? new InsufficientStockException("Not enough socks in stock")
+                                    : new InsufficientStockException("No socks found with the given color and " +
+                                    "cotton percentage")));
+                })
+                .onErrorMap(e -> failure(e, "decreaseSocksQuantity", "Error decreasing sock quantity"));
+    }
+
+    @Override
+    public Mono<BatchImportResult> processCsvFile(FilePart file) {
+        log.debug("Processing CSV file: {}", file.filename());
+
+        // a quoted field may span lines, so the rows are read by a record-aware reader, off the event loop
+        return Mono.usingWhen(
+                        Mono.fromCallable(() -> Files.createTempFile("socks-batch-", ".csv"))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        spoolFile -> DataBufferUtils.write(file.content(), spoolFile)
+                                .then(Mono.fromCallable(() -> readCsv(spoolFile))
+                                        .subscribeOn(Schedulers.boundedElastic())),
+                        spoolFile -> Mono.fromCallable(() -> Files.deleteIfExists(spoolFile))
+                                .subscribeOn(Schedulers.boundedElastic()))
+                .doOnNext(result -> {
+                    socksMetrics.batchImported("csv", result);
+                    log.info("Processed and saved {} socks from CSV file in {} chunks ({} rows/s, peak chunk {})",
+                            result.getRowsProcessed(), result.getChunks(), Math.round(result.getRowsPerSecond()),
+                            result.getPeakChunkSize());
+                })
+                .doOnError(e -> {
+                    if (e instanceof FileProcessingException) {
+                        log.error("Error processing CSV file: {}", e.getMessage());
+                    }
+                    socksMetrics.batchFailed("csv", e instanceof FileProcessingException);
+                })
+                .onErrorMap(e -> failure(e, "processCsvFile", "Error processing file"));
+    }
+
+    /**
+     * Runs on a bounded-elastic thread, like {@link #readExcel}: each chunk is written with a blocking wait before
+     * reading continues.
+     */
+    private BatchImportResult readCsv(Path spoolFile) throws Exception {
+        long startedAt = System.currentTimeMillis();
+        List<ChunkStats> chunks = new ArrayList<>();
+        SocksQuantityAggregate aggregate = new SocksQuantityAggregate();
+
+        try (CSVReader csvReader = new CSVReader(Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8))) {
+            // header row
+            csvReader.readNext();
+
+            String[] row;
+            while ((row = csvReader.readNext()) != null) {
+                SocksDto sock = parseCsvRow(row);
+                aggregate.add(sock.getColor(), sock.getCottonPercentage(), sock.getQuantity());
+                if (aggregate.size() >= batchChunkSize) {
+                    chunks.add(writeChunk(aggregate));
+                }
+            }
+        }
+        if (!aggregate.isEmpty()) {
+            chunks.add(writeChunk(aggregate));
+        }
+        return importResult(chunks, startedAt);
+    }
+
+    private static SocksDto parseCsvRow(String[] row) {
+        try {
+            return new SocksDto(null, row[0], Integer.parseInt(row[1]), Integer.parseInt(row[2]));
+        } catch (Exception e) {
+            throw new FileProcessingException("Error processing CSV file: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Mono<BatchImportResult> processExcelFile(FilePart file) {
+        log.debug("Processing Excel file: {}", file.filename());
+
+        // the OOXML package needs random access, so the upload is spooled to disk and parsed off the event loop
+        return Mono.usingWhen(
+                        Mono.fromCallable(() -> Files.createTempFile("socks-batch-", ".xlsx"))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        spoolFile -> file.transferTo(spoolFile)
+                                .then(Mono.fromCallable(() -> readExcel(spoolFile))
+                                        .subscribeOn(Schedulers.boundedElastic())),
+                        spoolFile -> Mono.fromCallable(() -> Files.deleteIfExists(spoolFile))
+                                .subscribeOn(Schedulers.boundedElastic()))
+                .doOnNext(result -> {
+                    socksMetrics.batchImported("xlsx", result);
+                    log.info("Processed {} socks from Excel file in {} chunks ({} rows/s)", result.getRowsProcessed(),
+                            result.getChunks(), Math.round(result.getRowsPerSecond()));
+                })
+                // the reader rejects malformed cells with IllegalArgumentException (NumberFormatException included)
+                .doOnError(e -> socksMetrics.batchFailed("xlsx", e instanceof IllegalArgumentException))
+                .onErrorMap(e -> failure(e, "processExcelFile", "Error processing Excel file"));
+    }
+
+    /**
+     * Runs on a bounded-elastic thread: the streaming sheet parser pushes rows, so each chunk is written with a
+     * blocking wait before parsing continues.
+     */
+    private BatchImportResult readExcel(Path spoolFile) throws Exception {
+        long startedAt = System.currentTimeMillis();
+        List<ChunkStats> chunks = new ArrayList<>();
+        SocksQuantityAggregate aggregate = new SocksQuantityAggregate();
+
+        // a chunk is closed on distinct items, as SocksBatchWriter does on the servlet stack
+        excelReader.read(spoolFile.toFile(), row -> {
+            aggregate.add(row.getColor(), row.getCottonPercentage(), row.getQuantity());
+            if (aggregate.size() >= batchChunkSize) {
+                chunks.add(writeChunk(aggregate));
+            }
+        });
+        if (!aggregate.isEmpty()) {
+            chunks.add(writeChunk(aggregate));
+        }
+        return importResult(chunks, startedAt);
+    }
+
+    private ChunkStats writeChunk(SocksQuantityAggregate aggregate) {
+        upsert(aggregate.getQuantities()).block();
+        ChunkStats chunk = new ChunkStats(aggregate.getRows(), aggregate.size());
+        aggregate.clear();
+        return chunk;
+    }
+
+    /**
+     * Writes one chunk with a single set-based upsert, in the same stable key order as the JDBC upsert engine.
+     */
+    private Mono<Integer> upsert(Map<SocksKey, Integer> quantities) {
+        List<SocksKey> keys = new ArrayList<>(quantities.keySet());
+        keys.sort(null);
+
+        String[] colors = new String[keys.size()];
+        Integer[] cottonPercentages = new Integer[keys.size()];
+        Integer[] quantityValues = new Integer[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            SocksKey key = keys.get(i);
+            colors[i] = key.color();
+            cottonPercentages[i] = key.cottonPercentage();
+            quantityValues[i] = quantities.get(key);
+        }
+        return socksRepository.upsertQuantities(colors, cottonPercentages, quantityValues);
+    }
+
+    private static BatchImportResult importResult(List<ChunkStats> chunks, long startedAt) {
+        return BatchImportResult.builder()
+                .rowsProcessed(chunks.stream().mapToLong(ChunkStats::rows).sum())
+                .chunks(chunks.size())
+                .peakChunkSize(chunks.stream().mapToInt(ChunkStats::items).max().orElse(0))
+                .durationMillis(System.currentTimeMillis() - startedAt)
+                .build();
+    }
+
+    private record ChunkStats(long rows, int items) {
+    }
+
+    @Override
+    public Flux<SocksDto> exportSocks() {
+        return Flux.defer(() -> {
+            log.debug("Exporting all socks");
+            AtomicInteger exported = new AtomicInteger();
+            return socksRepository.streamAll()
+                    .map(sock -> {
+                        exported.incrementAndGet();
+                        return socksMapper.toDto(sock);
+                    })
+                    .doOnComplete(() -> log.info("Exported {} socks", exported.get()));
+        }).onErrorMap(e -> failure(e, "exportSocks", "Error exporting socks"));
+    }
+
+    /**
+     * Logs the error and wraps it like {@link SocksServiceImpl} does, leaving the client errors as they are.
+     */
+    private static Throwable failure(Throwable e, String method, String message) {
+        if (e instanceof InvalidDataFormatException) {
+            log.error("Invalid data format: {}", e.getMessage());
+            return e;
+        }
+        if (e instanceof InsufficientStockException) {
+            log.error("Insufficient stock: {}", e.getMessage());
+            return e;
+        }
+        if (e instanceof FileProcessingException) {
+            return e;
+        }
+        log.error("Error in {} method: {}", method, e.getMessage());
+        return new RuntimeException(message, e);
+    }
+}
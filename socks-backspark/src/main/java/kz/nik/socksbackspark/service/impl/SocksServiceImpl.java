@@ -1,85 +1,159 @@
 package kz.nik.socksbackspark.service.impl;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.opencsv.CSVReader;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import kz.nik.socksbackspark.dto.BatchImportResult;
 import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksGroupTotalDto;
+import kz.nik.socksbackspark.dto.SocksPage;
+import kz.nik.socksbackspark.dto.SocksTotalDto;
 import kz.nik.socksbackspark.exceptions.FileProcessingException;
 import kz.nik.socksbackspark.exceptions.InsufficientStockException;
 import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.exceptions.UploadTooLargeException;
 import kz.nik.socksbackspark.mapper.SocksMapper;
 import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
 import kz.nik.socksbackspark.repository.SocksRepository;
 import kz.nik.socksbackspark.service.SocksService;
+import kz.nik.socksbackspark.service.batch.ParallelCsvParser;
+import kz.nik.socksbackspark.service.batch.SocksCopyLoader;
+import kz.nik.socksbackspark.service.batch.SocksExcelStreamReader;
+import kz.nik.socksbackspark.service.batch.SocksImportPipeline;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.batch.SpoolFiles;
+import kz.nik.socksbackspark.service.inventory.InventoryCache;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex.CottonRange;
+import kz.nik.socksbackspark.service.inventory.SocksChangedEvent;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@Timed(value = "socks.service", histogram = true)
 public class SocksServiceImpl implements SocksService {
 
+    // flushing is left to the servlet output buffer instead of once per row
+    private static final ObjectMapper EXPORT_MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
     private final SocksRepository socksRepository;
     private final SocksMapper socksMapper;
+    private final SocksUpsertEngine upsertEngine;
+    private final SocksCopyLoader copyLoader;
+    private final InventoryCache inventoryCache;
+    private final InventoryIndex inventoryIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SocksMetrics socksMetrics;
+    private final SocksExcelStreamReader excelReader = new SocksExcelStreamReader();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${socks.batch.chunk-size:1000}")
+    private int batchChunkSize = 1000;
+
+    @Value("${socks.batch.loader:upsert}")
+    private String batchLoader = "upsert";
+
+    @Value("${socks.batch.pipeline.writer-threads:2}")
+    private int batchWriterThreads = 2;
+
+    @Value("${socks.batch.pipeline.queue-capacity:4}")
+    private int batchQueueCapacity = 4;
+
+    @Value("${socks.batch.csv-parallelism:1}")
+    private int csvParallelism = 1;
+
+    @Value("${socks.api.default-page-size:100}")
+    private int defaultPageSize = 100;
+
+    @Value("${socks.api.max-page-size:1000}")
+    private int maxPageSize = 1000;
 
     @Override
-    public List<SocksDto> getFilteredSocks(
+    public SocksPage getFilteredSocks(
             String color,
             String operation,
             Integer cottonPercentage,
             Integer cottonPercentageFrom,
             Integer cottonPercentageTo,
             String sortBy,
-            String sortDirection) {
+            String sortDirection,
+            int page,
+            Integer size) {
         try {
-            log.info("Request to filter socks with color={}, operation={}, cottonPercentage={}, " +
-                            "cottonPercentageFrom={}, cottonPercentageTo={}, sortBy={}, sortDirection={}",
-                    color, operation, cottonPercentage, cottonPercentageFrom, cottonPercentageTo,
-                    sortBy, sortDirection);
+            if (log.isDebugEnabled()) {
+                log.debug("Request to filter socks with color={}, operation={}, cottonPercentage={}, " +
+                                "cottonPercentageFrom={}, cottonPercentageTo={}, sortBy={}, sortDirection={}, " +
+                                "page={}, size={}", color, operation, cottonPercentage, cottonPercentageFrom,
+                        cottonPercentageTo, sortBy, sortDirection, page, size);
+            }
 
-            List<Socks> socksList;
+            PageRequest pageRequest = PageRequest.of(validPage(page), validSize(size), sort(sortBy, sortDirection));
+
+            Optional<List<Socks>> indexed = queryIndex(color, operation, cottonPercentage, cottonPercentageFrom,
+                    cottonPercentageTo, sortBy, sortDirection);
+            if (indexed.isPresent()) {
+                // the index returns the rows already in the requested order
+                Page<Socks> socksPage = slice(indexed.get(), pageRequest);
+                socksMetrics.rowsRead("index", socksPage.getTotalElements(), socksPage.getNumberOfElements());
+                log.debug("Returning {} of {} socks from the inventory index", socksPage.getNumberOfElements(),
+                        socksPage.getTotalElements());
+                return toSocksPage(socksPage);
+            }
+
+            Page<Socks> socksPage;
 
             if (color != null && !color.isEmpty()) {
                 if (operation == null || operation.isEmpty()) {
-                    socksList = socksRepository.findByColor(color);
+                    socksPage = findSocks(pageable -> socksRepository.findByColor(color, pageable), pageRequest);
                 } else {
-                    socksList = filterByCottonPercentage(color, operation, cottonPercentage);
+                    socksPage = filterByCottonPercentage(color, operation, cottonPercentage, pageRequest);
                 }
             } else if (cottonPercentage != null) {
-                socksList = filterByCottonPercentage(null, operation, cottonPercentage);
+                socksPage = filterByCottonPercentage(null, operation, cottonPercentage, pageRequest);
             } else if (cottonPercentageFrom != null && cottonPercentageTo != null) {
-                socksList = socksRepository.findByCottonPercentageBetween(cottonPercentageFrom, cottonPercentageTo);
+                socksPage = findSocks(pageable -> socksRepository.findByCottonPercentageBetween(
+                        cottonPercentageFrom, cottonPercentageTo, pageable), pageRequest);
             } else {
                 throw new InvalidDataFormatException("At least one parameter (color, cottonPercentage, " +
                         "cottonPercentageFrom or cottonPercentageTo) must be provided.");
             }
 
-            if (sortBy != null) {
-                Comparator<Socks> comparator = null;
-                if ("color".equalsIgnoreCase(sortBy)) {
-                    comparator = Comparator.comparing(Socks::getColor);
-                } else if ("cottonPercentage".equalsIgnoreCase(sortBy)) {
-                    comparator = Comparator.comparingInt(Socks::getCottonPercentage);
-                }
-
-                if (comparator != null) {
-                    if ("desc".equalsIgnoreCase(sortDirection)) {
-                        comparator = comparator.reversed();
-                    }
-                    socksList.sort(comparator);
-                }
-            }
-
-            log.info("Returning {} socks after filtering and sorting", socksList.size());
-            return socksMapper.toDtoList(socksList);
+            log.debug("Returning {} of {} socks after filtering and sorting", socksPage.getNumberOfElements(),
+                    socksPage.getTotalElements());
+            return toSocksPage(socksPage);
 
         } catch (InvalidDataFormatException e) {
             log.error("Invalid data format: {}", e.getMessage());
@@ -91,10 +165,42 @@ public class SocksServiceImpl implements SocksService {
     }
 
 
-    public List<SocksDto> getAllSocks() {
+    @Override
+    public SocksPage getAllSocks(Long cursor, int page, Integer size) {
         try {
-            List<Socks> socksList = socksRepository.findAll();
-            return socksMapper.toDtoList(socksList);
+            int pageSize = validSize(size);
+
+            if (cursor != null) {
+                // keyset pagination: no offset to skip and no count query, whatever the depth
+                List<Socks> socksList = inventoryCache.findAfter(cursor, pageSize)
+                        .orElseGet(() -> socksRepository.findByIdGreaterThanOrderByIdAsc(cursor,
+                                PageRequest.of(0, pageSize)));
+                return SocksPage.builder()
+                        .content(socksMapper.toDtoList(socksList))
+                        .page(0)
+                        .size(pageSize)
+                        .nextCursor(socksList.size() == pageSize ? socksList.get(socksList.size() - 1).getId() : null)
+                        .build();
+            }
+
+            PageRequest pageRequest = PageRequest.of(validPage(page), pageSize, Sort.by("id"));
+            Optional<Page<Socks>> cached = inventoryCache.findPage(pageRequest);
+            Page<Socks> socksPage;
+            if (cached.isPresent()) {
+                socksPage = cached.get();
+                socksMetrics.rowsRead("cache", socksPage.getNumberOfElements(), socksPage.getNumberOfElements());
+            } else {
+                socksPage = findSocks(pageable -> socksRepository.findAll(pageable), pageRequest);
+            }
+            // only the unfiltered listing is ordered by id, so only it can be continued with a cursor
+            List<Socks> content = socksPage.getContent();
+            SocksPage result = toSocksPage(socksPage);
+            result.setNextCursor(socksPage.hasNext() && !content.isEmpty()
+                    ? content.get(content.size() - 1).getId() : null);
+            return result;
+        } catch (InvalidDataFormatException e) {
+            log.error("Invalid data format: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Error retrieving all socks: {}", e.getMessage());
             throw new RuntimeException("Error retrieving all socks", e);
@@ -102,21 +208,28 @@ public class SocksServiceImpl implements SocksService {
     }
 
 
-    private List<Socks> filterByCottonPercentage(String color, String operation, Integer cottonPercentage) {
+    private Page<Socks> filterByCottonPercentage(String color, String operation, Integer cottonPercentage,
+                                                 Pageable pageRequest) {
         try {
             switch (operation) {
                 case "greaterThan":
-                    return color != null
-                            ? socksRepository.findByColorAndCottonPercentageGreaterThan(color, cottonPercentage)
-                            : socksRepository.findByCottonPercentageGreaterThan(cottonPercentage);
+                    return findSocks(pageable -> color != null
+                                    ? socksRepository.findByColorAndCottonPercentageGreaterThan(color,
+                                    cottonPercentage, pageable)
+                                    : socksRepository.findByCottonPercentageGreaterThan(cottonPercentage, pageable),
+                            pageRequest);
                 case "lessThan":
-                    return color != null
-                            ? socksRepository.findByColorAndCottonPercentageLessThan(color, cottonPercentage)
-                            : socksRepository.findByCottonPercentageLessThan(cottonPercentage);
+                    return findSocks(pageable -> color != null
+                                    ? socksRepository.findByColorAndCottonPercentageLessThan(color,
+                                    cottonPercentage, pageable)
+                                    : socksRepository.findByCottonPercentageLessThan(cottonPercentage, pageable),
+                            pageRequest);
                 case "equalTo":
-                    return color != null
-                            ? socksRepository.findByColorAndCottonPercentage(color, cottonPercentage)
-                            : socksRepository.findByCottonPercentage(cottonPercentage);
+                    return findSocks(pageable -> color != null
+                                    ? socksRepository.findByColorAndCottonPercentage(color, cottonPercentage,
+                                    pageable)
+                                    : socksRepository.findByCottonPercentage(cottonPercentage, pageable),
+                            pageRequest);
                 default:
                     throw new InvalidDataFormatException("Invalid operation. Please use 'greaterThan'," +
                             " 'lessThan' or 'equalTo'.");
@@ -130,20 +243,238 @@ public class SocksServiceImpl implements SocksService {
         }
     }
 
+    /**
+     * Answers the filter from the inventory index, already sorted. Returns empty when the index is not available
+     * or the parameters are left for the repository path to reject.
+     */
+    private Optional<List<Socks>> queryIndex(String color, String operation, Integer cottonPercentage,
+                                             Integer cottonPercentageFrom, Integer cottonPercentageTo,
+                                             String sortBy, String sortDirection) {
+        if (!inventoryIndex.isReady()) {
+            return Optional.empty();
+        }
+
+        String indexColor = color != null && !color.isEmpty() ? color : null;
+        CottonRange range;
+        if (indexColor != null && (operation == null || operation.isEmpty())) {
+            range = CottonRange.all();
+        } else if (indexColor != null || cottonPercentage != null) {
+            if (operation == null) {
+                return Optional.empty();
+            }
+            range = switch (operation) {
+                case "greaterThan" -> CottonRange.greaterThan(cottonPercentage);
+                case "lessThan" -> CottonRange.lessThan(cottonPercentage);
+                case "equalTo" -> CottonRange.equalTo(cottonPercentage);
+                default -> throw new InvalidDataFormatException("Invalid operation. Please use 'greaterThan'," +
+                        " 'lessThan' or 'equalTo'.");
+            };
+        } else if (cottonPercentageFrom != null && cottonPercentageTo != null) {
+            range = CottonRange.between(cottonPercentageFrom, cottonPercentageTo);
+        } else {
+            return Optional.empty();
+        }
+
+        InventoryIndex.Order order = InventoryIndex.Order.NONE;
+        boolean descending = "desc".equalsIgnoreCase(sortDirection);
+        if ("color".equalsIgnoreCase(sortBy)) {
+            order = descending ? InventoryIndex.Order.COLOR_DESC : InventoryIndex.Order.COLOR_ASC;
+        } else if ("cottonPercentage".equalsIgnoreCase(sortBy)) {
+            order = descending ? InventoryIndex.Order.COTTON_DESC : InventoryIndex.Order.COTTON_ASC;
+        }
+        return inventoryIndex.query(indexColor, range, order);
+    }
+
+    /**
+     * Runs the paged query; the page and the sort are part of the SQL, so only one page of rows is read.
+     */
+    private Page<Socks> findSocks(Function<Pageable, Page<Socks>> query, Pageable pageRequest) {
+        Page<Socks> socksPage = query.apply(pageRequest);
+        socksMetrics.rowsRead("database", socksPage.getTotalElements(), socksPage.getNumberOfElements());
+        return socksPage;
+    }
+
+    /**
+     * Sorts by the requested column and then by id, so that pages do not overlap or skip rows.
+     */
+    static Sort sort(String sortBy, String sortDirection) {
+        Sort.Direction direction = "desc".equalsIgnoreCase(sortDirection) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        if ("color".equalsIgnoreCase(sortBy)) {
+            return Sort.by(direction, "color").and(Sort.by("id"));
+        }
+        if ("cottonPercentage".equalsIgnoreCase(sortBy)) {
+            return Sort.by(direction, "cottonPercentage").and(Sort.by("id"));
+        }
+        return Sort.by("id");
+    }
+
+    private static Page<Socks> slice(List<Socks> rows, Pageable pageRequest) {
+        int from = (int) Math.min(pageRequest.getOffset(), rows.size());
+        int to = Math.min(from + pageRequest.getPageSize(), rows.size());
+        return new PageImpl<>(new ArrayList<>(rows.subList(from, to)), pageRequest, rows.size());
+    }
+
+    private SocksPage toSocksPage(Page<Socks> socksPage) {
+        return SocksPage.builder()
+                .content(socksMapper.toDtoList(socksPage.getContent()))
+                .page(socksPage.getNumber())
+                .size(socksPage.getSize())
+                .totalElements(socksPage.getTotalElements())
+                .build();
+    }
+
+    private int validPage(int page) {
+        if (page < 0) {
+            throw new InvalidDataFormatException("Page index must not be negative.");
+        }
+        return page;
+    }
+
+    private int validSize(Integer size) {
+        if (size == null) {
+            return defaultPageSize;
+        }
+        if (size < 1) {
+            throw new InvalidDataFormatException("Page size must be at least 1.");
+        }
+        return Math.min(size, maxPageSize);
+    }
+
+    @Override
+    public SocksTotalDto getTotalQuantity(
+            String color,
+            String operation,
+            Integer cottonPercentage,
+            Integer cottonPercentageFrom,
+            Integer cottonPercentageTo,
+            String groupBy) {
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Request to total socks with color={}, operation={}, cottonPercentage={}, " +
+                                "cottonPercentageFrom={}, cottonPercentageTo={}, groupBy={}", color, operation,
+                        cottonPercentage, cottonPercentageFrom, cottonPercentageTo, groupBy);
+            }
+
+            String colorFilter = color != null && !color.isEmpty() ? color : null;
+            int[] range = cottonPercentageRange(operation, cottonPercentage, cottonPercentageFrom,
+                    cottonPercentageTo);
+            if (groupBy != null && !"color".equalsIgnoreCase(groupBy)
+                    && !"cottonPercentage".equalsIgnoreCase(groupBy)) {
+                throw new InvalidDataFormatException("Invalid groupBy. Please use 'color' or 'cottonPercentage'.");
+            }
+
+            if (range == null) {
+                // e.g. lessThan the smallest possible value: nothing can match
+                return SocksTotalDto.builder().totalQuantity(0).groups(groupBy != null ? List.of() : null).build();
+            }
+
+            if (groupBy == null) {
+                long total = colorFilter != null
+                        ? socksRepository.sumQuantityByColor(colorFilter, range[0], range[1])
+                        : socksRepository.sumQuantity(range[0], range[1]);
+                log.debug("Total quantity: {}", total);
+                return SocksTotalDto.builder().totalQuantity(total).build();
+            }
+
+            List<SocksGroupTotalDto> groups = new ArrayList<>();
+            if ("color".equalsIgnoreCase(groupBy)) {
+                List<SocksRepository.ColorTotal> totals = colorFilter != null
+                        ? socksRepository.sumQuantityByColorGroupByColor(colorFilter, range[0], range[1])
+                        : socksRepository.sumQuantityGroupByColor(range[0], range[1]);
+                for (SocksRepository.ColorTotal total : totals) {
+                    groups.add(SocksGroupTotalDto.builder().color(total.getColor())
+                            .totalQuantity(total.getTotalQuantity()).build());
+                }
+            } else {
+                List<SocksRepository.CottonPercentageTotal> totals = colorFilter != null
+                        ? socksRepository.sumQuantityByColorGroupByCottonPercentage(colorFilter, range[0], range[1])
+                        : socksRepository.sumQuantityGroupByCottonPercentage(range[0], range[1]);
+                for (SocksRepository.CottonPercentageTotal total : totals) {
+                    groups.add(SocksGroupTotalDto.builder().cottonPercentage(total.getCottonPercentage())
+                            .totalQuantity(total.getTotalQuantity()).build());
+                }
+            }
+
+            long total = groups.stream().mapToLong(SocksGroupTotalDto::getTotalQuantity).sum();
+            log.debug("Total quantity: {} in {} groups", total, groups.size());
+            return SocksTotalDto.builder().totalQuantity(total).groups(groups).build();
+        } catch (InvalidDataFormatException e) {
+            log.error("Invalid data format: {}", e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            log.error("Error in getTotalQuantity method: {}", e.getMessage());
+            throw new RuntimeException("Error totalling socks", e);
+        }
+    }
+
+    /**
+     * Turns the cotton percentage filter into an inclusive {@code {from, to}} range.
+     *
+     * @return the range, or null if the filter cannot match any row
+     */
+    static int[] cottonPercentageRange(String operation, Integer cottonPercentage,
+                                       Integer cottonPercentageFrom, Integer cottonPercentageTo) {
+        if (operation != null && !operation.isEmpty()) {
+            if (cottonPercentage == null) {
+                throw new InvalidDataFormatException("cottonPercentage must be provided with operation.");
+            }
+            switch (operation) {
+                case "greaterThan":
+                    return cottonPercentage == Integer.MAX_VALUE ? null
+                            : new int[]{cottonPercentage + 1, Integer.MAX_VALUE};
+                case "lessThan":
+                    return cottonPercentage == Integer.MIN_VALUE ? null
+                            : new int[]{Integer.MIN_VALUE, cottonPercentage - 1};
+                case "equalTo":
+                    return new int[]{cottonPercentage, cottonPercentage};
+                default:
+                    throw new InvalidDataFormatException("Invalid operation. Please use 'greaterThan'," +
+                            " 'lessThan' or 'equalTo'.");
+            }
+        }
+        if (cottonPercentage != null) {
+            throw new InvalidDataFormatException("operation must be provided with cottonPercentage.");
+        }
+        int from = cottonPercentageFrom != null ? cottonPercentageFrom : Integer.MIN_VALUE;
+        int to = cottonPercentageTo != null ? cottonPercentageTo : Integer.MAX_VALUE;
+        return from <= to ? new int[]{from, to} : null;
+    }
+
+    /**
+     * Moving a row onto a (color, cottonPercentage) that another row already holds merges the two: the stock is
+     * added to that row and the moved row is deleted in the same transaction, as an upsert of the new key would.
+     */
     @Override
+    @Transactional
     public SocksDto updateSock(Long id, SocksDto socksDto) {
         try {
-            log.info("Request to update sock with id={} to {}", id, socksDto);
+            log.debug("Request to update sock with id={} to {}", id, socksDto);
 
             Socks existingSock = socksRepository.findById(id)
                     .orElseThrow(() -> new InsufficientStockException("Sock not found with id: " + id));
-
-            existingSock.setColor(socksDto.getColor());
-            existingSock.setCottonPercentage(socksDto.getCottonPercentage());
-            existingSock.setQuantity(socksDto.getQuantity());
-
-            Socks updatedSock = socksRepository.save(existingSock);
-            log.info("Updated sock: {}", updatedSock);
+            SocksKey previousKey = new SocksKey(existingSock.getColor(), existingSock.getCottonPercentage());
+
+            Optional<Socks> target = socksRepository
+                    .findByColorAndCottonPercentage(socksDto.getColor(), socksDto.getCottonPercentage()).stream()
+                    .filter(sock -> !sock.getId().equals(id))
+                    .findFirst();
+
+            Socks updatedSock;
+            if (target.isPresent()) {
+                Socks mergedSock = target.get();
+                mergedSock.setQuantity(mergedSock.getQuantity() + socksDto.getQuantity());
+                socksRepository.delete(existingSock);
+                updatedSock = socksRepository.save(mergedSock);
+                log.debug("Merged sock id={} into id={}", id, mergedSock.getId());
+            } else {
+                existingSock.setColor(socksDto.getColor());
+                existingSock.setCottonPercentage(socksDto.getCottonPercentage());
+                existingSock.setQuantity(socksDto.getQuantity());
+                updatedSock = socksRepository.save(existingSock);
+            }
+            eventPublisher.publishEvent(SocksChangedEvent.of(previousKey,
+                    new SocksKey(updatedSock.getColor(), updatedSock.getCottonPercentage())));
+            log.debug("Updated sock: {}", updatedSock);
             return socksMapper.toDto(updatedSock);
         } catch (InsufficientStockException e) {
             log.error("Sock not found: {}", e.getMessage());
@@ -157,21 +488,10 @@ public class SocksServiceImpl implements SocksService {
     @Override
     public void addSocks(SocksDto socksDto) {
         try {
-            log.info("Processing sock: {}", socksDto);
-
-            List<Socks> existingSocksList = socksRepository.findByColorAndCottonPercentage(
-                    socksDto.getColor(), socksDto.getCottonPercentage());
+            log.debug("Processing sock: {}", socksDto);
 
-            if (!existingSocksList.isEmpty()) {
-                Socks existingSock = existingSocksList.get(0);
-                existingSock.setQuantity(existingSock.getQuantity() + socksDto.getQuantity());
-                socksRepository.save(existingSock);
-                log.info("Updated sock: {}", existingSock);
-            } else {
-                Socks newSock = socksMapper.toEntity(socksDto);
-                socksRepository.save(newSock);
-                log.info("Added new sock: {}", newSock);
-            }
+            upsertEngine.upsert(socksDto.getColor(), socksDto.getCottonPercentage(), socksDto.getQuantity());
+            log.debug("Added socks: {}", socksDto);
         } catch (Exception e) {
             log.error("Error in addSock method: {}", e.getMessage());
             throw new RuntimeException("Error adding sock", e);
@@ -182,28 +502,31 @@ public class SocksServiceImpl implements SocksService {
     @Override
     public void decreaseSocksQuantity(String color, int cottonPercentage, int quantity) {
         try {
-            log.info("Request to decrease quantity for color: {}, cottonPercentage: {}, quantity: {}", color,
-                    cottonPercentage, quantity);
-
-            List<Socks> existingSocksList = socksRepository.findByColorAndCottonPercentage(color, cottonPercentage);
-
-            if (existingSocksList.isEmpty()) {
-                log.error("No socks found with color: {} and cottonPercentage: {}", color, cottonPercentage);
-                throw new InsufficientStockException("No socks found with the given color and cotton percentage");
+            if (log.isDebugEnabled()) {
+                log.debug("Request to decrease quantity for color: {}, cottonPercentage: {}, quantity: {}", color,
+                        cottonPercentage, quantity);
             }
 
-            Socks existingSock = existingSocksList.get(0);
+            int updated = socksRepository.decreaseQuantity(color, cottonPercentage, quantity);
 
-            if (existingSock.getQuantity() < quantity) {
-                log.error("Not enough socks in stock for color: {} and cottonPercentage: {}. Available: {}, " +
-                                "Requested: {}",
-                        color, cottonPercentage, existingSock.getQuantity(), quantity);
+            if (updated == 0) {
+                socksMetrics.stockRejected();
+                // only the rejected path pays for a second round-trip to tell "missing" from "not enough"
+                if (!socksRepository.existsByColorAndCottonPercentage(color, cottonPercentage)) {
+                    log.error("No socks found with color: {} and cottonPercentage: {}", color, cottonPercentage);
+                    throw new InsufficientStockException("No socks found with the given color and cotton " +
+                            "percentage");
+                }
+                log.error("Not enough socks in stock for color: {} and cottonPercentage: {}. Requested: {}",
+                        color, cottonPercentage, quantity);
                 throw new InsufficientStockException("Not enough socks in stock");
             }
 
-            existingSock.setQuantity(existingSock.getQuantity() - quantity);
-            socksRepository.save(existingSock);
-            log.info("Decreased quantity of socks: {}", existingSock);
+            eventPublisher.publishEvent(SocksChangedEvent.of(new SocksKey(color, cottonPercentage)));
+            if (log.isDebugEnabled()) {
+                log.debug("Decreased quantity of socks with color: {}, cottonPercentage: {} by {}", color,
+                        cottonPercentage, quantity);
+            }
         } catch (InsufficientStockException e) {
             log.error("Insufficient stock: {}", e.getMessage());
             throw e;
@@ -214,94 +537,239 @@ public class SocksServiceImpl implements SocksService {
     }
 
     @Override
-    public void processCsvFile(MultipartFile file) throws Exception {
-        try {
-            log.info("Processing CSV file: {}", file.getOriginalFilename());
-
-            try (CSVReader csvReader = new CSVReader(new InputStreamReader(file.getInputStream()))) {
-                List<String[]> rows = csvReader.readAll();
-                List<Socks> socksList = new ArrayList<>();
-
-                rows.remove(0);
-
-                for (String[] row : rows) {
-                    String color = row[0];
-                    int cottonPercentage = Integer.parseInt(row[1]);
-                    int quantity = Integer.parseInt(row[2]);
-
-                    Socks sock = new Socks();
-                    sock.setColor(color);
-                    sock.setCottonPercentage(cottonPercentage);
-                    sock.setQuantity(quantity);
+    public BatchImportResult processCsvFile(MultipartFile file) throws Exception {
+        log.debug("Processing CSV file: {}", file.getOriginalFilename());
+        return processCsvStream(file.getInputStream());
+    }
 
-                    socksList.add(sock);
+    @Override
+    public BatchImportResult processCsvStream(InputStream inputStream) throws Exception {
+        if ("copy".equals(batchLoader)) {
+            return processCsvStreamWithCopy(inputStream);
+        }
+        if (csvParallelism > 1) {
+            return processCsvStreamInParallel(inputStream);
+        }
+        try (SocksImportPipeline<String[]> pipeline = newPipeline("csv", SocksServiceImpl::csvRow)) {
+            BatchImportResult result;
+            try (CSVReader csvReader = new CSVReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                // header row
+                csvReader.readNext();
+
+                String[] row;
+                while ((row = csvReader.readNext()) != null) {
+                    pipeline.add(row);
                 }
-
-                socksRepository.saveAll(socksList);
-                log.info("Processed and saved {} socks from CSV file", socksList.size());
+                result = pipeline.finish();
             } catch (Exception e) {
+                if (isWriteFailure(e) || e instanceof UploadTooLargeException) {
+                    throw e;
+                }
                 log.error("Error processing CSV file: {}", e.getMessage());
+                socksMetrics.batchFailed("csv", true);
                 throw new FileProcessingException("Error processing CSV file: " + e.getMessage());
             }
+
+            socksMetrics.batchImported("csv", result);
+            log.info("Processed and saved {} socks from CSV file in {} chunks ({} rows/s, peak chunk {})",
+                    result.getRowsProcessed(), result.getChunks(), Math.round(result.getRowsPerSecond()),
+                    result.getPeakChunkSize());
+            return result;
+        } catch (UploadTooLargeException e) {
+            log.error("CSV upload rejected: {}", e.getMessage());
+            socksMetrics.batchFailed("csv", true);
+            throw e;
         } catch (Exception e) {
             log.error("Error in processCsvFile method: {}", e.getMessage());
+            if (!(e instanceof FileProcessingException)) {
+                socksMetrics.batchFailed("csv", false);
+            }
             throw new RuntimeException("Error processing file", e);
         }
     }
 
-    @Override
-    public void processExcelFile(MultipartFile file) throws Exception {
+    /**
+     * Streams the validated rows into a staging table with COPY and merges them into the socks table in one
+     * statement, see {@link SocksCopyLoader}. The file is loaded in one transaction, so a malformed row loads
+     * nothing.
+     */
+    private BatchImportResult processCsvStreamWithCopy(InputStream inputStream) throws Exception {
         try {
-            log.info("Processing Excel file: {}", file.getOriginalFilename());
-            try (InputStream inputStream = file.getInputStream()) {
-                Workbook workbook = new XSSFWorkbook(inputStream);
-                Sheet sheet = workbook.getSheetAt(0);
-                Iterator<Row> rowIterator = sheet.iterator();
-
-                while (rowIterator.hasNext()) {
-                    Row row = rowIterator.next();
+            log.debug("Processing CSV file with COPY");
+            long startedAt = System.currentTimeMillis();
+
+            SocksCopyLoader.Result loaded;
+            try (CSVReader csvReader = new CSVReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                loaded = copyLoader.load(sink -> {
+                    // header row
+                    csvReader.readNext();
+
+                    String[] row;
+                    while ((row = csvReader.readNext()) != null) {
+                        sink.add(row[0], Integer.parseInt(row[1]), Integer.parseInt(row[2]));
+                    }
+                });
+            } catch (SQLException | UploadTooLargeException e) {
+                throw e;
+            } catch (Exception e) {
+                log.error("Error processing CSV file: {}", e.getMessage());
+                socksMetrics.batchFailed("csv", true);
+                throw new FileProcessingException("Error processing CSV file: " + e.getMessage());
+            }
 
-                    if (row.getRowNum() == 0) continue;
+            BatchImportResult result = BatchImportResult.builder()
+                    .rowsProcessed(loaded.rows())
+                    .chunks(1)
+                    .peakChunkSize(loaded.items())
+                    .durationMillis(System.currentTimeMillis() - startedAt)
+                    .build();
+            socksMetrics.batchImported("csv", result);
+            log.info("Copied and merged {} socks from CSV file into {} stock items ({} rows/s)",
+                    result.getRowsProcessed(), loaded.items(), Math.round(result.getRowsPerSecond()));
+            return result;
+        } catch (UploadTooLargeException e) {
+            log.error("CSV upload rejected: {}", e.getMessage());
+            socksMetrics.batchFailed("csv", true);
+            throw e;
+        } catch (Exception e) {
+            log.error("Error in processCsvFile method: {}", e.getMessage());
+            if (!(e instanceof FileProcessingException)) {
+                socksMetrics.batchFailed("csv", false);
+            }
+            throw new RuntimeException("Error processing file", e);
+        }
+    }
 
-                    String color = row.getCell(0).getStringCellValue();
-                    int cottonPercentage = (int) row.getCell(1).getNumericCellValue();
-                    int quantity = (int) row.getCell(2).getNumericCellValue();
+    /**
+     * Spools the upload and parses it on {@code socks.batch.csv-parallelism} threads with a
+     * {@link ParallelCsvParser}. The merged quantities are written at once, so memory grows with the number of
+     * distinct stock items in the file rather than being capped by {@code socks.batch.chunk-size}.
+     */
+    private BatchImportResult processCsvStreamInParallel(InputStream inputStream) throws Exception {
+        Path spoolFile = null;
+        try {
+            log.debug("Processing CSV file on {} threads", csvParallelism);
+            long startedAt = System.currentTimeMillis();
 
-                    SocksDto socksDto = new SocksDto();
-                    socksDto.setColor(color);
-                    socksDto.setCottonPercentage(cottonPercentage);
-                    socksDto.setQuantity(quantity);
+            spoolFile = SpoolFiles.spool(inputStream, ".csv");
 
-                    addBatchToDatabase(socksDto);
-                }
+            ParallelCsvParser.Result parsed;
+            try {
+                parsed = new ParallelCsvParser(csvParallelism).parse(spoolFile);
+            } catch (Exception e) {
+                log.error("Error processing CSV file: {}", e.getMessage());
+                socksMetrics.batchFailed("csv", true);
+                throw new FileProcessingException("Error processing CSV file: " + e.getMessage());
             }
+
+            upsertEngine.apply(parsed.quantities());
+            BatchImportResult result = BatchImportResult.builder()
+                    .rowsProcessed(parsed.rows())
+                    .chunks(1)
+                    .peakChunkSize(parsed.quantities().size())
+                    .durationMillis(System.currentTimeMillis() - startedAt)
+                    .build();
+            socksMetrics.batchImported("csv", result);
+            log.info("Processed and saved {} socks from CSV file parsed as {} ranges ({} rows/s)",
+                    result.getRowsProcessed(), parsed.ranges(), Math.round(result.getRowsPerSecond()));
+            return result;
+        } catch (UploadTooLargeException e) {
+            log.error("CSV upload rejected: {}", e.getMessage());
+            socksMetrics.batchFailed("csv", true);
+            throw e;
         } catch (Exception e) {
-            log.error("Error in processExcelFile method: {}", e.getMessage());
-            throw new RuntimeException("Error processing Excel file", e);
+            log.error("Error in processCsvFile method: {}", e.getMessage());
+            if (!(e instanceof FileProcessingException)) {
+                socksMetrics.batchFailed("csv", false);
+            }
+            throw new RuntimeException("Error processing file", e);
+        } finally {
+            if (spoolFile != null) {
+                Files.deleteIfExists(spoolFile);
+            }
         }
     }
 
-    private void addBatchToDatabase(SocksDto socksDto) {
-        try {
-            List<Socks> existingSocksList = socksRepository.findByColorAndCottonPercentage(
-                    socksDto.getColor(), socksDto.getCottonPercentage());
+    @Override
+    public BatchImportResult processExcelFile(MultipartFile file) throws Exception {
+        log.debug("Processing Excel file: {}", file.getOriginalFilename());
+        return processExcelStream(file.getInputStream());
+    }
 
-            if (!existingSocksList.isEmpty()) {
-                Socks existingSock = existingSocksList.get(0);
-                existingSock.setQuantity(existingSock.getQuantity() + socksDto.getQuantity());
-                socksRepository.save(existingSock);
-            } else {
-                Socks newSock = socksMapper.toEntity(socksDto);
-                socksRepository.save(newSock);
+    @Override
+    public BatchImportResult processExcelStream(InputStream inputStream) throws Exception {
+        Path spoolFile = null;
+        try {
+            // the OOXML package needs random access, so the upload is spooled to disk instead of the heap
+            spoolFile = SpoolFiles.spool(inputStream, ".xlsx");
+
+            BatchImportResult result;
+            // the reader already converts the cells, so the validate stage only aggregates
+            try (SocksImportPipeline<SocksDto> pipeline = newPipeline("xlsx", Function.identity())) {
+                excelReader.read(spoolFile.toFile(), pipeline::add);
+                result = pipeline.finish();
             }
+            socksMetrics.batchImported("xlsx", result);
+            log.info("Processed {} socks from Excel file in {} chunks ({} rows/s)", result.getRowsProcessed(),
+                    result.getChunks(), Math.round(result.getRowsPerSecond()));
+            return result;
+        } catch (UploadTooLargeException e) {
+            log.error("Excel upload rejected: {}", e.getMessage());
+            socksMetrics.batchFailed("xlsx", true);
+            throw e;
         } catch (Exception e) {
-            log.error("Error in addBatchToDatabase method: {}", e.getMessage());
-            throw new RuntimeException("Error adding batch to database", e);
+            log.error("Error in processExcelFile method: {}", e.getMessage());
+            // the reader rejects malformed cells with IllegalArgumentException (NumberFormatException included)
+            socksMetrics.batchFailed("xlsx", e instanceof IllegalArgumentException);
+            throw new RuntimeException("Error processing Excel file", e);
+        } finally {
+            if (spoolFile != null) {
+                Files.deleteIfExists(spoolFile);
+            }
         }
     }
-}
 
+    private <T> SocksImportPipeline<T> newPipeline(String format, Function<T, SocksDto> validator) {
+        return new SocksImportPipeline<>(upsertEngine, validator, socksMetrics, format, batchChunkSize,
+                batchWriterThreads, batchQueueCapacity);
+    }
 
+    private static SocksDto csvRow(String[] row) {
+        return new SocksDto(null, row[0], Integer.parseInt(row[1]), Integer.parseInt(row[2]));
+    }
 
+    private static boolean isWriteFailure(Exception e) {
+        return e instanceof SocksImportPipeline.StageException stageFailure
+                && stageFailure.getStage() == SocksImportPipeline.Stage.WRITE;
+    }
 
+    @Override
+    @Transactional(readOnly = true)
+    public long exportSocks(OutputStream outputStream) {
+        log.debug("Exporting all socks");
+        long exported = 0;
+        try (Stream<Socks> socks = socksRepository.streamAll();
+             JsonGenerator generator = EXPORT_MAPPER.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+
+            Iterator<Socks> iterator = socks.iterator();
+            while (iterator.hasNext()) {
+                Socks sock = iterator.next();
+                EXPORT_MAPPER.writeValue(generator, socksMapper.toDto(sock));
+                // keeps the persistence context from holding every exported row
+                entityManager.detach(sock);
+                exported++;
+            }
+            if (exported > 0) {
+                generator.writeRaw('\n');
+            }
 
+            log.info("Exported {} socks", exported);
+            return exported;
+        } catch (Exception e) {
+            log.error("Error in exportSocks method after {} socks: {}", exported, e.getMessage());
+            throw new RuntimeException("Error exporting socks", e);
+        }
+    }
+}
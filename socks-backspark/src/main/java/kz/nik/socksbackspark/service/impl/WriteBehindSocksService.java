@@ -0,0 +1,113 @@
+package kz.nik.socksbackspark.service.impl;
+
+import io.micrometer.core.annotation.Timed;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksPage;
+import kz.nik.socksbackspark.dto.SocksTotalDto;
+import kz.nik.socksbackspark.exceptions.InsufficientStockException;
+import kz.nik.socksbackspark.service.SocksService;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import kz.nik.socksbackspark.service.writebehind.StockDeltaBuffer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Routes income and outcome through the {@link StockDeltaBuffer} when {@code socks.write-behind.enabled=true};
+ * every other operation is served by {@link SocksServiceImpl}. Only the two buffered operations are timed here, the
+ * delegated ones already are by {@link SocksServiceImpl}.
+ */
+@Slf4j
+@Primary
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "socks.write-behind.enabled", havingValue = "true")
+public class WriteBehindSocksService implements SocksService {
+
+    private final SocksServiceImpl socksService;
+    private final StockDeltaBuffer stockDeltaBuffer;
+    private final SocksMetrics socksMetrics;
+
+    @Override
+    public SocksPage getFilteredSocks(String color, String operation, Integer cottonPercentage,
+                                      Integer cottonPercentageFrom, Integer cottonPercentageTo,
+                                      String sortBy, String sortDirection, int page, Integer size) {
+        return socksService.getFilteredSocks(color, operation, cottonPercentage, cottonPercentageFrom,
+                cottonPercentageTo, sortBy, sortDirection, page, size);
+    }
+
+    @Override
+    public SocksPage getAllSocks(Long cursor, int page, Integer size) {
+        return socksService.getAllSocks(cursor, page, size);
+    }
+
+    @Override
+    public SocksTotalDto getTotalQuantity(String color, String operation, Integer cottonPercentage,
+                                          Integer cottonPercentageFrom, Integer cottonPercentageTo, String groupBy) {
+        return socksService.getTotalQuantity(color, operation, cottonPercentage, cottonPercentageFrom,
+                cottonPercentageTo, groupBy);
+    }
+
+    @Override
+    public SocksDto updateSock(Long id, SocksDto socksDto) {
+        return socksService.updateSock(id, socksDto);
+    }
+
+    @Override
+    @Timed(value = "socks.service", histogram = true)
+    public void addSocks(SocksDto socksDto) {
+        try {
+            stockDeltaBuffer.income(socksDto.getColor(), socksDto.getCottonPercentage(), socksDto.getQuantity());
+        } catch (Exception e) {
+            log.error("Error in addSock method: {}", e.getMessage());
+            throw new RuntimeException("Error adding sock", e);
+        }
+    }
+
+    @Override
+    @Timed(value = "socks.service", histogram = true)
+    public void decreaseSocksQuantity(String color, int cottonPercentage, int quantity) {
+        try {
+            stockDeltaBuffer.outcome(color, cottonPercentage, quantity);
+        } catch (InsufficientStockException e) {
+            log.error("Insufficient stock: {}", e.getMessage());
+            socksMetrics.stockRejected();
+            throw e;
+        } catch (Exception e) {
+            log.error("Error in decreaseSocksQuantity method: {}", e.getMessage());
+            throw new RuntimeException("Error decreasing sock quantity", e);
+        }
+    }
+
+    @Override
+    public BatchImportResult processCsvFile(MultipartFile file) throws Exception {
+        return socksService.processCsvFile(file);
+    }
+
+    @Override
+    public BatchImportResult processExcelFile(MultipartFile file) throws Exception {
+        return socksService.processExcelFile(file);
+    }
+
+    @Override
+    public BatchImportResult processCsvStream(InputStream inputStream) throws Exception {
+        return socksService.processCsvStream(inputStream);
+    }
+
+    @Override
+    public BatchImportResult processExcelStream(InputStream inputStream) throws Exception {
+        return socksService.processExcelStream(inputStream);
+    }
+
+    @Override
+    public long exportSocks(OutputStream outputStream) {
+        return socksService.exportSocks(outputStream);
+    }
+}
@@ -0,0 +1,345 @@
+package kz.nik.socksbackspark.service.inventory;
+
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the inventory catalogue keyed by (color, cottonPercentage), bounded by {@code socks.cache.max-size}
+ * entries.
+ * <p>
+ * While the whole catalogue fits into the cache it is loaded once and the unfiltered listing, ordered by id, is
+ * answered from memory: the rows are also kept in an id-ordered tree, so a page costs its own size rather than a
+ * pass over the catalogue. Filtered and otherwise sorted reads go to the database, which pages and sorts them in
+ * the query. Writes publish a {@link SocksChangedEvent}; the affected entries are dropped and re-read one by one
+ * on the next read. If the catalogue outgrows the cache, the least recently written entry is evicted and the
+ * listing is read from the database until the cache expires.
+ * <p>
+ * Only writes made through this instance invalidate the cache. Writes by other replicas or directly in the
+ * database are picked up when the whole cache expires, {@code socks.cache.ttl-seconds} after it was last emptied,
+ * so the cache is meant for single-instance deployments and is off by default.
+ */
+@Slf4j
+@Component
+public class InventoryCache {
+
+    private final SocksRepository socksRepository;
+    private final boolean enabled;
+    private final int maxSize;
+
+    @Value("${socks.cache.ttl-seconds:300}")
+    private long ttlSeconds = 300;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<SocksKey, Socks> entries;
+    private final NavigableMap<Long, Socks> entriesById = new TreeMap<>();
+    // entriesById as a list for offset pages, rebuilt on the first offset read after a change
+    private List<Socks> sortedById;
+    private final Set<SocksKey> staleKeys = new HashSet<>();
+    private boolean complete;
+    private boolean fullLoadAttempted;
+    // keys written while the catalogue is being loaded, null when no load is running
+    private Set<SocksKey> writtenWhileLoading;
+    private long expiresAt;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public InventoryCache(SocksRepository socksRepository,
+                          SocksMetrics socksMetrics,
+                          @Value("${socks.cache.enabled:false}") boolean enabled,
+                          @Value("${socks.cache.max-size:10000}") int maxSize) {
+        this.socksRepository = socksRepository;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SocksKey, Socks> eldest) {
+                if (size() <= InventoryCache.this.maxSize) {
+                    return false;
+                }
+                evictions.incrementAndGet();
+                complete = false;
+                entriesById.remove(eldest.getValue().getId());
+                sortedById = null;
+                return true;
+            }
+        };
+        socksMetrics.inventoryCache(this);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Answers a page of the unfiltered listing ordered by id from memory.
+     *
+     * @return the page, or empty if the cache cannot answer and the caller has to query the database
+     */
+    public Optional<Page<Socks>> findPage(Pageable pageRequest) {
+        if (!isCatalogueReady()) {
+            return Optional.empty();
+        }
+        synchronized (lock) {
+            if (!complete) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            hits.incrementAndGet();
+            if (sortedById == null) {
+                sortedById = List.copyOf(entriesById.values());
+            }
+            int from = (int) Math.min(pageRequest.getOffset(), sortedById.size());
+            int to = Math.min(from + pageRequest.getPageSize(), sortedById.size());
+            List<Socks> content = new ArrayList<>(to - from);
+            for (Socks sock : sortedById.subList(from, to)) {
+                content.add(copy(sock));
+            }
+            return Optional.of(new PageImpl<>(content, pageRequest, sortedById.size()));
+        }
+    }
+
+    /**
+     * Answers a keyset page from memory: up to {@code limit} rows with an id greater than {@code afterId}, ordered
+     * by id.
+     *
+     * @return the rows, or empty if the cache cannot answer and the caller has to query the database
+     */
+    public Optional<List<Socks>> findAfter(long afterId, int limit) {
+        if (!isCatalogueReady()) {
+            return Optional.empty();
+        }
+        synchronized (lock) {
+            if (!complete) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            hits.incrementAndGet();
+            List<Socks> rows = new ArrayList<>(Math.min(limit, entriesById.size()));
+            for (Socks sock : entriesById.tailMap(afterId, false).values()) {
+                if (rows.size() == limit) {
+                    break;
+                }
+                rows.add(copy(sock));
+            }
+            return Optional.of(rows);
+        }
+    }
+
+    /**
+     * Runs after the commit when the change was made inside a transaction, so that a concurrent read cannot put
+     * the previous state back into the cache after the invalidation.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSocksChanged(SocksChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            if (event.allItems()) {
+                clear();
+                invalidations.incrementAndGet();
+                return;
+            }
+            for (SocksKey key : event.keys()) {
+                remove(key);
+                if (complete) {
+                    staleKeys.add(key);
+                }
+                if (writtenWhileLoading != null) {
+                    writtenWhileLoading.add(key);
+                }
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public int getSize() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    private boolean isCatalogueReady() {
+        if (!enabled) {
+            return false;
+        }
+        expireIfDue();
+        if (!ensureComplete()) {
+            misses.incrementAndGet();
+            return false;
+        }
+        refreshStaleKeys();
+        return true;
+    }
+
+    private boolean ensureComplete() {
+        Set<SocksKey> written = new HashSet<>();
+        synchronized (lock) {
+            if (complete) {
+                return true;
+            }
+            if (fullLoadAttempted) {
+                return false;
+            }
+            fullLoadAttempted = true;
+            staleKeys.clear();
+            writtenWhileLoading = written;
+        }
+
+        loads.incrementAndGet();
+        Page<Socks> catalogue = null;
+        try {
+            catalogue = socksRepository.findAll(PageRequest.of(0, maxSize));
+            synchronized (lock) {
+                if (writtenWhileLoading != written) {
+                    // everything was invalidated while loading
+                    return false;
+                }
+                if (catalogue.hasNext()) {
+                    log.info("Inventory has more than {} items, the listing is read from the database", maxSize);
+                    return false;
+                }
+                for (Socks sock : catalogue) {
+                    put(new SocksKey(sock.getColor(), sock.getCottonPercentage()), sock);
+                }
+                // the page may miss or hold an outdated row for items written while loading; they are re-read
+                staleKeys.addAll(written);
+                complete = true;
+                log.info("Inventory cache loaded with {} items", entries.size());
+                return true;
+            }
+        } finally {
+            synchronized (lock) {
+                if (writtenWhileLoading == written) {
+                    writtenWhileLoading = null;
+                    if (catalogue == null) {
+                        // the query failed, the next read tries again
+                        fullLoadAttempted = false;
+                    }
+                }
+            }
+        }
+    }
+
+    private void refreshStaleKeys() {
+        Set<SocksKey> refreshing;
+        synchronized (lock) {
+            if (staleKeys.isEmpty()) {
+                return;
+            }
+            refreshing = new HashSet<>(staleKeys);
+            staleKeys.clear();
+        }
+
+        for (SocksKey key : refreshing) {
+            Optional<Socks> loaded = load(key);
+            synchronized (lock) {
+                // a write after the key was taken off the stale set puts it back there, so the next read retries
+                if (staleKeys.contains(key)) {
+                    continue;
+                }
+                if (loaded.isPresent()) {
+                    put(key, loaded.get());
+                } else {
+                    remove(key);
+                }
+            }
+        }
+    }
+
+    private void expireIfDue() {
+        synchronized (lock) {
+            long now = System.nanoTime();
+            if (expiresAt == 0) {
+                expiresAt = now + TimeUnit.SECONDS.toNanos(ttlSeconds);
+            } else if (now - expiresAt >= 0) {
+                clear();
+            }
+        }
+    }
+
+    private void put(SocksKey key, Socks sock) {
+        Socks cached = copy(sock);
+        Socks previous = entries.put(key, cached);
+        if (previous != null) {
+            entriesById.remove(previous.getId());
+        }
+        entriesById.put(cached.getId(), cached);
+        sortedById = null;
+    }
+
+    private void remove(SocksKey key) {
+        Socks removed = entries.remove(key);
+        if (removed != null) {
+            entriesById.remove(removed.getId());
+            sortedById = null;
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        entriesById.clear();
+        sortedById = null;
+        staleKeys.clear();
+        complete = false;
+        fullLoadAttempted = false;
+        writtenWhileLoading = null;
+        expiresAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    private Optional<Socks> load(SocksKey key) {
+        loads.incrementAndGet();
+        List<Socks> found = socksRepository.findByColorAndCottonPercentage(key.color(), key.cottonPercentage());
+        return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+    }
+
+    private static Socks copy(Socks sock) {
+        return new Socks(sock.getId(), sock.getColor(), sock.getCottonPercentage(), sock.getQuantity());
+    }
+}
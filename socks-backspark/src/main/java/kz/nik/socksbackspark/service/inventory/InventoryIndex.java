@@ -0,0 +1,398 @@
+package kz.nik.socksbackspark.service.inventory;
+
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Columnar in-memory index of the inventory that answers every {@code GET /api/socks} filter without a database
+ * round-trip. Enabled with {@code socks.index.enabled=true}.
+ * <p>
+ * Rows are kept in primitive arrays ordered by (color, cottonPercentage). A hash index maps each color to its
+ * contiguous slot range, and cotton percentages (0-100) are bucketed into 101 slot arrays ordered by color, so
+ * results come out already sorted for every supported {@link Order}. Items without a color sort after all colors,
+ * as in the database's ascending order, and are matched by cotton percentage filters only.
+ * <p>
+ * The index is loaded when the application is ready. Changed items reported by {@link SocksChangedEvent} are
+ * re-read on the writer's thread once the change is committed: a quantity change is written in place, only
+ * inserts, deletes and key changes build a new snapshot, which is then published with one volatile write. Queries
+ * never touch the database or the lock, they only read the current snapshot. If a stored cotton percentage falls
+ * outside 0-100 the index stays unavailable and callers fall back to the repository; it is loaded again once one
+ * of the offending items changes.
+ */
+@Slf4j
+@Component
+public class InventoryIndex {
+
+    public static final int MAX_COTTON_PERCENTAGE = 100;
+
+    public enum Order {
+        NONE,
+        COLOR_ASC,
+        COLOR_DESC,
+        COTTON_ASC,
+        COTTON_DESC
+    }
+
+    /**
+     * Inclusive range of cotton percentages, clamped to 0-100. A range with {@code from > to} matches nothing.
+     */
+    public record CottonRange(int from, int to) {
+
+        public static CottonRange all() {
+            return new CottonRange(0, MAX_COTTON_PERCENTAGE);
+        }
+
+        public static CottonRange none() {
+            return new CottonRange(1, 0);
+        }
+
+        public static CottonRange greaterThan(Integer cottonPercentage) {
+            if (cottonPercentage == null || cottonPercentage >= MAX_COTTON_PERCENTAGE) {
+                return none();
+            }
+            return new CottonRange(Math.max(cottonPercentage + 1, 0), MAX_COTTON_PERCENTAGE);
+        }
+
+        public static CottonRange lessThan(Integer cottonPercentage) {
+            if (cottonPercentage == null || cottonPercentage <= 0) {
+                return none();
+            }
+            return new CottonRange(0, Math.min(cottonPercentage - 1, MAX_COTTON_PERCENTAGE));
+        }
+
+        public static CottonRange equalTo(Integer cottonPercentage) {
+            if (cottonPercentage == null || cottonPercentage < 0 || cottonPercentage > MAX_COTTON_PERCENTAGE) {
+                return none();
+            }
+            return new CottonRange(cottonPercentage, cottonPercentage);
+        }
+
+        public static CottonRange between(Integer from, Integer to) {
+            if (from == null || to == null) {
+                return none();
+            }
+            return new CottonRange(Math.max(from, 0), Math.min(to, MAX_COTTON_PERCENTAGE));
+        }
+
+        public boolean isEmpty() {
+            return from > to;
+        }
+
+        public boolean isAll() {
+            return from == 0 && to == MAX_COTTON_PERCENTAGE;
+        }
+    }
+
+    private final SocksRepository socksRepository;
+    private final boolean enabled;
+
+    // not a monitor: the lock is held across repository calls, which would pin a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<SocksKey> pendingKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean reloadRequested = new AtomicBoolean();
+    // items with a cotton percentage outside 0-100 that keep the index unavailable, guarded by the lock
+    private final Set<SocksKey> invalidKeys = new HashSet<>();
+    private volatile Snapshot snapshot;
+
+    public InventoryIndex(SocksRepository socksRepository,
+                          @Value("${socks.index.enabled:false}") boolean enabled) {
+        this.socksRepository = socksRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            reloadRequested.set(false);
+            pendingKeys.clear();
+            List<Socks> rows = socksRepository.findAll();
+            snapshot = build(rows);
+            if (snapshot != null) {
+                log.info("Inventory index loaded with {} items", rows.size());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the matching rows in the requested order, or empty if the index is not available
+     */
+    public Optional<List<Socks>> query(String color, CottonRange range, Order order) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Optional.empty();
+        }
+        if (range.isEmpty()) {
+            return Optional.of(new ArrayList<>());
+        }
+        return Optional.of(color != null ? current.queryColor(color, range, order)
+                : current.queryCotton(range, order));
+    }
+
+    /**
+     * Runs after the commit when the change was made inside a transaction, so that the committed state is read.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSocksChanged(SocksChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.allItems()) {
+            reloadRequested.set(true);
+        } else {
+            pendingKeys.addAll(event.keys());
+        }
+        // a writer that finds another one applying leaves its keys to it; the holder checks again after unlocking
+        while ((reloadRequested.get() || !pendingKeys.isEmpty()) && lock.tryLock()) {
+            try {
+                applyPendingChanges();
+            } catch (RuntimeException e) {
+                // the write itself is committed, so the failure is not passed on to the writer
+                reloadRequested.set(true);
+                log.error("Error updating inventory index, it is reloaded on the next change: {}", e.getMessage());
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void applyPendingChanges() {
+        if (reloadRequested.get()) {
+            load();
+            return;
+        }
+        Snapshot current = snapshot;
+        if (current == null) {
+            boolean invalidKeyChanged = false;
+            for (SocksKey key : List.copyOf(pendingKeys)) {
+                pendingKeys.remove(key);
+                invalidKeyChanged |= invalidKeys.contains(key);
+            }
+            // the change may have moved, fixed or deleted a row that kept the index unavailable
+            if (invalidKeyChanged) {
+                load();
+            }
+            return;
+        }
+
+        Map<SocksKey, Socks> changedRows = null;
+        for (SocksKey key : List.copyOf(pendingKeys)) {
+            // removed before reading, so that a change committed meanwhile is read again by the next pass
+            pendingKeys.remove(key);
+            List<Socks> stored = socksRepository.findByColorAndCottonPercentage(key.color(),
+                    key.cottonPercentage());
+            Socks row = stored.isEmpty() ? null : stored.get(0);
+
+            Integer slot = current.slots.get(key);
+            if (slot != null && row != null && row.getId() != null && row.getId() == current.ids[slot]) {
+                current.quantities.set(slot, row.getQuantity());
+                continue;
+            }
+            if (changedRows == null) {
+                changedRows = current.rowsByKey();
+            }
+            if (row == null) {
+                changedRows.remove(key);
+            } else {
+                changedRows.put(key, row);
+            }
+        }
+
+        if (changedRows != null) {
+            snapshot = build(changedRows.values());
+        }
+    }
+
+    private Snapshot build(Collection<Socks> rows) {
+        invalidKeys.clear();
+        for (Socks row : rows) {
+            if (row.getCottonPercentage() < 0 || row.getCottonPercentage() > MAX_COTTON_PERCENTAGE) {
+                invalidKeys.add(new SocksKey(row.getColor(), row.getCottonPercentage()));
+            }
+        }
+        if (!invalidKeys.isEmpty()) {
+            log.warn("Inventory index disabled until they change: {} items such as {} have a cottonPercentage " +
+                    "outside 0-100", invalidKeys.size(), invalidKeys.iterator().next());
+            return null;
+        }
+        return new Snapshot(rows);
+    }
+
+    private static final class Snapshot {
+
+        final long[] ids;
+        final String[] colors;
+        final int[] cottonPercentages;
+        final AtomicIntegerArray quantities;
+        final Map<String, int[]> colorRanges = new HashMap<>();
+        final int[][] cottonBuckets = new int[MAX_COTTON_PERCENTAGE + 1][];
+        final Map<SocksKey, Integer> slots = new HashMap<>();
+
+        Snapshot(Collection<Socks> rows) {
+            List<Socks> sorted = new ArrayList<>(rows);
+            sorted.sort((left, right) -> new SocksKey(left.getColor(), left.getCottonPercentage())
+                    .compareTo(new SocksKey(right.getColor(), right.getCottonPercentage())));
+
+            int size = sorted.size();
+            ids = new long[size];
+            colors = new String[size];
+            cottonPercentages = new int[size];
+            quantities = new AtomicIntegerArray(size);
+
+            int[] bucketSizes = new int[MAX_COTTON_PERCENTAGE + 1];
+            for (int slot = 0; slot < size; slot++) {
+                Socks row = sorted.get(slot);
+                ids[slot] = row.getId() != null ? row.getId() : 0;
+                colors[slot] = row.getColor();
+                cottonPercentages[slot] = row.getCottonPercentage();
+                quantities.set(slot, row.getQuantity());
+                slots.put(new SocksKey(row.getColor(), row.getCottonPercentage()), slot);
+                bucketSizes[row.getCottonPercentage()]++;
+
+                if (slot == 0 || !Objects.equals(colors[slot - 1], row.getColor())) {
+                    colorRanges.put(row.getColor(), new int[]{slot, slot + 1});
+                } else {
+                    colorRanges.get(row.getColor())[1] = slot + 1;
+                }
+            }
+
+            for (int bucket = 0; bucket <= MAX_COTTON_PERCENTAGE; bucket++) {
+                cottonBuckets[bucket] = new int[bucketSizes[bucket]];
+                bucketSizes[bucket] = 0;
+            }
+            // slots are visited in color order, so every bucket ends up ordered by color
+            for (int slot = 0; slot < size; slot++) {
+                int bucket = cottonPercentages[slot];
+                cottonBuckets[bucket][bucketSizes[bucket]++] = slot;
+            }
+        }
+
+        List<Socks> queryColor(String color, CottonRange range, Order order) {
+            List<Socks> result = new ArrayList<>();
+            int[] colorRange = colorRanges.get(color);
+            if (colorRange == null) {
+                return result;
+            }
+
+            // the slots of one color are ordered by cotton percentage
+            int from = lowerBound(colorRange[0], colorRange[1], range.from());
+            int to = lowerBound(from, colorRange[1], range.to() + 1);
+            if (order == Order.COTTON_DESC) {
+                for (int slot = to - 1; slot >= from; slot--) {
+                    result.add(row(slot));
+                }
+            } else {
+                for (int slot = from; slot < to; slot++) {
+                    result.add(row(slot));
+                }
+            }
+            return result;
+        }
+
+        List<Socks> queryCotton(CottonRange range, Order order) {
+            List<Socks> result = new ArrayList<>();
+            switch (order) {
+                case COLOR_ASC, COLOR_DESC -> {
+                    int[] matching = range.isAll() ? null : slotsInRange(range);
+                    int count = matching != null ? matching.length : ids.length;
+                    for (int i = 0; i < count; i++) {
+                        int position = order == Order.COLOR_ASC ? i : count - 1 - i;
+                        result.add(row(matching != null ? matching[position] : position));
+                    }
+                }
+                case COTTON_DESC -> {
+                    for (int bucket = range.to(); bucket >= range.from(); bucket--) {
+                        for (int slot : cottonBuckets[bucket]) {
+                            result.add(row(slot));
+                        }
+                    }
+                }
+                default -> {
+                    for (int bucket = range.from(); bucket <= range.to(); bucket++) {
+                        for (int slot : cottonBuckets[bucket]) {
+                            result.add(row(slot));
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        Map<SocksKey, Socks> rowsByKey() {
+            Map<SocksKey, Socks> rows = new LinkedHashMap<>();
+            for (int slot = 0; slot < ids.length; slot++) {
+                rows.put(new SocksKey(colors[slot], cottonPercentages[slot]), row(slot));
+            }
+            return rows;
+        }
+
+        private int[] slotsInRange(CottonRange range) {
+            int count = 0;
+            for (int bucket = range.from(); bucket <= range.to(); bucket++) {
+                count += cottonBuckets[bucket].length;
+            }
+            int[] matching = new int[count];
+            int position = 0;
+            for (int bucket = range.from(); bucket <= range.to(); bucket++) {
+                System.arraycopy(cottonBuckets[bucket], 0, matching, position, cottonBuckets[bucket].length);
+                position += cottonBuckets[bucket].length;
+            }
+            // slot numbers follow the color order
+            Arrays.sort(matching);
+            return matching;
+        }
+
+        private int lowerBound(int from, int to, int cottonPercentage) {
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (cottonPercentages[middle] < cottonPercentage) {
+                    from = middle + 1;
+                } else {
+                    to = middle;
+                }
+            }
+            return from;
+        }
+
+        private Socks row(int slot) {
+            return new Socks(ids[slot], colors[slot], cottonPercentages[slot], quantities.get(slot));
+        }
+    }
+}
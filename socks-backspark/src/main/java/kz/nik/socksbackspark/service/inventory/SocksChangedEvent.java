@@ -0,0 +1,25 @@
+package kz.nik.socksbackspark.service.inventory;
+
+import kz.nik.socksbackspark.model.SocksKey;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Published after a write to the socks table has been committed. {@code keys} lists the stock items whose rows
+ * changed; {@code allItems} means the change cannot be narrowed down and every cached item is affected.
+ */
+public record SocksChangedEvent(Collection<SocksKey> keys, boolean allItems) {
+
+    public static SocksChangedEvent of(SocksKey... keys) {
+        return new SocksChangedEvent(List.of(keys), false);
+    }
+
+    public static SocksChangedEvent of(Collection<SocksKey> keys) {
+        return new SocksChangedEvent(keys, false);
+    }
+
+    public static SocksChangedEvent all() {
+        return new SocksChangedEvent(List.of(), true);
+    }
+}
@@ -0,0 +1,173 @@
+package kz.nik.socksbackspark.service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.service.inventory.InventoryCache;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Inventory metrics that the method timers cannot see. Method latency is recorded by the {@code socks.service}
+ * timers of the {@code @Timed} services, endpoint latency by Spring's {@code http.server.requests}; both are
+ * published with percentile histograms at {@code /actuator/prometheus}.
+ * <ul>
+ *     <li>{@code socks.read.rows.scanned} / {@code socks.read.rows.returned}: rows a paged read had to match and
+ *     sort, and rows it returned, tagged by source ({@code index}, {@code cache} or {@code database});</li>
+ *     <li>{@code socks.batch.rows} and {@code socks.batch.rows.per.second}: rows ingested from batch files;</li>
+ *     <li>{@code socks.batch.rows.rejected}: malformed rows skipped in each imported file. Only background jobs
+ *     skip rows; a synchronous upload fails on its first malformed row, so its imported files record 0;</li>
+ *     <li>{@code socks.batch.files}: batch files by outcome ({@code imported}, {@code parse_error},
+ *     {@code failed});</li>
+ *     <li>{@code socks.batch.stage.rows}, {@code socks.batch.stage.busy} and {@code socks.batch.stage.blocked}:
+ *     rows handled by each stage of a batch import pipeline, the time it worked and the time it waited on its
+ *     queues;</li>
+ *     <li>{@code socks.batch.queue.depth}: items waiting between pipeline stages, summed over running imports;</li>
+ *     <li>{@code socks.outcome.rejected}: outcome requests rejected for insufficient stock;</li>
+ *     <li>{@code socks.cache.gets} (tagged {@code hit} or {@code miss}), {@code socks.cache.loads},
+ *     {@code socks.cache.evictions}, {@code socks.cache.invalidations} and {@code socks.cache.size}: the
+ *     {@link InventoryCache} counters, read from the cache when they are scraped.</li>
+ * </ul>
+ */
+@Component
+public class SocksMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter stockRejections;
+    private final Map<String, AtomicInteger> queueDepths = new ConcurrentHashMap<>();
+
+    public SocksMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.stockRejections = Counter.builder("socks.outcome.rejected")
+                .description("Outcome requests rejected for insufficient stock")
+                .register(meterRegistry);
+    }
+
+    public void rowsRead(String source, long rowsScanned, int rowsReturned) {
+        DistributionSummary.builder("socks.read.rows.scanned")
+                .description("Rows matched and sorted to answer a paged read")
+                .baseUnit("rows")
+                .tag("source", source)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(rowsScanned);
+        DistributionSummary.builder("socks.read.rows.returned")
+                .description("Rows returned by a paged read")
+                .baseUnit("rows")
+                .tag("source", source)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(rowsReturned);
+    }
+
+    public void batchImported(String format, BatchImportResult result) {
+        batchImported(format, result, 0);
+    }
+
+    public void batchImported(String format, BatchImportResult result, long rowsRejected) {
+        Counter.builder("socks.batch.rows")
+                .description("Rows ingested from batch files")
+                .baseUnit("rows")
+                .tag("format", format)
+                .register(meterRegistry)
+                .increment(result.getRowsProcessed());
+        DistributionSummary.builder("socks.batch.rows.per.second")
+                .description("Ingestion rate of each batch file")
+                .baseUnit("rows")
+                .tag("format", format)
+                .register(meterRegistry)
+                .record(result.getRowsPerSecond());
+        DistributionSummary.builder("socks.batch.rows.rejected")
+                .description("Malformed rows skipped in each imported batch file")
+                .baseUnit("rows")
+                .tag("format", format)
+                .register(meterRegistry)
+                .record(rowsRejected);
+        batchFile(format, "imported");
+    }
+
+    public void batchFailed(String format, boolean parseError) {
+        batchFile(format, parseError ? "parse_error" : "failed");
+    }
+
+    public void batchStage(String format, String stage, long rows, long busyNanos, long blockedNanos) {
+        Counter.builder("socks.batch.stage.rows")
+                .description("Rows handled by a batch import stage")
+                .baseUnit("rows")
+                .tag("format", format)
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .increment(rows);
+        Timer.builder("socks.batch.stage.busy")
+                .description("Time a batch import stage spent working")
+                .tag("format", format)
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(busyNanos, TimeUnit.NANOSECONDS);
+        Timer.builder("socks.batch.stage.blocked")
+                .description("Time a batch import stage spent waiting on its queues")
+                .tag("format", format)
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .record(blockedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void batchQueueChanged(String queue, int delta) {
+        queueDepths.computeIfAbsent(queue, name -> {
+            AtomicInteger depth = new AtomicInteger();
+            Gauge.builder("socks.batch.queue.depth", depth, AtomicInteger::get)
+                    .description("Items waiting between batch import stages")
+                    .tag("queue", name)
+                    .register(meterRegistry);
+            return depth;
+        }).addAndGet(delta);
+    }
+
+    public void stockRejected() {
+        stockRejections.increment();
+    }
+
+    public void inventoryCache(InventoryCache cache) {
+        cacheCounter("socks.cache.gets", "Listing reads answered from the inventory cache", cache,
+                InventoryCache::getHits, "hit");
+        cacheCounter("socks.cache.gets", "Listing reads the inventory cache passed to the database", cache,
+                InventoryCache::getMisses, "miss");
+        cacheCounter("socks.cache.loads", "Database reads that filled the inventory cache", cache,
+                InventoryCache::getLoads, null);
+        cacheCounter("socks.cache.evictions", "Entries evicted from the full inventory cache", cache,
+                InventoryCache::getEvictions, null);
+        cacheCounter("socks.cache.invalidations", "Inventory cache entries dropped after a write", cache,
+                InventoryCache::getInvalidations, null);
+        Gauge.builder("socks.cache.size", cache, InventoryCache::getSize)
+                .description("Entries held by the inventory cache")
+                .register(meterRegistry);
+    }
+
+    private void cacheCounter(String name, String description, InventoryCache cache,
+                              ToDoubleFunction<InventoryCache> count, String result) {
+        FunctionCounter.Builder<InventoryCache> builder = FunctionCounter.builder(name, cache, count)
+                .description(description);
+        if (result != null) {
+            builder.tag("result", result);
+        }
+        builder.register(meterRegistry);
+    }
+
+    private void batchFile(String format, String outcome) {
+        Counter.builder("socks.batch.files")
+                .description("Batch files processed, by outcome")
+                .tag("format", format)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,358 @@
+package kz.nik.socksbackspark.service.writebehind;
+
+import jakarta.annotation.PreDestroy;
+import kz.nik.socksbackspark.exceptions.InsufficientStockException;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for income and outcome on hot stock items. Every operation only changes the in-memory
+ * state of its item (a short per-item critical section instead of a database row lock); the summed incomes and the
+ * summed outcomes per item are written every {@code flush-interval-ms} or after {@code flush-max-operations}
+ * operations, whichever comes first. Incomes are written before outcomes and on their own, so a rejected outcome
+ * never takes acknowledged incomes down with it.
+ * <p>
+ * Outcomes are validated against the in-memory balance, which is the stored quantity plus the deltas that are not
+ * flushed yet. The balance is re-read from the database after every flush of the item, so changes made by batch
+ * imports and updates are picked up with at most one flush interval of delay. If another writer lowers the stock
+ * in that window, the flushed decrement is rejected by the database and logged instead of driving the stock
+ * negative; {@code FLUSHED} callers of the rejected outcomes get an {@link InsufficientStockException}.
+ * <p>
+ * Durability is set with {@code socks.write-behind.durability}:
+ * <ul>
+ *     <li>{@code BUFFERED} - the call returns as soon as the in-memory balance is updated. Deltas not flushed yet
+ *     are lost if the process dies without a regular shutdown.</li>
+ *     <li>{@code FLUSHED} - the call returns once the flush that contains its delta has been committed (group
+ *     commit), or fails after {@code ack-timeout-ms}.</li>
+ * </ul>
+ * Pending deltas are drained when the application context shuts down.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "socks.write-behind.enabled", havingValue = "true")
+public class StockDeltaBuffer {
+
+    public enum Durability {
+        BUFFERED,
+        FLUSHED
+    }
+
+    private static final int DRAIN_ATTEMPTS = 3;
+
+    private final SocksUpsertEngine upsertEngine;
+    private final SocksRepository socksRepository;
+    private final Durability durability;
+    private final int flushMaxOperations;
+    private final long ackTimeoutMillis;
+
+    private final Map<SocksKey, ItemState> items = new ConcurrentHashMap<>();
+    private final AtomicInteger operationsSinceFlush = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong rejectedDeltas = new AtomicLong();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean closed;
+
+    public StockDeltaBuffer(SocksUpsertEngine upsertEngine,
+                            SocksRepository socksRepository,
+                            @Value("${socks.write-behind.durability:BUFFERED}") Durability durability,
+                            @Value("${socks.write-behind.flush-interval-ms:50}") long flushIntervalMillis,
+                            @Value("${socks.write-behind.flush-max-operations:1000}") int flushMaxOperations,
+                            @Value("${socks.write-behind.ack-timeout-ms:5000}") long ackTimeoutMillis) {
+        this.upsertEngine = upsertEngine;
+        this.socksRepository = socksRepository;
+        this.durability = durability;
+        this.flushMaxOperations = flushMaxOperations;
+        this.ackTimeoutMillis = ackTimeoutMillis;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "socks-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        log.info("Write-behind stock buffer started: durability={}, flushIntervalMs={}, flushMaxOperations={}",
+                durability, flushIntervalMillis, flushMaxOperations);
+    }
+
+    public void income(String color, int cottonPercentage, int quantity) {
+        SocksKey key = new SocksKey(color, cottonPercentage);
+        CompletableFuture<Void> flushed;
+        while (true) {
+            ItemState state = state(key);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                state.balance += quantity;
+                state.pendingIncome += quantity;
+                state.exists = true;
+                state.touched = true;
+                if (durability == Durability.FLUSHED && state.incomeFlushed == null) {
+                    state.incomeFlushed = new CompletableFuture<>();
+                }
+                flushed = state.incomeFlushed;
+                break;
+            }
+        }
+        afterOperation(flushed);
+    }
+
+    public void outcome(String color, int cottonPercentage, int quantity) {
+        SocksKey key = new SocksKey(color, cottonPercentage);
+        CompletableFuture<Void> flushed;
+        while (true) {
+            ItemState state = state(key);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                if (!state.exists) {
+                    throw new InsufficientStockException("No socks found with the given color and cotton " +
+                            "percentage");
+                }
+                if (state.balance < quantity) {
+                    throw new InsufficientStockException("Not enough socks in stock");
+                }
+                state.balance -= quantity;
+                state.pendingOutcome += quantity;
+                state.touched = true;
+                if (durability == Durability.FLUSHED && state.outcomeFlushed == null) {
+                    state.outcomeFlushed = new CompletableFuture<>();
+                }
+                flushed = state.outcomeFlushed;
+                break;
+            }
+        }
+        afterOperation(flushed);
+    }
+
+    /**
+     * Writes the pending incomes and outcomes of every item. Items that were not touched since the previous flush
+     * are dropped from memory so that their balance is re-read on next use.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            operationsSinceFlush.set(0);
+            items.forEach(this::flushItem);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getPendingItems() {
+        return (int) items.values().stream().filter(ItemState::isPending).count();
+    }
+
+    public long getRejectedDeltas() {
+        return rejectedDeltas.get();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closed = true;
+        flusher.shutdown();
+        flusher.awaitTermination(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+
+        for (int attempt = 1; attempt <= DRAIN_ATTEMPTS && getPendingItems() > 0; attempt++) {
+            log.info("Draining write-behind stock buffer, attempt {}", attempt);
+            flush();
+        }
+        if (getPendingItems() > 0) {
+            log.error("Write-behind stock buffer shut down with {} items not flushed", getPendingItems());
+        }
+    }
+
+    private void flushItem(SocksKey key, ItemState state) {
+        int income;
+        int outcome;
+        CompletableFuture<Void> incomeFlushed;
+        CompletableFuture<Void> outcomeFlushed;
+        synchronized (state) {
+            if (!state.isPending()) {
+                if (!state.touched) {
+                    state.evicted = true;
+                    items.remove(key, state);
+                }
+                state.touched = false;
+                return;
+            }
+            income = Math.toIntExact(state.pendingIncome);
+            outcome = Math.toIntExact(state.pendingOutcome);
+            incomeFlushed = state.incomeFlushed;
+            outcomeFlushed = state.outcomeFlushed;
+            state.pendingIncome = 0;
+            state.pendingOutcome = 0;
+            state.incomeFlushed = null;
+            state.outcomeFlushed = null;
+            state.touched = false;
+        }
+
+        OptionalInt stored = OptionalInt.empty();
+        try {
+            if (income > 0) {
+                stored = upsertEngine.applyDelta(key, income);
+                income = 0;
+                complete(incomeFlushed, null);
+            }
+            if (outcome > 0) {
+                stored = upsertEngine.applyDelta(key, -outcome);
+                if (stored.isEmpty()) {
+                    rejectedDeltas.incrementAndGet();
+                    log.error("Flushed outcome of {} for color: {}, cottonPercentage: {} was rejected: the stock " +
+                            "was lowered by another writer", outcome, key.color(), key.cottonPercentage());
+                    complete(outcomeFlushed, new InsufficientStockException("Not enough socks in stock"));
+                } else {
+                    complete(outcomeFlushed, null);
+                }
+                outcome = 0;
+            }
+        } catch (RuntimeException e) {
+            log.error("Error flushing stock delta for color: {}, cottonPercentage: {}: {}", key.color(),
+                    key.cottonPercentage(), e.getMessage());
+            // callers waiting for the amounts not written are released by the next flush that writes them
+            synchronized (state) {
+                state.pendingIncome += income;
+                state.pendingOutcome += outcome;
+                if (income > 0) {
+                    state.incomeFlushed = chain(incomeFlushed, state.incomeFlushed);
+                }
+                if (outcome > 0) {
+                    state.outcomeFlushed = chain(outcomeFlushed, state.outcomeFlushed);
+                }
+            }
+            return;
+        }
+
+        try {
+            int quantity = stored.isPresent() ? stored.getAsInt() : storedQuantity(key);
+            synchronized (state) {
+                state.balance = quantity + state.pendingIncome - state.pendingOutcome;
+                state.exists = true;
+            }
+        } catch (RuntimeException e) {
+            // the deltas are written; the balance is re-read on the next flush of the item
+            log.error("Error re-reading stock for color: {}, cottonPercentage: {}: {}", key.color(),
+                    key.cottonPercentage(), e.getMessage());
+        }
+    }
+
+    private void afterOperation(CompletableFuture<Void> flushed) {
+        if (operationsSinceFlush.incrementAndGet() >= flushMaxOperations && flushRequested.compareAndSet(false,
+                true)) {
+            flusher.execute(this::flushQuietly);
+        }
+
+        if (durability == Durability.FLUSHED) {
+            try {
+                flushed.get(ackTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof InsufficientStockException rejected) {
+                    throw rejected;
+                }
+                throw new IllegalStateException("Stock change was not flushed", e);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Stock change was not flushed within " + ackTimeoutMillis + " ms",
+                        e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for stock change to be flushed", e);
+            }
+        }
+    }
+
+    private static void complete(CompletableFuture<Void> flushed, RuntimeException error) {
+        if (flushed == null) {
+            return;
+        }
+        if (error == null) {
+            flushed.complete(null);
+        } else {
+            flushed.completeExceptionally(error);
+        }
+    }
+
+    // lets the callers of a failed flush wait for the same future as the operations made since
+    private static CompletableFuture<Void> chain(CompletableFuture<Void> waiting, CompletableFuture<Void> next) {
+        if (waiting == null || next == null) {
+            return next != null ? next : waiting;
+        }
+        next.whenComplete((ignored, error) -> complete(waiting, error instanceof RuntimeException runtime
+                ? runtime : null));
+        return next;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Error flushing write-behind stock buffer: {}", e.getMessage());
+        }
+    }
+
+    private ItemState state(SocksKey key) {
+        if (closed) {
+            throw new IllegalStateException("Write-behind stock buffer is shut down");
+        }
+        ItemState state = items.get(key);
+        if (state != null) {
+            return state;
+        }
+        // loaded outside the map so that the query does not block other keys of the same bin
+        ItemState loaded = load(key);
+        state = items.putIfAbsent(key, loaded);
+        return state != null ? state : loaded;
+    }
+
+    private ItemState load(SocksKey key) {
+        List<Socks> stored = socksRepository.findByColorAndCottonPercentage(key.color(), key.cottonPercentage());
+        ItemState state = new ItemState();
+        state.exists = !stored.isEmpty();
+        state.balance = stored.isEmpty() ? 0 : stored.get(0).getQuantity();
+        return state;
+    }
+
+    private int storedQuantity(SocksKey key) {
+        List<Socks> stored = socksRepository.findByColorAndCottonPercentage(key.color(), key.cottonPercentage());
+        return stored.isEmpty() ? 0 : stored.get(0).getQuantity();
+    }
+
+    private static class ItemState {
+        long balance;
+        long pendingIncome;
+        long pendingOutcome;
+        CompletableFuture<Void> incomeFlushed;
+        CompletableFuture<Void> outcomeFlushed;
+        boolean exists;
+        boolean touched;
+        boolean evicted;
+
+        boolean isPending() {
+            return pendingIncome != 0 || pendingOutcome != 0;
+        }
+    }
+}
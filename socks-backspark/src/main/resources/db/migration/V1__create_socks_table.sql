@@ -0,0 +1,9 @@
+-- Schema as created by the former spring.jpa.hibernate.ddl-auto=update. Databases that already have the table
+-- are baselined at this version (spring.flyway.baseline-on-migrate), so this script only runs on empty schemas.
+CREATE TABLE IF NOT EXISTS socks
+(
+    id                bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    color             varchar(255),
+    cotton_percentage integer NOT NULL,
+    quantity          integer NOT NULL
+);
@@ -0,0 +1,31 @@
+-- Older CSV imports could insert the same (color, cotton_percentage) twice; merge those rows into the one with the
+-- lowest id before the unique index is built. GROUP BY puts the rows without a color in one group, so the DELETE
+-- matches them with IS NOT DISTINCT FROM; "=" would keep them and count their stock twice.
+UPDATE socks s
+SET quantity = d.total
+FROM (SELECT min(id) AS keep_id, sum(quantity) AS total
+      FROM socks
+      GROUP BY color, cotton_percentage
+      HAVING count(*) > 1) d
+WHERE s.id = d.keep_id;
+
+DELETE
+FROM socks s USING socks k
+WHERE s.color IS NOT DISTINCT FROM k.color
+  AND s.cotton_percentage = k.cotton_percentage
+  AND s.id > k.id;
+
+-- Serves the upserts' ON CONFLICT target and every lookup by color, or by color and cotton percentage.
+DO
+$$
+    BEGIN
+        IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_socks_color_cotton_percentage') THEN
+            ALTER TABLE socks
+                ADD CONSTRAINT uk_socks_color_cotton_percentage UNIQUE (color, cotton_percentage);
+        END IF;
+    END
+$$;
+
+-- Serves the cotton percentage filters without a color; quantity is included so that totals can be answered
+-- with an index-only scan.
+CREATE INDEX IF NOT EXISTS idx_socks_cotton_percentage ON socks (cotton_percentage) INCLUDE (quantity);
@@ -0,0 +1,15 @@
+-- Ids move from the identity column to the pooled socks_seq sequence, so that Hibernate can reserve 50 ids per
+-- call and batch its INSERTs. The sequence increments by the entity's allocationSize; Hibernate uses each value
+-- as the top of a block of 50 ids.
+CREATE SEQUENCE IF NOT EXISTS socks_seq INCREMENT BY 50;
+
+-- Plain SQL inserts (the batch upserts, the COPY merge, R2DBC) take their id from the same sequence; a single
+-- value is the top of its own block, so it never collides with ids handed out by Hibernate.
+ALTER TABLE socks ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE socks ALTER COLUMN id SET DEFAULT nextval('socks_seq');
+ALTER SEQUENCE socks_seq OWNED BY socks.id;
+-- schemas created by an older ddl-auto=update may still have a serial sequence
+DROP SEQUENCE IF EXISTS socks_id_seq;
+
+-- the first block starts after the existing ids
+SELECT setval('socks_seq', (SELECT coalesce(max(id), 0) FROM socks) + 50, false);
@@ -0,0 +1,50 @@
+package kz.nik.socksbackspark.accesslogtest;
+
+import jakarta.servlet.http.HttpServlet;
+import kz.nik.socksbackspark.api.AccessLogFilter;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ControllerTest {
+
+    private final AccessLogFilter accessLogFilter = new AccessLogFilter();
+
+    @Test
+    void testCorrelationIdFromRequestIsPropagated() throws Exception {
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/socks");
+        request.addHeader(AccessLogFilter.CORRELATION_ID_HEADER, "order-42");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> mdcDuringRequest = new AtomicReference<>();
+
+        accessLogFilter.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+        }, (servletRequest, servletResponse, chain) ->
+                mdcDuringRequest.set(MDC.get(AccessLogFilter.CORRELATION_ID_MDC_KEY))));
+
+        assertEquals("order-42", response.getHeader(AccessLogFilter.CORRELATION_ID_HEADER));
+        assertEquals("order-42", mdcDuringRequest.get());
+        assertNull(MDC.get(AccessLogFilter.CORRELATION_ID_MDC_KEY));
+    }
+
+    @Test
+    void testMissingOrInvalidCorrelationIdIsGenerated() throws Exception {
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/socks/income");
+        request.addHeader(AccessLogFilter.CORRELATION_ID_HEADER, "bad id\nwith newline");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        accessLogFilter.doFilter(request, response, new MockFilterChain());
+
+        String correlationId = response.getHeader(AccessLogFilter.CORRELATION_ID_HEADER);
+        assertNotNull(correlationId);
+        assertNotEquals("bad id\nwith newline", correlationId);
+        assertEquals(36, correlationId.length());
+    }
+}
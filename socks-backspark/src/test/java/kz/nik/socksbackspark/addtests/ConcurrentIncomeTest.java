@@ -0,0 +1,84 @@
+package kz.nik.socksbackspark.addtests;
+
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.SocksService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A few concurrent clients add stock to a handful of hot items. Checks that every increment landed and that no
+ * duplicate rows were created. The throughput run of the same workload is HotItemIncomeLoadTest in src/loadTest.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+public class ConcurrentIncomeTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final int CLIENTS = 8;
+    private static final int INCOMES_PER_CLIENT = 25;
+    private static final String[] HOT_COLORS = {"red", "blue", "green", "black", "white"};
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+    }
+
+    @Test
+    void testConcurrentIncomesOnHotItems() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> clients = new ArrayList<>();
+
+        try {
+            for (int client = 0; client < CLIENTS; client++) {
+                int offset = client;
+                clients.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < INCOMES_PER_CLIENT; i++) {
+                        String color = HOT_COLORS[(offset + i) % HOT_COLORS.length];
+                        socksService.addSocks(new SocksDto(null, color, 80, 1));
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> client : clients) {
+                client.get(1, TimeUnit.MINUTES);
+            }
+
+            List<Socks> socks = socksRepository.findAll();
+            assertEquals(HOT_COLORS.length, socks.size());
+            assertEquals(CLIENTS * INCOMES_PER_CLIENT, socks.stream().mapToInt(Socks::getQuantity).sum());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
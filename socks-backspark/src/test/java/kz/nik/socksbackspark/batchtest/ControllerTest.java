@@ -4,6 +4,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import kz.nik.socksbackspark.api.SocksController;
+import kz.nik.socksbackspark.dto.BatchImportResult;
 import kz.nik.socksbackspark.exceptions.FileProcessingException;
 import kz.nik.socksbackspark.service.SocksService;
 import org.junit.jupiter.api.BeforeEach;
@@ -64,6 +65,24 @@ public class ControllerTest {
         verify(socksService, never()).processExcelFile(any());
     }
 
+    @Test
+    void testAddBatch_CsvFileReportsThroughput() throws Exception {
+
+        when(socksService.processCsvFile(any())).thenReturn(BatchImportResult.builder()
+                .rowsProcessed(5000)
+                .chunks(5)
+                .peakChunkSize(1000)
+                .durationMillis(500)
+                .build());
+
+        mockMvc.perform(multipart("/api/socks/batch")
+                        .file(csvFile))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Rows-Processed", "5000"))
+                .andExpect(header().string("X-Rows-Per-Second", "10000"))
+                .andExpect(header().string("X-Peak-Chunk-Size", "1000"));
+    }
+
     @Test
     void testAddBatch_SuccessExcelFile() throws Exception {
 
@@ -0,0 +1,129 @@
+package kz.nik.socksbackspark.batchtest;
+
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.service.batch.SocksExcelStreamReader;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Heap and time benchmark for the streaming XLSX reader. The rows of files/socks_batch.xlsx are repeated up to
+ * {@code benchmark.rows} (1M by default). Run with:
+ * <pre>./gradlew test --tests '*ExcelStreamingBenchmarkTest' -Pbenchmark=true [-Pbenchmark.rows=1000000]
+ * [-Pbenchmark.dom=true]</pre>
+ * {@code benchmark.dom=true} additionally loads the same file through {@link XSSFWorkbook} for comparison.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class ExcelStreamingBenchmarkTest {
+
+    private static final Path SOURCE_FILE = Path.of("..", "files", "socks_batch.xlsx");
+
+    @Test
+    void benchmarkStreamingReader() throws Exception {
+        int rows = Integer.getInteger("benchmark.rows", 1_000_000);
+        SocksExcelStreamReader reader = new SocksExcelStreamReader();
+
+        List<SocksDto> sample = new ArrayList<>();
+        reader.read(SOURCE_FILE.toFile(), sample::add);
+
+        Path scaled = Files.createTempFile("socks-benchmark-", ".xlsx");
+        try {
+            writeScaledWorkbook(scaled, sample, rows);
+            System.out.printf("Scaled workbook: %d rows, %d KB%n", rows, Files.size(scaled) / 1024);
+
+            AtomicLong quantity = new AtomicLong();
+            long[] streaming = measure(() -> reader.read(scaled.toFile(),
+                    dto -> quantity.addAndGet(dto.getQuantity())));
+            System.out.printf("Streaming reader: %d ms, peak heap %d MB%n", streaming[0],
+                    streaming[1] / (1024 * 1024));
+            assertEquals(rows, streaming[2]);
+
+            if (Boolean.getBoolean("benchmark.dom")) {
+                long[] dom = measure(() -> {
+                    try (XSSFWorkbook workbook = new XSSFWorkbook(OPCPackage.open(scaled.toFile(),
+                            PackageAccess.READ))) {
+                        return workbook.getSheetAt(0).getLastRowNum();
+                    }
+                });
+                System.out.printf("XSSFWorkbook:     %d ms, peak heap %d MB%n", dom[0], dom[1] / (1024 * 1024));
+            }
+        } finally {
+            Files.deleteIfExists(scaled);
+        }
+    }
+
+    private static void writeScaledWorkbook(Path target, List<SocksDto> sample, int rows) throws Exception {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+             OutputStream out = new FileOutputStream(target.toFile())) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("color");
+            header.createCell(1).setCellValue("cottonPercentage");
+            header.createCell(2).setCellValue("quantity");
+
+            for (int i = 0; i < rows; i++) {
+                SocksDto dto = sample.get(i % sample.size());
+                Row row = sheet.createRow(i + 1);
+                row.createCell(0).setCellValue(dto.getColor());
+                row.createCell(1).setCellValue(dto.getCottonPercentage());
+                row.createCell(2).setCellValue(dto.getQuantity());
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+
+    /**
+     * @return elapsed millis, peak used heap in bytes and the task result
+     */
+    private static long[] measure(BenchmarkTask task) throws Exception {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        AtomicLong peakHeap = new AtomicLong(runtime.totalMemory() - runtime.freeMemory());
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peakHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long startedAt = System.nanoTime();
+        long result;
+        try {
+            result = task.run();
+        } finally {
+            running.set(false);
+            sampler.join();
+        }
+        long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        return new long[]{elapsedMillis, peakHeap.get(), result};
+    }
+
+    @FunctionalInterface
+    private interface BenchmarkTask {
+        long run() throws Exception;
+    }
+}
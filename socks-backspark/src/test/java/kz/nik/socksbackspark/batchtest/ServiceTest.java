@@ -1,8 +1,14 @@
 package kz.nik.socksbackspark.batchtest;
 
-import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.model.SocksKey;
 import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.batch.SocksBatchWriter;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
 import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,13 +18,15 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
+import java.util.Map;
 
 import static org.aspectj.bridge.MessageUtil.fail;
 import static org.junit.Assert.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
@@ -29,6 +37,12 @@ public class ServiceTest {
     @Mock
     private SocksRepository socksRepository;
 
+    @Mock
+    private SocksUpsertEngine upsertEngine;
+
+    @Mock
+    private SocksMetrics socksMetrics;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -42,11 +56,62 @@ public class ServiceTest {
         MultipartFile file = new MockMultipartFile("file", "test.csv",
                 "text/csv", inputStream);
 
-        when(socksRepository.saveAll(anyList())).thenReturn(List.of(new Socks(), new Socks()));
-
         socksService.processCsvFile(file);
 
-        verify(socksRepository, times(1)).saveAll(anyList());
+        verify(upsertEngine, times(1)).apply(Map.of(new SocksKey("Red", 50), 100,
+                new SocksKey("Blue", 80), 200));
+    }
+
+    @Test
+    void testProcessCsvFile_savesInChunks() throws Exception {
+
+        StringBuilder csvContent = new StringBuilder("color,cottonPercentage,quantity\n");
+        for (int i = 0; i < 2500; i++) {
+            csvContent.append("Red").append(i).append(",50,1\n");
+        }
+        MultipartFile file = new MockMultipartFile("file", "test.csv", "text/csv",
+                csvContent.toString().getBytes());
+
+        BatchImportResult result = socksService.processCsvFile(file);
+
+        verify(upsertEngine, times(3)).apply(anyMap());
+        assertEquals(2500, result.getRowsProcessed());
+        assertEquals(3, result.getChunks());
+        assertEquals(1000, result.getPeakChunkSize());
+    }
+
+    @Test
+    void testBatchWriter_peakChunkSizeCountsItems() {
+
+        SocksBatchWriter batchWriter = new SocksBatchWriter(upsertEngine, 1000);
+        for (int i = 0; i < 3000; i++) {
+            batchWriter.add("Red" + i % 10, 50, 1);
+        }
+
+        BatchImportResult result = batchWriter.finish();
+
+        verify(upsertEngine, times(1)).apply(anyMap());
+        assertEquals(3000, result.getRowsProcessed());
+        assertEquals(1, result.getChunks());
+        assertEquals(10, result.getPeakChunkSize());
+    }
+
+    @Test
+    void testProcessCsvFile_mergesDuplicateRows() throws Exception {
+
+        StringBuilder csvContent = new StringBuilder("color,cottonPercentage,quantity\n");
+        for (int i = 0; i < 2500; i++) {
+            csvContent.append("Red,").append(i % 2 == 0 ? 50 : 80).append(",1\n");
+        }
+        MultipartFile file = new MockMultipartFile("file", "test.csv", "text/csv",
+                csvContent.toString().getBytes());
+
+        BatchImportResult result = socksService.processCsvFile(file);
+
+        verify(upsertEngine, times(1)).apply(Map.of(new SocksKey("Red", 50), 1250,
+                new SocksKey("Red", 80), 1250));
+        assertEquals(2500, result.getRowsProcessed());
+        assertEquals(1, result.getChunks());
     }
 
     @Test
@@ -57,9 +122,10 @@ public class ServiceTest {
         MultipartFile file = new MockMultipartFile("file", "test.csv", "text/csv",
                 inputStream);
 
-        doThrow(new RuntimeException("Error")).when(socksRepository).saveAll(anyList());
+        doThrow(new RuntimeException("Error")).when(upsertEngine).apply(anyMap());
 
         assertThrows(RuntimeException.class, () -> socksService.processCsvFile(file));
+        verify(socksMetrics, times(1)).batchFailed("csv", false);
     }
 
     @Test
@@ -79,6 +145,38 @@ public class ServiceTest {
             fail("Произошла ошибка при чтении файла: " + e.getMessage());
         }
     }
+
+    @Test
+    void testProcessExcelFile_streamsRows() throws Exception {
+
+        XSSFWorkbook workbook = new XSSFWorkbook();
+        Sheet sheet = workbook.createSheet();
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("color");
+        header.createCell(1).setCellValue("cottonPercentage");
+        header.createCell(2).setCellValue("quantity");
+        Row red = sheet.createRow(1);
+        red.createCell(0).setCellValue("Red");
+        red.createCell(1).setCellValue(50);
+        red.createCell(2).setCellValue(100);
+        Row blue = sheet.createRow(2);
+        blue.createCell(0).setCellValue("Blue");
+        blue.createCell(1).setCellValue(80);
+        blue.createCell(2).setCellValue(200);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        workbook.close();
+
+        MultipartFile file = new MockMultipartFile("file", "test.xlsx", "application/vnd" +
+                ".openxmlformats-officedocument.spreadsheetml.sheet", out.toByteArray());
+
+        BatchImportResult result = socksService.processExcelFile(file);
+
+        assertEquals(2, result.getRowsProcessed());
+        verify(upsertEngine, times(1)).apply(Map.of(new SocksKey("Red", 50), 100,
+                new SocksKey("Blue", 80), 200));
+    }
+
     @Test
     void testProcessExcelFile_withError() throws Exception {
 
@@ -87,7 +185,7 @@ public class ServiceTest {
         MultipartFile file = new MockMultipartFile("file", "test.xlsx", "application/vnd" +
                 ".openxmlformats-officedocument.spreadsheetml.sheet", inputStream);
 
-        doThrow(new RuntimeException("Error processing Excel")).when(socksRepository).save(any(Socks.class));
+        doThrow(new RuntimeException("Error processing Excel")).when(upsertEngine).apply(anyMap());
 
         assertThrows(RuntimeException.class, () -> socksService.processExcelFile(file));
     }
@@ -0,0 +1,83 @@
+package kz.nik.socksbackspark.batchtest;
+
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.service.batch.SocksBatchWriter;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.inventory.SocksChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class UpsertEngineTest {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SocksUpsertEngine upsertEngine;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        upsertEngine = new SocksUpsertEngine(jdbcTemplate, eventPublisher, 2);
+        when(jdbcTemplate.update(any(PreparedStatementCreator.class))).thenAnswer(invocation -> 2);
+    }
+
+    @Test
+    void testApplySplitsIntoStatements() {
+
+        Map<SocksKey, Integer> quantities = new HashMap<>();
+        quantities.put(new SocksKey("red", 50), 10);
+        quantities.put(new SocksKey("red", 60), 20);
+        quantities.put(new SocksKey("blue", 50), 30);
+
+        int affected = upsertEngine.apply(quantities);
+
+        assertEquals(4, affected);
+        verify(jdbcTemplate, times(2)).update(any(PreparedStatementCreator.class));
+        verify(eventPublisher).publishEvent(SocksChangedEvent.of(new SocksKey("blue", 50), new SocksKey("red", 50)));
+        verify(eventPublisher).publishEvent(SocksChangedEvent.of(new SocksKey("red", 60)));
+    }
+
+    @Test
+    void testUpsertSingleItemUsesOneStatement() {
+
+        upsertEngine.upsert("red", 50, 10);
+
+        verify(jdbcTemplate, times(1)).update(anyString(), eq("red"), eq(50), eq(10));
+        verify(jdbcTemplate, never()).update(any(PreparedStatementCreator.class));
+    }
+
+    @Test
+    void testApplyEmptyDoesNothing() {
+
+        assertEquals(0, upsertEngine.apply(Map.of()));
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testBatchWriterAggregatesRows() {
+
+        SocksUpsertEngine engine = mock(SocksUpsertEngine.class);
+        SocksBatchWriter batchWriter = new SocksBatchWriter(engine, 1000);
+
+        batchWriter.add("red", 50, 10);
+        batchWriter.add("red", 50, 5);
+        batchWriter.add("blue", 80, 1);
+
+        assertEquals(3, batchWriter.finish().getRowsProcessed());
+        verify(engine, times(1)).apply(Map.of(new SocksKey("red", 50), 15, new SocksKey("blue", 80), 1));
+    }
+}
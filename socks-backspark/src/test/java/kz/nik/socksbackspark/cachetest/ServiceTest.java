@@ -0,0 +1,216 @@
+package kz.nik.socksbackspark.cachetest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.inventory.InventoryCache;
+import kz.nik.socksbackspark.service.inventory.SocksChangedEvent;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class ServiceTest {
+    @Mock
+    private SocksRepository socksRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SocksMetrics socksMetrics = new SocksMetrics(meterRegistry);
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 10, Sort.by("id"));
+
+    private InventoryCache inventoryCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        inventoryCache = new InventoryCache(socksRepository, socksMetrics, true, 10);
+
+        List<Socks> catalogue = List.of(new Socks(2L, "blue", 80, 150), new Socks(1L, "red", 50, 100));
+        when(socksRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(catalogue, PageRequest.of(0, 10), catalogue.size()));
+    }
+
+    @Test
+    void testListingIsServedFromMemory() {
+
+        Optional<Page<Socks>> first = inventoryCache.findPage(FIRST_PAGE);
+        Optional<List<Socks>> second = inventoryCache.findAfter(1L, 10);
+
+        assertTrue(first.isPresent());
+        assertEquals(List.of(1L, 2L), first.get().getContent().stream().map(Socks::getId).toList());
+        assertEquals(2, first.get().getTotalElements());
+        assertEquals(List.of(2L), second.orElseThrow().stream().map(Socks::getId).toList());
+        assertEquals(1, inventoryCache.getLoads());
+        assertEquals(2, inventoryCache.getHits());
+        verify(socksRepository, times(1)).findAll(any(Pageable.class));
+        verifyNoMoreInteractions(socksRepository);
+    }
+
+    @Test
+    void testPagesAreCutFromTheIdOrder() {
+
+        List<Socks> catalogue = new ArrayList<>();
+        for (long id = 10; id >= 1; id--) {
+            catalogue.add(new Socks(id, "color" + id, 50, 100));
+        }
+        when(socksRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(catalogue, PageRequest.of(0, 10), catalogue.size()));
+
+        Page<Socks> page = inventoryCache.findPage(PageRequest.of(1, 3, Sort.by("id"))).orElseThrow();
+        List<Socks> afterCursor = inventoryCache.findAfter(8L, 3).orElseThrow();
+
+        assertEquals(List.of(4L, 5L, 6L), page.getContent().stream().map(Socks::getId).toList());
+        assertEquals(10, page.getTotalElements());
+        assertEquals(List.of(9L, 10L), afterCursor.stream().map(Socks::getId).toList());
+    }
+
+    @Test
+    void testChangedItemIsReloadedAlone() {
+
+        inventoryCache.findPage(FIRST_PAGE);
+        when(socksRepository.findByColorAndCottonPercentage("red", 50))
+                .thenReturn(List.of(new Socks(1L, "red", 50, 40)));
+
+        inventoryCache.onSocksChanged(SocksChangedEvent.of(new SocksKey("red", 50)));
+        List<Socks> socks = inventoryCache.findPage(FIRST_PAGE).orElseThrow().getContent();
+
+        assertEquals(List.of(1L, 2L), socks.stream().map(Socks::getId).toList());
+        assertEquals(40, socks.get(0).getQuantity());
+        assertEquals(1, inventoryCache.getInvalidations());
+        verify(socksRepository, times(1)).findAll(any(Pageable.class));
+        verify(socksRepository, times(1)).findByColorAndCottonPercentage("red", 50);
+    }
+
+    @Test
+    void testDeletedItemDisappears() {
+
+        inventoryCache.findPage(FIRST_PAGE);
+        when(socksRepository.findByColorAndCottonPercentage("red", 50)).thenReturn(List.of());
+
+        inventoryCache.onSocksChanged(SocksChangedEvent.of(new SocksKey("red", 50)));
+
+        assertEquals(1, inventoryCache.findPage(FIRST_PAGE).orElseThrow().getTotalElements());
+        assertEquals(List.of(2L), inventoryCache.findAfter(0L, 10).orElseThrow().stream().map(Socks::getId)
+                .toList());
+    }
+
+    @Test
+    void testItemAddedWhileLoadingIsNotLost() {
+
+        List<Socks> catalogue = List.of(new Socks(2L, "blue", 80, 150), new Socks(1L, "red", 50, 100));
+        when(socksRepository.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            // committed after the page was read, before the cache is marked complete
+            inventoryCache.onSocksChanged(SocksChangedEvent.of(new SocksKey("green", 60)));
+            return new PageImpl<>(catalogue, PageRequest.of(0, 10), catalogue.size());
+        });
+        when(socksRepository.findByColorAndCottonPercentage("green", 60))
+                .thenReturn(List.of(new Socks(3L, "green", 60, 30)));
+
+        List<Socks> socks = inventoryCache.findPage(FIRST_PAGE).orElseThrow().getContent();
+
+        assertEquals(List.of(1L, 2L, 3L), socks.stream().map(Socks::getId).toList());
+    }
+
+    @Test
+    void testFailedLoadIsRetried() {
+
+        List<Socks> catalogue = List.of(new Socks(1L, "red", 50, 100));
+        when(socksRepository.findAll(any(Pageable.class)))
+                .thenThrow(new RuntimeException("Database error"))
+                .thenReturn(new PageImpl<>(catalogue, PageRequest.of(0, 10), catalogue.size()));
+
+        assertThrows(RuntimeException.class, () -> inventoryCache.findPage(FIRST_PAGE));
+
+        assertEquals(1, inventoryCache.findPage(FIRST_PAGE).orElseThrow().getTotalElements());
+        verify(socksRepository, times(2)).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void testExpiredCacheIsReloaded() {
+
+        ReflectionTestUtils.setField(inventoryCache, "ttlSeconds", 0L);
+
+        inventoryCache.findPage(FIRST_PAGE);
+        inventoryCache.findPage(FIRST_PAGE);
+
+        verify(socksRepository, times(2)).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void testCatalogueLargerThanCacheFallsBackToDatabase() {
+
+        InventoryCache smallCache = new InventoryCache(socksRepository, socksMetrics, true, 1);
+        when(socksRepository.findAll(any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(new Socks(1L, "red", 50, 100)), PageRequest.of(0, 1), 2));
+
+        assertTrue(smallCache.findPage(FIRST_PAGE).isEmpty());
+        assertTrue(smallCache.findAfter(0L, 10).isEmpty());
+        assertEquals(2, smallCache.getMisses());
+        verify(socksRepository, times(1)).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void testCatalogueOutgrowingCacheFallsBackToDatabase() {
+
+        InventoryCache smallCache = new InventoryCache(socksRepository, socksMetrics, true, 2);
+        smallCache.findPage(FIRST_PAGE).orElseThrow();
+        when(socksRepository.findByColorAndCottonPercentage("green", 60))
+                .thenReturn(List.of(new Socks(3L, "green", 60, 30)));
+
+        smallCache.onSocksChanged(SocksChangedEvent.of(new SocksKey("green", 60)));
+
+        assertTrue(smallCache.findPage(FIRST_PAGE).isEmpty());
+        assertEquals(2, smallCache.getSize());
+        assertEquals(1, smallCache.getEvictions());
+    }
+
+    @Test
+    void testReturnedRowsAreCopies() {
+
+        inventoryCache.findPage(FIRST_PAGE).orElseThrow().getContent().get(0).setQuantity(0);
+        inventoryCache.findAfter(0L, 1).orElseThrow().get(0).setQuantity(0);
+
+        assertEquals(100, inventoryCache.findPage(FIRST_PAGE).orElseThrow().getContent().get(0).getQuantity());
+        assertEquals(100, inventoryCache.findAfter(0L, 1).orElseThrow().get(0).getQuantity());
+    }
+
+    @Test
+    void testCountersArePublished() {
+
+        inventoryCache.findPage(FIRST_PAGE);
+        inventoryCache.findPage(FIRST_PAGE);
+        inventoryCache.onSocksChanged(SocksChangedEvent.all());
+
+        assertEquals(2, meterRegistry.get("socks.cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("socks.cache.loads").functionCounter().count());
+        assertEquals(1, meterRegistry.get("socks.cache.invalidations").functionCounter().count());
+        assertEquals(0, meterRegistry.get("socks.cache.size").gauge().value());
+    }
+
+    @Test
+    void testDisabledCacheAlwaysQueries() {
+
+        InventoryCache disabledCache = new InventoryCache(socksRepository, socksMetrics, false, 10);
+
+        assertTrue(disabledCache.findPage(FIRST_PAGE).isEmpty());
+        assertTrue(disabledCache.findAfter(0L, 10).isEmpty());
+        verifyNoInteractions(socksRepository);
+    }
+}
@@ -0,0 +1,78 @@
+package kz.nik.socksbackspark.copyloadtest;
+
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.SocksService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.mock.web.MockMultipartFile;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Imports CSV files through the COPY loader against a real PostgreSQL: duplicate rows are summed, existing
+ * stock is added to, quoted colors survive the COPY encoding and a malformed file writes nothing.
+ */
+@SpringBootTest(properties = "socks.batch.loader=copy")
+@Testcontainers(disabledWithoutDocker = true)
+public class ServiceTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+        socksRepository.save(new Socks(null, "red", 50, 5));
+    }
+
+    @Test
+    void testCopyMergesIntoExistingStock() throws Exception {
+        MockMultipartFile file = csv("color,cottonPercentage,quantity\n" +
+                "red,50,10\n" +
+                "\"green, \"\"striped\"\"\",30,7\n" +
+                "red,50,3\n" +
+                "\"\",10,1\n");
+
+        BatchImportResult result = socksService.processCsvFile(file);
+
+        assertEquals(4, result.getRowsProcessed());
+        assertEquals(Map.of("red:50", 18, "green, \"striped\":30", 7, ":10", 1), stock());
+    }
+
+    @Test
+    void testMalformedRowLoadsNothing() {
+        MockMultipartFile file = csv("color,cottonPercentage,quantity\nblue,80,10\nblue,abc,1\n");
+
+        assertThrows(RuntimeException.class, () -> socksService.processCsvFile(file));
+        assertEquals(Map.of("red:50", 5), stock());
+    }
+
+    private static MockMultipartFile csv(String content) {
+        return new MockMultipartFile("file", "socks.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, Integer> stock() {
+        return socksRepository.findAll().stream()
+                .collect(Collectors.toMap(socks -> socks.getColor() + ":" + socks.getCottonPercentage(),
+                        Socks::getQuantity));
+    }
+}
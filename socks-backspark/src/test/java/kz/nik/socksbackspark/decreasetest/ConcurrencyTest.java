@@ -0,0 +1,91 @@
+package kz.nik.socksbackspark.decreasetest;
+
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.exceptions.InsufficientStockException;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.SocksService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs hundreds of parallel outcomes against a real PostgreSQL and checks that every accepted outcome is
+ * reflected in the stock: nothing is lost and the stock never goes negative.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+public class ConcurrencyTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final int INITIAL_STOCK = 300;
+    private static final int OUTCOMES = 500;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private SocksService socksService;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+        socksService.addSocks(new SocksDto(null, "red", 50, INITIAL_STOCK));
+    }
+
+    @Test
+    void testParallelOutcomesLoseNoUpdates() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < OUTCOMES; i++) {
+                Callable<Boolean> outcome = () -> {
+                    start.await();
+                    try {
+                        socksService.decreaseSocksQuantity("red", 50, 1);
+                        return true;
+                    } catch (InsufficientStockException e) {
+                        return false;
+                    }
+                };
+                results.add(executor.submit(outcome));
+            }
+            start.countDown();
+
+            int accepted = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(1, TimeUnit.MINUTES)) {
+                    accepted++;
+                }
+            }
+
+            Socks sock = socksRepository.findByColorAndCottonPercentage("red", 50).get(0);
+            assertEquals(INITIAL_STOCK, accepted);
+            assertEquals(0, sock.getQuantity());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,71 +3,78 @@ import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import kz.nik.socksbackspark.exceptions.InsufficientStockException;
-import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
 import kz.nik.socksbackspark.repository.SocksRepository;
 import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.inventory.SocksChangedEvent;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
-import org.slf4j.Logger;
-
-import java.util.Collections;
+import org.springframework.context.ApplicationEventPublisher;
 
 public class ServiceTest {
     @Mock
     private SocksRepository socksRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SocksMetrics socksMetrics;
+
     @InjectMocks
     private SocksServiceImpl socksService;
 
-    private Socks sock;
-
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        sock = new Socks(1L,"Red", 80, 10);
     }
 
     @Test
     void testDecreaseSocksQuantity_Success() {
 
-        when(socksRepository.findByColorAndCottonPercentage("Red", 80)).
-                thenReturn(Collections.singletonList(sock));
+        when(socksRepository.decreaseQuantity("Red", 80, 5)).thenReturn(1);
 
         socksService.decreaseSocksQuantity("Red", 80, 5);
 
-        assertEquals(5, sock.getQuantity());
-        verify(socksRepository, times(1)).save(sock);
+        verify(socksRepository, times(1)).decreaseQuantity("Red", 80, 5);
+        verify(socksRepository, never()).existsByColorAndCottonPercentage(anyString(), anyInt());
+        verify(socksRepository, never()).findByColorAndCottonPercentage(anyString(), anyInt());
+        verify(eventPublisher, times(1)).publishEvent(SocksChangedEvent.of(new SocksKey("Red", 80)));
     }
 
     @Test
     void testDecreaseSocksQuantity_InsufficientStock_NoSocksFound() {
 
-        when(socksRepository.findByColorAndCottonPercentage("Red", 80))
-                .thenReturn(Collections.emptyList());
+        when(socksRepository.decreaseQuantity("Red", 80, 5)).thenReturn(0);
+        when(socksRepository.existsByColorAndCottonPercentage("Red", 80)).thenReturn(false);
 
         InsufficientStockException exception = assertThrows(InsufficientStockException.class, () -> {
             socksService.decreaseSocksQuantity("Red", 80, 5);
         });
         assertEquals("No socks found with the given color and cotton percentage", exception.getMessage());
+        verify(socksMetrics, times(1)).stockRejected();
     }
 
     @Test
     void testDecreaseSocksQuantity_InsufficientStock_NotEnoughSocks() {
 
-        when(socksRepository.findByColorAndCottonPercentage("Red", 80))
-                .thenReturn(Collections.singletonList(sock));
+        when(socksRepository.decreaseQuantity("Red", 80, 15)).thenReturn(0);
+        when(socksRepository.existsByColorAndCottonPercentage("Red", 80)).thenReturn(true);
 
         InsufficientStockException exception = assertThrows(InsufficientStockException.class, () -> {
             socksService.decreaseSocksQuantity("Red", 80, 15);
         });
         assertEquals("Not enough socks in stock", exception.getMessage());
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        verify(socksMetrics, times(1)).stockRejected();
     }
 
     @Test
     void testDecreaseSocksQuantity_Error() {
 
-        when(socksRepository.findByColorAndCottonPercentage("Red", 80))
+        when(socksRepository.decreaseQuantity("Red", 80, 5))
                 .thenThrow(new RuntimeException("Database error"));
 
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -0,0 +1,92 @@
+package kz.nik.socksbackspark.exporttest;
+
+import jakarta.persistence.EntityManager;
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.mapper.SocksMapper;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ServiceTest {
+    @Mock
+    private SocksRepository socksRepository;
+
+    @Mock
+    private SocksMapper socksMapper;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @InjectMocks
+    private SocksServiceImpl socksService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(socksService, "entityManager", entityManager);
+    }
+
+    @Test
+    void testExportWritesOneObjectPerLine() {
+
+        Socks red = new Socks(1L, "red", 50, 100);
+        Socks blue = new Socks(2L, "blue", 80, 150);
+        when(socksRepository.streamAll()).thenReturn(Stream.of(red, blue));
+        when(socksMapper.toDto(red)).thenReturn(new SocksDto(1L, "red", 50, 100));
+        when(socksMapper.toDto(blue)).thenReturn(new SocksDto(2L, "blue", 80, 150));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        long exported = socksService.exportSocks(output);
+
+        assertEquals(2, exported);
+        assertEquals("{\"id\":1,\"color\":\"red\",\"cottonPercentage\":50,\"quantity\":100}\n" +
+                        "{\"id\":2,\"color\":\"blue\",\"cottonPercentage\":80,\"quantity\":150}\n",
+                output.toString(StandardCharsets.UTF_8));
+        verify(entityManager).detach(red);
+        verify(entityManager).detach(blue);
+        verify(socksMapper, never()).toDtoList(anyList());
+    }
+
+    @Test
+    void testExportEmptyInventory() {
+
+        when(socksRepository.streamAll()).thenReturn(Stream.empty());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertEquals(0, socksService.exportSocks(output));
+        assertEquals(0, output.size());
+    }
+
+    @Test
+    void testExportDoesNotCloseResponseStream() throws Exception {
+
+        when(socksRepository.streamAll()).thenReturn(Stream.empty());
+        OutputStream output = mock(OutputStream.class);
+
+        socksService.exportSocks(output);
+
+        verify(output, never()).close();
+    }
+
+    @Test
+    void testExportError() {
+
+        when(socksRepository.streamAll()).thenThrow(new RuntimeException("Database error"));
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> socksService.exportSocks(new ByteArrayOutputStream()));
+        assertEquals("Error exporting socks", exception.getMessage());
+    }
+}
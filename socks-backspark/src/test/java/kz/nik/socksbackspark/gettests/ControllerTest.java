@@ -3,6 +3,7 @@ package kz.nik.socksbackspark.gettests;
 
 import kz.nik.socksbackspark.api.SocksController;
 import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksPage;
 import kz.nik.socksbackspark.service.SocksService;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
@@ -19,6 +20,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.mockito.Mockito.when;
@@ -40,13 +42,16 @@ public class ControllerTest {
                 new SocksDto(2L, "Blue", 75, 20)
         );
 
-        when(socksService.getAllSocks()).thenReturn(socksList);
+        when(socksService.getAllSocks(null, 0, null)).thenReturn(SocksPage.builder()
+                .content(socksList).page(0).size(100).totalElements(2L).build());
 
         mockMvc.perform(get("/api/socks"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].color", is("Red")))
-                .andExpect(jsonPath("$[1].color", is("Blue")));
+                .andExpect(jsonPath("$[1].color", is("Blue")))
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
     }
 
     @Test
@@ -56,8 +61,8 @@ public class ControllerTest {
         );
 
         when(socksService.getFilteredSocks("Red", "greaterThan", 70,
-                null, null, null, null))
-                .thenReturn(filteredSocks);
+                null, null, null, null, 0, null))
+                .thenReturn(SocksPage.builder().content(filteredSocks).page(0).size(100).totalElements(1L).build());
 
         mockMvc.perform(get("/api/socks")
                         .param("color", "Red")
@@ -72,7 +77,7 @@ public class ControllerTest {
     @Test
     public void testGetSocksInternalServerError() throws Exception {
         when(socksService.getFilteredSocks("Red", "greaterThan", 70,
-                null, null, null, null))
+                null, null, null, null, 0, null))
                 .thenThrow(new RuntimeException("Internal server error"));
 
         mockMvc.perform(get("/api/socks")
@@ -83,4 +88,32 @@ public class ControllerTest {
                 .andExpect(jsonPath("$.message", is("Error retrieving socks." +
                         " Ошибка при получении носков")));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetAllSocksWithCursor() throws Exception {
+        List<SocksDto> socksList = Arrays.asList(
+                new SocksDto(11L, "Red", 80, 10),
+                new SocksDto(12L, "Blue", 75, 20)
+        );
+
+        when(socksService.getAllSocks(10L, 0, 2)).thenReturn(SocksPage.builder()
+                .content(socksList).page(0).size(2).nextCursor(12L).build());
+
+        mockMvc.perform(get("/api/socks")
+                        .param("cursor", "10")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(header().string("X-Next-Cursor", "12"))
+                .andExpect(header().string("X-Page-Size", "2"))
+                .andExpect(header().doesNotExist("X-Total-Count"));
+    }
+
+    @Test
+    public void testGetSocksWithCursorAndFilters() throws Exception {
+        mockMvc.perform(get("/api/socks")
+                        .param("color", "Red")
+                        .param("cursor", "10"))
+                .andExpect(status().isBadRequest());
+    }
+}
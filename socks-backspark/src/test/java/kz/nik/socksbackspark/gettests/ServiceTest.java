@@ -1,23 +1,41 @@
 package kz.nik.socksbackspark.gettests;
 
 import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.dto.SocksPage;
 import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
 import kz.nik.socksbackspark.mapper.SocksMapper;
 import kz.nik.socksbackspark.model.Socks;
 import kz.nik.socksbackspark.repository.SocksRepository;
 import kz.nik.socksbackspark.service.SocksService;
+import kz.nik.socksbackspark.service.batch.SocksCopyLoader;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
 import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.inventory.InventoryCache;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ServiceTest {
@@ -27,6 +45,24 @@ public class ServiceTest {
     @Mock
     private SocksMapper socksMapper;
 
+    @Mock
+    private SocksUpsertEngine upsertEngine;
+
+    @Mock
+    private InventoryCache inventoryCache;
+
+    @Mock
+    private InventoryIndex inventoryIndex;
+
+    @Mock
+    private SocksCopyLoader copyLoader;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SocksMetrics socksMetrics;
+
     private SocksService socksService;
 
     private List<Socks> socksList;
@@ -35,7 +71,8 @@ public class ServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        socksService = new SocksServiceImpl(socksRepository, socksMapper);
+        socksService = new SocksServiceImpl(socksRepository, socksMapper, upsertEngine, copyLoader, inventoryCache,
+                inventoryIndex, eventPublisher, socksMetrics);
 
         socksList = new ArrayList<>();
         socksDtoList = new ArrayList<>();
@@ -56,81 +93,158 @@ public class ServiceTest {
     @Test
     void testGetFilteredSocksWithColor() {
 
-        when(socksRepository.findByColor("red")).thenReturn(Collections.singletonList(socksList.get(0)));
+        when(socksRepository.findByColor(eq("red"), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(socksList.get(0))));
         when(socksMapper.toDtoList(anyList())).thenReturn(Collections.singletonList(socksDtoList.get(0)));
 
-        List<SocksDto> result = socksService.getFilteredSocks("red", null, null,
-                null, null, null, null);
+        SocksPage result = socksService.getFilteredSocks("red", null, null,
+                null, null, null, null, 0, null);
 
         assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("red", result.get(0).getColor());
-        assertEquals(50, result.get(0).getCottonPercentage());
-        assertEquals(100, result.get(0).getQuantity());
+        assertEquals(1, result.getContent().size());
+        assertEquals("red", result.getContent().get(0).getColor());
+        assertEquals(50, result.getContent().get(0).getCottonPercentage());
+        assertEquals(100, result.getContent().get(0).getQuantity());
+        assertEquals(1L, result.getTotalElements());
     }
 
     @Test
     void testGetFilteredSocksWithCottonPercentageGreaterThan() {
 
-        when(socksRepository.findByCottonPercentageGreaterThan(60)).thenReturn(Collections.singletonList(
-                socksList.get(1)));
+        when(socksRepository.findByCottonPercentageGreaterThan(eq(60), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(socksList.get(1))));
         when(socksMapper.toDtoList(anyList())).thenReturn(Collections.singletonList(socksDtoList.get(1)));
 
-        List<SocksDto> result = socksService.getFilteredSocks(null, "greaterThan", 60,
-                null, null, null, null);
+        SocksPage result = socksService.getFilteredSocks(null, "greaterThan", 60,
+                null, null, null, null, 0, null);
 
         assertNotNull(result);
-        assertEquals(1, result.size());
-        assertEquals("blue", result.get(0).getColor());
-        assertEquals(80, result.get(0).getCottonPercentage());
-        assertEquals(150, result.get(0).getQuantity());
+        assertEquals(1, result.getContent().size());
+        assertEquals("blue", result.getContent().get(0).getColor());
+        assertEquals(80, result.getContent().get(0).getCottonPercentage());
+        assertEquals(150, result.getContent().get(0).getQuantity());
     }
 
     @Test
     void testGetFilteredSocksWithCottonPercentageRange() {
 
-        when(socksRepository.findByCottonPercentageBetween(50, 80))
-                .thenReturn(socksList);
+        when(socksRepository.findByCottonPercentageBetween(eq(50), eq(80), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(socksList));
         when(socksMapper.toDtoList(anyList())).thenReturn(socksDtoList);
 
-        List<SocksDto> result = socksService.getFilteredSocks(null, null, null,
-                50, 80, null, null);
+        SocksPage result = socksService.getFilteredSocks(null, null, null,
+                50, 80, null, null, 0, null);
 
         assertNotNull(result);
-        assertEquals(2, result.size());
+        assertEquals(2, result.getContent().size());
     }
 
     @Test
-    void testGetFilteredSocksWithSortBy() {
+    void testGetFilteredSocksSortAndPageArePushedToRepository() {
 
-        when(socksRepository.findByColor("red")).thenReturn(Collections.singletonList(socksList.get(0)));
+        when(socksRepository.findByColor(eq("red"), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(socksList.get(0)), PageRequest.of(2, 10), 21));
         when(socksMapper.toDtoList(anyList())).thenReturn(Collections.singletonList(socksDtoList.get(0)));
 
-        List<SocksDto> result = socksService.getFilteredSocks("red", null, null,
-                null, null, "color", "asc");
+        SocksPage result = socksService.getFilteredSocks("red", null, null,
+                null, null, "cottonPercentage", "desc", 2, 10);
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(socksRepository).findByColor(eq("red"), pageable.capture());
+        assertEquals(2, pageable.getValue().getPageNumber());
+        assertEquals(10, pageable.getValue().getPageSize());
+        assertEquals(Sort.by(Sort.Direction.DESC, "cottonPercentage").and(Sort.by("id")),
+                pageable.getValue().getSort());
+        assertEquals(21L, result.getTotalElements());
+        assertNull(result.getNextCursor());
+        verify(socksMetrics).rowsRead("database", 21L, 1);
+    }
 
-        assertNotNull(result);
-        assertEquals("red", result.get(0).getColor());
+    @Test
+    void testGetFilteredSocksHasNoCursor() {
+
+        when(socksRepository.findByColor(eq("red"), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(Collections.singletonList(socksList.get(0)), PageRequest.of(0, 1), 5));
+        when(socksMapper.toDtoList(anyList())).thenReturn(Collections.singletonList(socksDtoList.get(0)));
+
+        SocksPage result = socksService.getFilteredSocks("red", null, null,
+                null, null, null, null, 0, 1);
+
+        assertEquals(5L, result.getTotalElements());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void testGetFilteredSocksPageSizeIsCapped() {
+
+        when(socksRepository.findByColor(eq("red"), any(Pageable.class))).thenReturn(Page.empty());
+
+        socksService.getFilteredSocks("red", null, null, null, null, null, null, 0, 1_000_000);
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(socksRepository).findByColor(eq("red"), pageable.capture());
+        assertEquals(1000, pageable.getValue().getPageSize());
+    }
+
+    @Test
+    void testGetFilteredSocksWithInvalidPage() {
+
+        assertThrows(InvalidDataFormatException.class, () -> socksService.getFilteredSocks("red", null, null,
+                null, null, null, null, -1, null));
+        assertThrows(InvalidDataFormatException.class, () -> socksService.getFilteredSocks("red", null, null,
+                null, null, null, null, 0, 0));
     }
 
     @Test
     void testGetAllSocks() {
 
-        when(socksRepository.findAll()).thenReturn(socksList);
+        when(socksRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(socksList,
+                PageRequest.of(0, 2), 5));
         when(socksMapper.toDtoList(anyList())).thenReturn(socksDtoList);
 
-        List<SocksDto> result = socksService.getAllSocks();
+        SocksPage result = socksService.getAllSocks(null, 0, 2);
 
         assertNotNull(result);
-        assertEquals(2, result.size());
+        assertEquals(2, result.getContent().size());
+        assertEquals(5L, result.getTotalElements());
+        assertEquals(2L, result.getNextCursor());
+    }
+
+    @Test
+    void testGetAllSocksFromCache() {
+
+        when(inventoryCache.findPage(any(Pageable.class))).thenReturn(Optional.of(new PageImpl<>(socksList,
+                PageRequest.of(0, 2), 5)));
+        when(socksMapper.toDtoList(anyList())).thenReturn(socksDtoList);
+
+        SocksPage result = socksService.getAllSocks(null, 0, 2);
+
+        assertEquals(5L, result.getTotalElements());
+        assertEquals(2L, result.getNextCursor());
+        verify(socksRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void testGetAllSocksWithCursor() {
+
+        when(socksRepository.findByIdGreaterThanOrderByIdAsc(eq(1L), any(Pageable.class)))
+                .thenReturn(Collections.singletonList(socksList.get(1)));
+        when(socksMapper.toDtoList(anyList())).thenReturn(Collections.singletonList(socksDtoList.get(1)));
+
+        SocksPage result = socksService.getAllSocks(1L, 0, 2);
+
+        assertEquals(1, result.getContent().size());
+        assertNull(result.getTotalElements());
+        assertNull(result.getNextCursor());
+        verify(socksRepository, never()).findAll(any(Pageable.class));
     }
 
     @Test
     void testGetAllSocksWithException() {
 
-        when(socksRepository.findAll()).thenThrow(new RuntimeException("Database error"));
+        when(socksRepository.findAll(any(Pageable.class))).thenThrow(new RuntimeException("Database error"));
 
-        assertThrows(RuntimeException.class, () -> socksService.getAllSocks());
+        assertThrows(RuntimeException.class, () -> socksService.getAllSocks(null, 0, null));
     }
 
     @Test
@@ -138,8 +252,7 @@ public class ServiceTest {
 
         assertThrows(InvalidDataFormatException.class, () -> {
             socksService.getFilteredSocks(null, "invalidOperation", null,
-                    null, null, null, null);
+                    null, null, null, null, 0, null);
         });
     }
 }
-
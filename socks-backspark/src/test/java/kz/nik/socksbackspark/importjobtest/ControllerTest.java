@@ -0,0 +1,70 @@
+package kz.nik.socksbackspark.importjobtest;
+
+import kz.nik.socksbackspark.api.SocksImportJobController;
+import kz.nik.socksbackspark.dto.ImportJobDto;
+import kz.nik.socksbackspark.exceptions.TooManyImportsException;
+import kz.nik.socksbackspark.service.batch.SocksImportJobManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(SocksImportJobController.class)
+public class ControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SocksImportJobManager importJobManager;
+
+    private final MockMultipartFile csvFile = new MockMultipartFile("file", "test.csv", "text/csv",
+            "color,cottonPercentage,quantity\nRed,80,10".getBytes());
+
+    @Test
+    void testSubmitReturnsJobLocation() throws Exception {
+        when(importJobManager.submit(any())).thenReturn(ImportJobDto.builder().id("job-1").status("QUEUED").build());
+
+        mockMvc.perform(multipart("/api/socks/batch/jobs").file(csvFile))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/socks/batch/jobs/job-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+    }
+
+    @Test
+    void testSubmitWhenQueueIsFull() throws Exception {
+        when(importJobManager.submit(any())).thenThrow(new TooManyImportsException("Too many imports"));
+
+        mockMvc.perform(multipart("/api/socks/batch/jobs").file(csvFile))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    void testGetJobProgress() throws Exception {
+        when(importJobManager.find("job-1")).thenReturn(Optional.of(ImportJobDto.builder().id("job-1")
+                .status("RUNNING").rowsParsed(1500).rowsWritten(1000).rowsRejected(2).build()));
+
+        mockMvc.perform(get("/api/socks/batch/jobs/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsParsed").value(1500))
+                .andExpect(jsonPath("$.rowsWritten").value(1000))
+                .andExpect(jsonPath("$.rowsRejected").value(2));
+    }
+
+    @Test
+    void testCancelUnknownJob() throws Exception {
+        when(importJobManager.cancel("missing")).thenReturn(Optional.empty());
+
+        mockMvc.perform(delete("/api/socks/batch/jobs/missing"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,148 @@
+package kz.nik.socksbackspark.importjobtest;
+
+import kz.nik.socksbackspark.dto.ImportJobDto;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.exceptions.TooManyImportsException;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.service.batch.SocksImportJobManager;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class ServiceTest {
+
+    @Mock
+    private SocksUpsertEngine upsertEngine;
+
+    @Mock
+    private SocksMetrics socksMetrics;
+
+    private SocksImportJobManager importJobManager;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        importJobManager = new SocksImportJobManager(upsertEngine, socksMetrics, 1, 1, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importJobManager.shutdown();
+    }
+
+    @Test
+    void testJobImportsFileAndRejectsMalformedRows() throws Exception {
+
+        ImportJobDto submitted = importJobManager.submit(csvFile("color,cottonPercentage,quantity\n" +
+                "red,50,10\nblue,abc,5\nred,50,7\ngreen\n"));
+        assertNotNull(submitted.getId());
+
+        ImportJobDto job = awaitFinished(submitted.getId());
+
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(4, job.getRowsParsed());
+        assertEquals(2, job.getRowsWritten());
+        assertEquals(2, job.getRowsRejected());
+        assertNotNull(job.getFinishedAt());
+        verify(upsertEngine).apply(Map.of(new SocksKey("red", 50), 17));
+        verify(socksMetrics).batchImported(eq("csv"), any(), eq(2L));
+    }
+
+    @Test
+    void testQueuedJobIsCancelledAndFullQueueIsRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(upsertEngine.apply(anyMap())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return 1;
+        });
+        try {
+            ImportJobDto running = importJobManager.submit(csvFile("color,cottonPercentage,quantity\nred,50,1\n"));
+            waitForStatus(running.getId(), "RUNNING");
+            ImportJobDto queued = importJobManager.submit(csvFile("color,cottonPercentage,quantity\nred,50,1\n"));
+            assertEquals("QUEUED", queued.getStatus());
+
+            // one worker busy and the single queue slot taken
+            assertThrows(TooManyImportsException.class, () -> importJobManager.submit(
+                    csvFile("color,cottonPercentage,quantity\nred,50,1\n")));
+
+            // a raw upload is rejected before any byte of it is read
+            InputStream body = mock(InputStream.class);
+            assertThrows(TooManyImportsException.class, () -> importJobManager.submit("socks.csv", "csv", body));
+            verifyNoInteractions(body);
+
+            assertEquals("CANCELLED", importJobManager.cancel(queued.getId()).orElseThrow().getStatus());
+            // the cancelled job gave its queue slot back
+            assertNotNull(importJobManager.submit(csvFile("color,cottonPercentage,quantity\nred,50,1\n")));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testFinishedJobIsEvictedOnLookup() throws Exception {
+        SocksImportJobManager noRetention = new SocksImportJobManager(upsertEngine, socksMetrics, 1, 1, 0);
+        try {
+            ImportJobDto submitted = noRetention.submit(csvFile("color,cottonPercentage,quantity\nred,50,1\n"));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (noRetention.find(submitted.getId()).isPresent()) {
+                assertTrue(System.nanoTime() < deadline, "Import job " + submitted.getId() + " was not evicted");
+                Thread.sleep(10);
+            }
+        } finally {
+            noRetention.shutdown();
+        }
+    }
+
+    @Test
+    void testUnknownJobAndInvalidFileType() {
+
+        assertTrue(importJobManager.find("missing").isEmpty());
+        assertTrue(importJobManager.cancel("missing").isEmpty());
+        assertThrows(InvalidDataFormatException.class, () -> importJobManager.submit(
+                new MockMultipartFile("file", "socks.txt", "text/plain", "content".getBytes())));
+    }
+
+    private ImportJobDto awaitFinished(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ImportJobDto job = importJobManager.find(id).orElseThrow();
+            if (job.getFinishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Import job " + id + " did not finish");
+    }
+
+    private void waitForStatus(String id, String status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!status.equals(importJobManager.find(id).orElseThrow().getStatus())) {
+            assertTrue(System.nanoTime() < deadline, "Import job " + id + " did not reach " + status);
+            Thread.sleep(10);
+        }
+    }
+
+    private static MockMultipartFile csvFile(String content) {
+        return new MockMultipartFile("file", "socks.csv", "text/csv", content.getBytes());
+    }
+}
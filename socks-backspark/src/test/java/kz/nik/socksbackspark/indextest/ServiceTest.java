@@ -0,0 +1,193 @@
+package kz.nik.socksbackspark.indextest;
+
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex.CottonRange;
+import kz.nik.socksbackspark.service.inventory.InventoryIndex.Order;
+import kz.nik.socksbackspark.service.inventory.SocksChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ServiceTest {
+    @Mock
+    private SocksRepository socksRepository;
+
+    private InventoryIndex inventoryIndex;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        inventoryIndex = new InventoryIndex(socksRepository, true);
+
+        when(socksRepository.findAll()).thenReturn(List.of(
+                new Socks(1L, "red", 50, 100),
+                new Socks(2L, "blue", 80, 150),
+                new Socks(3L, "red", 90, 10),
+                new Socks(4L, "green", 50, 70),
+                new Socks(5L, "red", 20, 5)));
+        inventoryIndex.load();
+    }
+
+    @Test
+    void testColorFilterSortedByCotton() {
+
+        assertEquals(List.of(5L, 1L, 3L), ids(inventoryIndex.query("red", CottonRange.all(), Order.COTTON_ASC)));
+        assertEquals(List.of(3L, 1L), ids(inventoryIndex.query("red", CottonRange.greaterThan(20),
+                Order.COTTON_DESC)));
+        assertEquals(List.of(1L), ids(inventoryIndex.query("red", CottonRange.equalTo(50), Order.NONE)));
+        assertTrue(ids(inventoryIndex.query("black", CottonRange.all(), Order.NONE)).isEmpty());
+    }
+
+    @Test
+    void testCottonFilterSortedByColor() {
+
+        assertEquals(List.of(2L, 4L, 1L, 3L), ids(inventoryIndex.query(null, CottonRange.greaterThan(20),
+                Order.COLOR_ASC)));
+        assertEquals(List.of(3L, 1L, 5L, 4L, 2L), ids(inventoryIndex.query(null, CottonRange.all(),
+                Order.COLOR_DESC)));
+    }
+
+    @Test
+    void testCottonFilterSortedByCotton() {
+
+        assertEquals(List.of(4L, 1L, 2L), ids(inventoryIndex.query(null, CottonRange.between(50, 80),
+                Order.COTTON_ASC)));
+        assertEquals(List.of(1L, 5L), ids(inventoryIndex.query(null, CottonRange.lessThan(80),
+                Order.COTTON_DESC).stream().filter(sock -> sock.getColor().equals("red")).toList()));
+        assertTrue(ids(inventoryIndex.query(null, CottonRange.greaterThan(100), Order.NONE)).isEmpty());
+    }
+
+    @Test
+    void testQuantityChangeIsAppliedInPlace() {
+
+        when(socksRepository.findByColorAndCottonPercentage("red", 50))
+                .thenReturn(List.of(new Socks(1L, "red", 50, 40)));
+
+        inventoryIndex.onSocksChanged(SocksChangedEvent.of(new SocksKey("red", 50)));
+        List<Socks> socks = inventoryIndex.query("red", CottonRange.equalTo(50), Order.NONE).orElseThrow();
+
+        assertEquals(40, socks.get(0).getQuantity());
+        verify(socksRepository, times(1)).findAll();
+    }
+
+    @Test
+    void testChangesAreAppliedByTheWriter() {
+
+        when(socksRepository.findByColorAndCottonPercentage("red", 50))
+                .thenReturn(List.of(new Socks(1L, "red", 50, 40)));
+
+        inventoryIndex.onSocksChanged(SocksChangedEvent.of(new SocksKey("red", 50)));
+        verify(socksRepository, times(1)).findByColorAndCottonPercentage("red", 50);
+        clearInvocations(socksRepository);
+
+        assertEquals(List.of(5L, 1L, 3L), ids(inventoryIndex.query("red", CottonRange.all(), Order.COTTON_ASC)));
+        verifyNoInteractions(socksRepository);
+    }
+
+    @Test
+    void testFailedUpdateReloadsOnNextChange() {
+
+        when(socksRepository.findByColorAndCottonPercentage("red", 50))
+                .thenThrow(new RuntimeException("Database error"));
+
+        inventoryIndex.onSocksChanged(SocksChangedEvent.of(new SocksKey("red", 50)));
+        when(socksRepository.findAll()).thenReturn(List.of(new Socks(1L, "red", 50, 40)));
+        inventoryIndex.onSocksChanged(SocksChangedEvent.of(new SocksKey("red", 50)));
+
+        assertEquals(List.of(1L), ids(inventoryIndex.query(null, CottonRange.all(), Order.NONE)));
+        verify(socksRepository, times(2)).findAll();
+    }
+
+    @Test
+    void testNewAndMovedItemsRebuildTheIndex() {
+
+        when(socksRepository.findByColorAndCottonPercentage("red", 90)).thenReturn(List.of());
+        when(socksRepository.findByColorAndCottonPercentage("black", 60))
+                .thenReturn(List.of(new Socks(3L, "black", 60, 10)));
+
+        inventoryIndex.onSocksChanged(SocksChangedEvent.of(new SocksKey("red", 90), new SocksKey("black", 60)));
+
+        assertEquals(List.of(5L, 1L), ids(inventoryIndex.query("red", CottonRange.all(), Order.COTTON_ASC)));
+        assertEquals(List.of(3L), ids(inventoryIndex.query("black", CottonRange.all(), Order.NONE)));
+        assertEquals(List.of(3L, 2L), ids(inventoryIndex.query(null, CottonRange.between(60, 100),
+                Order.COTTON_ASC)));
+    }
+
+    @Test
+    void testItemsWithoutColorAreIndexed() {
+
+        when(socksRepository.findAll()).thenReturn(List.of(
+                new Socks(1L, "red", 50, 100),
+                new Socks(2L, null, 50, 20),
+                new Socks(3L, null, 30, 10)));
+        inventoryIndex.load();
+        when(socksRepository.findByColorAndCottonPercentage(null, 60))
+                .thenReturn(List.of(new Socks(4L, null, 60, 5)));
+
+        inventoryIndex.onSocksChanged(SocksChangedEvent.of(new SocksKey(null, 60)));
+
+        assertTrue(inventoryIndex.isReady());
+        assertEquals(List.of(1L, 3L, 2L, 4L), ids(inventoryIndex.query(null, CottonRange.all(), Order.COLOR_ASC)));
+        assertEquals(List.of(1L, 2L), ids(inventoryIndex.query(null, CottonRange.equalTo(50), Order.COLOR_ASC)));
+        assertEquals(List.of(1L), ids(inventoryIndex.query("red", CottonRange.all(), Order.NONE)));
+    }
+
+    @Test
+    void testOutOfRangeCottonLeavesIndexUnavailable() {
+
+        when(socksRepository.findAll()).thenReturn(List.of(new Socks(1L, "red", 150, 100)));
+
+        inventoryIndex.load();
+
+        assertFalse(inventoryIndex.isReady());
+        assertTrue(inventoryIndex.query("red", CottonRange.all(), Order.NONE).isEmpty());
+    }
+
+    @Test
+    void testIndexIsReloadedOnceOutOfRangeItemChanges() {
+
+        when(socksRepository.findAll()).thenReturn(List.of(new Socks(1L, "red", 150, 100),
+                new Socks(2L, "blue", 80, 150)));
+        inventoryIndex.load();
+        when(socksRepository.findAll()).thenReturn(List.of(new Socks(1L, "red", 100, 100),
+                new Socks(2L, "blue", 80, 150)));
+
+        inventoryIndex.onSocksChanged(SocksChangedEvent.of(new SocksKey("blue", 80)));
+        assertFalse(inventoryIndex.isReady());
+
+        inventoryIndex.onSocksChanged(SocksChangedEvent.of(new SocksKey("red", 150), new SocksKey("red", 100)));
+        assertTrue(inventoryIndex.isReady());
+        assertEquals(List.of(1L), ids(inventoryIndex.query("red", CottonRange.all(), Order.NONE)));
+        verify(socksRepository, times(3)).findAll();
+        verify(socksRepository, never()).findByColorAndCottonPercentage("blue", 80);
+    }
+
+    @Test
+    void testDisabledIndexDoesNotLoad() {
+
+        InventoryIndex disabledIndex = new InventoryIndex(socksRepository, false);
+
+        disabledIndex.load();
+
+        assertFalse(disabledIndex.isReady());
+        verify(socksRepository, times(1)).findAll();
+    }
+
+    private static List<Long> ids(Optional<List<Socks>> socks) {
+        return ids(socks.orElseThrow());
+    }
+
+    private static List<Long> ids(List<Socks> socks) {
+        return socks.stream().map(Socks::getId).toList();
+    }
+}
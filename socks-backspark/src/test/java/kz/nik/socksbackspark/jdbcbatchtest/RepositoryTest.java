@@ -0,0 +1,88 @@
+package kz.nik.socksbackspark.jdbcbatchtest;
+
+import jakarta.persistence.EntityManagerFactory;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks against a real PostgreSQL that {@code saveAll} is batched now that ids come from the pooled sequence,
+ * and that ids handed out by Hibernate and by plain SQL inserts never collide.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Testcontainers(disabledWithoutDocker = true)
+public class RepositoryTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final int ROWS = 500;
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private SocksUpsertEngine upsertEngine;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        socksRepository.deleteAll();
+    }
+
+    @Test
+    void testSaveAllBatchesInserts() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        socksRepository.saveAll(socks("batched", ROWS));
+
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        // one sequence call per 50 ids and one batch per 50 rows, instead of one INSERT per row
+        assertTrue(statistics.getPrepareStatementCount() < ROWS / 10,
+                "statements prepared: " + statistics.getPrepareStatementCount());
+        assertEquals(ROWS, socksRepository.count());
+    }
+
+    @Test
+    void testSqlAndHibernateIdsDoNotCollide() {
+        socksRepository.saveAll(socks("first", 70));
+        upsertEngine.upsert("sql", 1, 1);
+        socksRepository.saveAll(socks("second", 70));
+        upsertEngine.upsert("sql", 2, 1);
+
+        List<Socks> stored = socksRepository.findAll();
+        Set<Long> ids = new HashSet<>();
+        stored.forEach(sock -> ids.add(sock.getId()));
+        assertEquals(142, stored.size());
+        assertEquals(142, ids.size());
+    }
+
+    private static List<Socks> socks(String color, int count) {
+        List<Socks> socks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            socks.add(new Socks(null, color, i, 10));
+        }
+        return socks;
+    }
+}
@@ -0,0 +1,76 @@
+package kz.nik.socksbackspark.metricstest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private SocksMetrics socksMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        socksMetrics = new SocksMetrics(meterRegistry);
+    }
+
+    @Test
+    void testRowsReadAreRecordedPerSource() {
+
+        socksMetrics.rowsRead("cache", 500, 100);
+        socksMetrics.rowsRead("cache", 500, 20);
+        socksMetrics.rowsRead("database", 30, 30);
+
+        assertEquals(1000, meterRegistry.get("socks.read.rows.scanned").tag("source", "cache").summary()
+                .totalAmount());
+        assertEquals(120, meterRegistry.get("socks.read.rows.returned").tag("source", "cache").summary()
+                .totalAmount());
+        assertEquals(1, meterRegistry.get("socks.read.rows.returned").tag("source", "database").summary()
+                .count());
+    }
+
+    @Test
+    void testBatchFilesAreCountedByOutcome() {
+
+        socksMetrics.batchImported("csv", BatchImportResult.builder().rowsProcessed(2000).durationMillis(500)
+                .build());
+        socksMetrics.batchFailed("csv", true);
+        socksMetrics.batchFailed("xlsx", false);
+
+        assertEquals(2000, meterRegistry.get("socks.batch.rows").tag("format", "csv").counter().count());
+        assertEquals(4000, meterRegistry.get("socks.batch.rows.per.second").tag("format", "csv").summary()
+                .totalAmount());
+        assertEquals(1, meterRegistry.get("socks.batch.files").tags("format", "csv", "outcome", "imported")
+                .counter().count());
+        assertEquals(1, meterRegistry.get("socks.batch.files").tags("format", "csv", "outcome", "parse_error")
+                .counter().count());
+        assertEquals(1, meterRegistry.get("socks.batch.files").tags("format", "xlsx", "outcome", "failed")
+                .counter().count());
+    }
+
+    @Test
+    void testRejectedRowsAreRecordedPerFile() {
+
+        BatchImportResult result = BatchImportResult.builder().rowsProcessed(100).durationMillis(10).build();
+        socksMetrics.batchImported("csv", result, 3);
+        socksMetrics.batchImported("csv", result);
+
+        assertEquals(2, meterRegistry.get("socks.batch.rows.rejected").tag("format", "csv").summary().count());
+        assertEquals(3, meterRegistry.get("socks.batch.rows.rejected").tag("format", "csv").summary()
+                .totalAmount());
+    }
+
+    @Test
+    void testStockRejectionsAreCounted() {
+
+        socksMetrics.stockRejected();
+        socksMetrics.stockRejected();
+
+        assertEquals(2, meterRegistry.get("socks.outcome.rejected").counter().count());
+    }
+}
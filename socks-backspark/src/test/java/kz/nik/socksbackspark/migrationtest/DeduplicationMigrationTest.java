@@ -0,0 +1,46 @@
+package kz.nik.socksbackspark.migrationtest;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Migrates a real PostgreSQL to V1, fills the table with the duplicate rows older CSV imports left behind,
+ * including duplicates without a color, and checks that the rest of the migrations merge every item into one
+ * row without counting any stock twice.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class DeduplicationMigrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Test
+    void testDuplicatesIncludingRowsWithoutColorAreMergedOnce() {
+        DataSource dataSource = new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(),
+                postgres.getPassword());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Flyway.configure().dataSource(dataSource).target("1").load().migrate();
+        jdbcTemplate.update("INSERT INTO socks (color, cotton_percentage, quantity) VALUES " +
+                "('red', 50, 10), ('red', 50, 5), (NULL, 50, 7), (NULL, 50, 3), (NULL, 60, 4), ('blue', 50, 1)");
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        Map<String, Integer> stock = jdbcTemplate.queryForList("SELECT color, cotton_percentage, quantity FROM socks")
+                .stream()
+                .collect(Collectors.toMap(row -> row.get("color") + ":" + row.get("cotton_percentage"),
+                        row -> (Integer) row.get("quantity")));
+        assertEquals(Map.of("red:50", 15, "null:50", 10, "null:60", 4, "blue:50", 1), stock);
+    }
+}
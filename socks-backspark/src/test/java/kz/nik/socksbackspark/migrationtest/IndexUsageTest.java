@@ -0,0 +1,282 @@
+package kz.nik.socksbackspark.migrationtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applies the Flyway migrations to a real PostgreSQL, fills the table with 1M rows (10,000 colors x 100 cotton
+ * percentages) and calls every {@link SocksRepository} method the application uses, with the parameters a client
+ * would send: one color, which holds 100 items, cotton thresholds that match 20-30% of the table and the default
+ * page of 100 rows sorted by id. The statements are recorded with their bound parameters at the
+ * {@link DataSource}, so they are exactly what Hibernate issued, and each one is checked with
+ * {@code EXPLAIN ANALYZE} against the index expected to serve it.
+ * <p>
+ * Statements expected to read the whole table, or a large part of it, carry no index and are only explained:
+ * <ul>
+ *     <li>the count query of a page filtered by cotton percentage alone: every heap page holds every percentage,
+ *     so counting 1% or 30% of the rows reads the table either way;</li>
+ *     <li>the count query of the unfiltered listing, {@code findAll} and {@code streamAll}, which read every
+ *     row.</li>
+ * </ul>
+ * The other inherited {@code JpaRepository} methods used ({@code save}, {@code delete}) write a single row by
+ * primary key and are not listed.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class IndexUsageTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final String PRIMARY_KEY = "socks_pkey";
+    private static final String UNIQUE = "uk_socks_color_cotton_percentage";
+    private static final String COTTON_PERCENTAGE = "idx_socks_cotton_percentage";
+    private static final Set<String> READS_TABLE = Set.of();
+
+    private static final String COLOR = "color-4242";
+    private static final Pageable PAGE = PageRequest.of(0, 100, Sort.by("id"));
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final List<ExecutedStatement> executed = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    private SocksRepository socksRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private long middleId;
+
+    @TestConfiguration
+    static class StatementCaptureConfiguration {
+        @Bean
+        static BeanPostProcessor statementCapture() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? capture(DataSource.class, dataSource, null) : bean;
+                }
+            };
+        }
+    }
+
+    @BeforeAll
+    void fillTable() {
+        jdbcTemplate.update("DELETE FROM socks");
+        jdbcTemplate.update("INSERT INTO socks (color, cotton_percentage, quantity) " +
+                "SELECT 'color-' || c, p, (c * p) % 500 FROM generate_series(0, 9999) c, generate_series(0, 99) p");
+        jdbcTemplate.execute("VACUUM ANALYZE socks");
+        middleId = jdbcTemplate.queryForObject("SELECT percentile_disc(0.5) WITHIN GROUP (ORDER BY id) FROM socks",
+                Long.class);
+    }
+
+    Stream<Arguments> repositoryMethods() {
+        return Stream.of(
+                method("findByColor", repository -> repository.findByColor(COLOR, PAGE), UNIQUE, UNIQUE),
+                // the first ids hold enough matches, so walking the primary key beats sorting 290k rows
+                method("findByCottonPercentageGreaterThan",
+                        repository -> repository.findByCottonPercentageGreaterThan(70, PAGE), PRIMARY_KEY, READS_TABLE),
+                method("findByCottonPercentageLessThan",
+                        repository -> repository.findByCottonPercentageLessThan(30, PAGE), PRIMARY_KEY, READS_TABLE),
+                method("findByCottonPercentage",
+                        repository -> repository.findByCottonPercentage(50, PAGE), PRIMARY_KEY, READS_TABLE),
+                method("findByColorAndCottonPercentageGreaterThan",
+                        repository -> repository.findByColorAndCottonPercentageGreaterThan(COLOR, 70, PAGE), UNIQUE),
+                method("findByColorAndCottonPercentageLessThan",
+                        repository -> repository.findByColorAndCottonPercentageLessThan(COLOR, 30, PAGE), UNIQUE),
+                method("findByColorAndCottonPercentage page",
+                        repository -> repository.findByColorAndCottonPercentage(COLOR, 50, PAGE), UNIQUE),
+                method("findByCottonPercentageBetween",
+                        repository -> repository.findByCottonPercentageBetween(40, 60, PAGE), PRIMARY_KEY, READS_TABLE),
+                method("findByColorAndCottonPercentage",
+                        repository -> repository.findByColorAndCottonPercentage(COLOR, 50), UNIQUE),
+                method("existsByColorAndCottonPercentage",
+                        repository -> repository.existsByColorAndCottonPercentage(COLOR, 50), UNIQUE),
+                method("findById", repository -> repository.findById(middleId), PRIMARY_KEY),
+                method("findByIdGreaterThanOrderByIdAsc",
+                        repository -> repository.findByIdGreaterThanOrderByIdAsc(middleId, PageRequest.of(0, 100)),
+                        PRIMARY_KEY),
+                method("findAll page", repository -> repository.findAll(PAGE), PRIMARY_KEY, READS_TABLE),
+                method("findAll", repository -> repository.findAll(), READS_TABLE),
+                method("streamAll", repository -> transactionTemplate.executeWithoutResult(status -> {
+                    try (Stream<Socks> rows = repository.streamAll()) {
+                        rows.forEach(row -> {
+                        });
+                    }
+                }), READS_TABLE),
+                // quantity is included in the cotton percentage index, so totals are index-only scans
+                method("sumQuantity", repository -> repository.sumQuantity(40, 60), COTTON_PERCENTAGE),
+                method("sumQuantityByColor",
+                        repository -> repository.sumQuantityByColor(COLOR, Integer.MIN_VALUE, Integer.MAX_VALUE),
+                        UNIQUE),
+                method("sumQuantityGroupByColor",
+                        repository -> repository.sumQuantityGroupByColor(40, 60), COTTON_PERCENTAGE),
+                method("sumQuantityByColorGroupByColor",
+                        repository -> repository.sumQuantityByColorGroupByColor(COLOR, 40, 60), UNIQUE),
+                method("sumQuantityGroupByCottonPercentage",
+                        repository -> repository.sumQuantityGroupByCottonPercentage(40, 60), COTTON_PERCENTAGE),
+                method("sumQuantityByColorGroupByCottonPercentage",
+                        repository -> repository.sumQuantityByColorGroupByCottonPercentage(COLOR, 0, 100), UNIQUE),
+                method("decreaseQuantity", repository -> repository.decreaseQuantity(COLOR, 50, 1), UNIQUE)
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryMethods")
+    void testRepositoryMethodUsesIndex(String method, Consumer<SocksRepository> call, Set<String> indexes,
+                                       Set<String> countIndexes) throws Exception {
+        executed.clear();
+        call.accept(socksRepository);
+        List<ExecutedStatement> statements = executed.stream()
+                .filter(statement -> statement.sql().contains("socks"))
+                .toList();
+        assertFalse(statements.isEmpty(), method + " issued no statement");
+
+        for (ExecutedStatement statement : statements) {
+            Set<String> expected = statement.sql().startsWith("select count(") ? countIndexes : indexes;
+            String plan = explainAnalyze(statement);
+            if (expected.isEmpty()) {
+                continue;
+            }
+            Set<String> used = new HashSet<>();
+            boolean sequentialScan = scans(MAPPER.readTree(plan).get(0).get("Plan"), used);
+            String message = method + " runs\n" + statement.sql() + "\nwith the plan\n" + plan;
+            assertFalse(sequentialScan, message);
+            assertFalse(used.isEmpty(), message);
+            assertTrue(expected.containsAll(used), "expected " + expected + ", " + message);
+        }
+    }
+
+    /**
+     * A method whose statements are all expected to read {@code index}.
+     */
+    private static Arguments method(String name, Consumer<SocksRepository> call, String index) {
+        return method(name, call, Set.of(index), Set.of(index));
+    }
+
+    /**
+     * A paged method whose count query is expected to read {@code countIndex}.
+     */
+    private static Arguments method(String name, Consumer<SocksRepository> call, String index, String countIndex) {
+        return method(name, call, Set.of(index), Set.of(countIndex));
+    }
+
+    private static Arguments method(String name, Consumer<SocksRepository> call, String index,
+                                    Set<String> countIndexes) {
+        return method(name, call, Set.of(index), countIndexes);
+    }
+
+    private static Arguments method(String name, Consumer<SocksRepository> call, Set<String> indexes) {
+        return method(name, call, indexes, indexes);
+    }
+
+    private static Arguments method(String name, Consumer<SocksRepository> call, Set<String> indexes,
+                                    Set<String> countIndexes) {
+        return Arguments.of(name, call, indexes, countIndexes);
+    }
+
+    /**
+     * Collects the indexes the plan reads and returns whether it also scans the table sequentially.
+     */
+    private static boolean scans(JsonNode node, Set<String> indexes) {
+        boolean sequentialScan = "Seq Scan".equals(node.path("Node Type").asText());
+        if (node.has("Index Name")) {
+            indexes.add(node.get("Index Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            sequentialScan |= scans(child, indexes);
+        }
+        return sequentialScan;
+    }
+
+    private String explainAnalyze(ExecutedStatement statement) {
+        // EXPLAIN ANALYZE executes the statement, so writes are rolled back
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            List<String> plan = jdbcTemplate.queryForList("EXPLAIN (ANALYZE, FORMAT JSON) " + statement.sql(),
+                    String.class, statement.parameters().toArray());
+            return String.join("\n", plan);
+        });
+    }
+
+    /**
+     * Wraps the data source, its connections and their prepared statements, recording every statement executed
+     * with the parameters bound to it.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T capture(Class<T> type, T target, String sql) {
+        Map<Integer, Object> parameters = new TreeMap<>();
+        return (T) Proxy.newProxyInstance(IndexUsageTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    String name = method.getName();
+                    if (name.equals("getConnection") && result instanceof Connection connection) {
+                        return capture(Connection.class, connection, null);
+                    }
+                    if (name.equals("prepareStatement") && result instanceof PreparedStatement statement) {
+                        return capture(PreparedStatement.class, statement, (String) args[0]);
+                    }
+                    if (sql != null && name.startsWith("set") && args != null && args.length >= 2
+                            && args[0] instanceof Integer index) {
+                        parameters.put(index, name.equals("setNull") ? null : args[1]);
+                    } else if (sql != null && name.equals("clearParameters")) {
+                        parameters.clear();
+                    } else if (sql != null && name.startsWith("execute") && (args == null || args.length == 0)) {
+                        executed.add(new ExecutedStatement(sql, new ArrayList<>(parameters.values())));
+                    }
+                    return result;
+                });
+    }
+
+    private record ExecutedStatement(String sql, List<Object> parameters) {
+    }
+}
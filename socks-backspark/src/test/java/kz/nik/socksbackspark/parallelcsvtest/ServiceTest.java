@@ -0,0 +1,99 @@
+package kz.nik.socksbackspark.parallelcsvtest;
+
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.service.batch.ParallelCsvParser;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+public class ServiceTest {
+
+    // quoted colors with commas, doubled quotes and newlines, so that naive line splitting would break records
+    private static final String CSV = "color,cottonPercentage,quantity\n" +
+            "red,50,10\n" +
+            "\"dark\nblue\",80,5\n" +
+            "\"green, \"\"striped\"\"\",30,7\n" +
+            "red,50,3\n" +
+            "\"multi\nline\nyellow\",10,1\n" +
+            "\"dark\nblue\",80,2\n";
+
+    private static final Map<SocksKey, Integer> EXPECTED = Map.of(
+            new SocksKey("red", 50), 13,
+            new SocksKey("dark\nblue", 80), 7,
+            new SocksKey("green, \"striped\"", 30), 7,
+            new SocksKey("multi\nline\nyellow", 10), 1);
+
+    @TempDir
+    Path tempDir;
+
+    @InjectMocks
+    private SocksServiceImpl socksService;
+
+    @Mock
+    private SocksUpsertEngine upsertEngine;
+
+    @Mock
+    private SocksMetrics socksMetrics;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testRangesAreAlignedToRecordsForAnyParallelism() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("socks.csv"), CSV, StandardCharsets.UTF_8);
+
+        for (int parallelism : new int[]{1, 2, 4, 8}) {
+            // one-byte minimum ranges force a split point inside every kind of record
+            ParallelCsvParser.Result result = new ParallelCsvParser(parallelism, 1).parse(file);
+
+            assertEquals(EXPECTED, result.quantities(), "parallelism " + parallelism);
+            assertEquals(6, result.rows(), "parallelism " + parallelism);
+            assertTrue(result.ranges() <= parallelism);
+        }
+    }
+
+    @Test
+    void testSmallFileStaysInOneRange() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("socks.csv"), CSV, StandardCharsets.UTF_8);
+
+        assertEquals(1, new ParallelCsvParser(8).parse(file).ranges());
+    }
+
+    @Test
+    void testMalformedRowFailsTheFile() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("socks.csv"), CSV + "blue,abc,1\n", StandardCharsets.UTF_8);
+
+        assertThrows(NumberFormatException.class, () -> new ParallelCsvParser(4, 1).parse(file));
+    }
+
+    @Test
+    void testProcessCsvFileInParallelWritesMergedQuantities() throws Exception {
+        ReflectionTestUtils.setField(socksService, "csvParallelism", 4);
+
+        BatchImportResult result = socksService.processCsvFile(new MockMultipartFile("file", "socks.csv",
+                "text/csv", CSV.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(6, result.getRowsProcessed());
+        verify(upsertEngine).apply(EXPECTED);
+        verify(socksMetrics).batchImported("csv", result);
+    }
+}
@@ -0,0 +1,189 @@
+package kz.nik.socksbackspark.pipelinetest;
+
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.exceptions.FileProcessingException;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.service.batch.SocksImportPipeline;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ServiceTest {
+
+    @InjectMocks
+    private SocksServiceImpl socksService;
+
+    @Mock
+    private SocksUpsertEngine upsertEngine;
+
+    @Mock
+    private SocksMetrics socksMetrics;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testChunksAreWrittenBySeveralWriters() {
+        Map<SocksKey, Integer> written = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            Map<SocksKey, Integer> chunk = invocation.getArgument(0);
+            chunk.forEach((key, quantity) -> written.merge(key, quantity, Integer::sum));
+            return null;
+        }).when(upsertEngine).apply(anyMap());
+
+        BatchImportResult result;
+        try (SocksImportPipeline<SocksDto> pipeline = new SocksImportPipeline<>(upsertEngine, Function.identity(),
+                socksMetrics, "csv", 100, 3, 2)) {
+            for (int i = 0; i < 10_000; i++) {
+                pipeline.add(new SocksDto(null, "Color" + (i % 1000), 50, 2));
+            }
+            result = pipeline.finish();
+        }
+
+        assertEquals(10_000, result.getRowsProcessed());
+        assertEquals(100, result.getChunks());
+        assertEquals(1000, written.size());
+        assertTrue(written.values().stream().allMatch(quantity -> quantity == 20));
+        verify(socksMetrics).batchStage(eq("csv"), eq("write"), eq(10_000L), anyLong(), anyLong());
+    }
+
+    @Test
+    void testSlowWriterBlocksTheParser() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(upsertEngine).apply(anyMap());
+
+        AtomicReference<BatchImportResult> result = new AtomicReference<>();
+        try (SocksImportPipeline<SocksDto> pipeline = new SocksImportPipeline<>(upsertEngine, Function.identity(),
+                socksMetrics, "csv", 1, 1, 1)) {
+            Thread parser = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    pipeline.add(new SocksDto(null, "Color" + i, 50, 1));
+                }
+                result.set(pipeline.finish());
+            });
+            parser.start();
+
+            // one chunk per row: with both queues full the parser cannot get far ahead of the stuck writer
+            parser.join(500);
+            assertTrue(parser.isAlive());
+            release.countDown();
+            parser.join(TimeUnit.SECONDS.toMillis(30));
+            assertFalse(parser.isAlive());
+        }
+        assertEquals(10_000, result.get().getRowsProcessed());
+        verify(upsertEngine, times(10_000)).apply(anyMap());
+    }
+
+    @Test
+    void testWriteFailureStopsTheParser() {
+        doThrow(new RuntimeException("Database error")).when(upsertEngine).apply(anyMap());
+
+        try (SocksImportPipeline<SocksDto> pipeline = new SocksImportPipeline<>(upsertEngine, Function.identity(),
+                socksMetrics, "csv", 1, 2, 1)) {
+            SocksImportPipeline.StageException e = assertThrows(SocksImportPipeline.StageException.class, () -> {
+                for (int i = 0; i < 1_000_000; i++) {
+                    pipeline.add(new SocksDto(null, "Color" + i, 50, 1));
+                }
+                pipeline.finish();
+            });
+            assertEquals(SocksImportPipeline.Stage.WRITE, e.getStage());
+        }
+    }
+
+    @Test
+    void testPeakChunkSizeCountsItems() {
+        BatchImportResult result;
+        try (SocksImportPipeline<SocksDto> pipeline = new SocksImportPipeline<>(upsertEngine, Function.identity(),
+                socksMetrics, "csv", 100, 1, 2)) {
+            for (int i = 0; i < 3000; i++) {
+                pipeline.add(new SocksDto(null, "Color" + (i % 10), 50, 1));
+            }
+            result = pipeline.finish();
+        }
+
+        assertEquals(3000, result.getRowsProcessed());
+        assertEquals(1, result.getChunks());
+        assertEquals(10, result.getPeakChunkSize());
+    }
+
+    @Test
+    void testCloseWaitsForWritersAfterValidateFailure() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        AtomicBoolean inWrite = new AtomicBoolean();
+        doAnswer(invocation -> {
+            inWrite.set(true);
+            try {
+                writing.countDown();
+                new CountDownLatch(1).await();
+                return null;
+            } finally {
+                inWrite.set(false);
+            }
+        }).when(upsertEngine).apply(anyMap());
+        Function<SocksDto, SocksDto> validator = row -> {
+            if (row.getQuantity() < 0) {
+                try {
+                    // fail only once the writer is busy with the first chunk
+                    writing.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalArgumentException("Negative quantity");
+            }
+            return row;
+        };
+
+        SocksImportPipeline<SocksDto> pipeline = new SocksImportPipeline<>(upsertEngine, validator, socksMetrics,
+                "csv", 1, 1, 2);
+        SocksImportPipeline.StageException e = assertThrows(SocksImportPipeline.StageException.class, () -> {
+            for (int i = 0; i < 1_000_000; i++) {
+                pipeline.add(new SocksDto(null, "Color" + i, 50, i == 1 ? -1 : 1));
+            }
+            pipeline.finish();
+        });
+        assertEquals(SocksImportPipeline.Stage.VALIDATE, e.getStage());
+        pipeline.close();
+
+        assertFalse(inWrite.get());
+    }
+
+    @Test
+    void testProcessCsvFile_malformedRowIsParseError() {
+        MockMultipartFile file = new MockMultipartFile("file", "socks.csv", "text/csv",
+                "color,cottonPercentage,quantity\nRed,50,100\nBlue,abc,200\n".getBytes(StandardCharsets.UTF_8));
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> socksService.processCsvFile(file));
+
+        assertInstanceOf(FileProcessingException.class, e.getCause());
+        verify(socksMetrics).batchFailed("csv", true);
+        verify(socksMetrics, never()).batchFailed("csv", false);
+        verify(upsertEngine, never()).apply(anyMap());
+    }
+}
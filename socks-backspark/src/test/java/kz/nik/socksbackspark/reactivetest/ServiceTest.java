@@ -0,0 +1,181 @@
+package kz.nik.socksbackspark.reactivetest;
+
+import kz.nik.socksbackspark.dto.SocksDto;
+import kz.nik.socksbackspark.exceptions.FileProcessingException;
+import kz.nik.socksbackspark.exceptions.InsufficientStockException;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.mapper.SocksMapper;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.repository.reactive.ReactiveSocksRepository;
+import kz.nik.socksbackspark.service.ReactiveSocksService;
+import kz.nik.socksbackspark.service.impl.ReactiveSocksServiceImpl;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServiceTest {
+    @Mock
+    private ReactiveSocksRepository socksRepository;
+
+    @Mock
+    private SocksMapper socksMapper;
+
+    @Mock
+    private SocksMetrics socksMetrics;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    private ReactiveSocksService socksService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        socksService = new ReactiveSocksServiceImpl(socksRepository, socksMapper, socksMetrics,
+                transactionalOperator);
+    }
+
+    @Test
+    void testGetFilteredSocksStreamsSortedPage() {
+        Socks sock = new Socks(1L, "red", 50, 100);
+        SocksDto sockDto = new SocksDto(1L, "red", 50, 100);
+        when(socksRepository.findByColor(eq("red"), any(Pageable.class))).thenReturn(Flux.just(sock));
+        when(socksMapper.toDto(sock)).thenReturn(sockDto);
+
+        StepVerifier.create(socksService.getFilteredSocks("red", null, null, null, null,
+                        "cottonPercentage", "desc", 2, 10))
+                .expectNext(sockDto)
+                .verifyComplete();
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(socksRepository).findByColor(eq("red"), pageable.capture());
+        assertEquals(2, pageable.getValue().getPageNumber());
+        assertEquals(10, pageable.getValue().getPageSize());
+        assertEquals(Sort.by(Sort.Direction.DESC, "cottonPercentage").and(Sort.by("id")),
+                pageable.getValue().getSort());
+        verify(socksMetrics).rowsRead("database", 1, 1);
+    }
+
+    @Test
+    void testGetFilteredSocksWithInvalidDataIsSignalledOnSubscribe() {
+        StepVerifier.create(socksService.getFilteredSocks(null, "invalidOperation", 10, null, null,
+                        null, null, 0, null))
+                .expectError(InvalidDataFormatException.class)
+                .verify();
+        StepVerifier.create(socksService.getAllSocks(null, -1, null))
+                .expectError(InvalidDataFormatException.class)
+                .verify();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUpdateSockOntoExistingItemMergesRows() {
+        Socks movedSock = new Socks(1L, "red", 50, 100);
+        Socks targetSock = new Socks(2L, "blue", 60, 40);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(socksRepository.findById(1L)).thenReturn(Mono.just(movedSock));
+        when(socksRepository.findByColorAndCottonPercentage("blue", 60)).thenReturn(Flux.just(targetSock));
+        when(socksRepository.delete(movedSock)).thenReturn(Mono.empty());
+        when(socksRepository.save(targetSock)).thenReturn(Mono.just(targetSock));
+        when(socksMapper.toDto(targetSock)).thenReturn(new SocksDto(2L, "blue", 60, 150));
+
+        StepVerifier.create(socksService.updateSock(1L, new SocksDto(1L, "blue", 60, 110)))
+                .expectNextMatches(dto -> dto.getId() == 2L && dto.getQuantity() == 150)
+                .verifyComplete();
+        assertEquals(150, targetSock.getQuantity());
+        verify(socksRepository).delete(movedSock);
+        verify(socksRepository, never()).save(movedSock);
+    }
+
+    @Test
+    void testDecreaseSocksQuantityRejected() {
+        when(socksRepository.decreaseQuantity("red", 50, 10)).thenReturn(Mono.just(0));
+        when(socksRepository.existsByColorAndCottonPercentage("red", 50)).thenReturn(Mono.just(true));
+
+        StepVerifier.create(socksService.decreaseSocksQuantity("red", 50, 10))
+                .expectErrorMatches(e -> e instanceof InsufficientStockException
+                        && e.getMessage().equals("Not enough socks in stock"))
+                .verify();
+        verify(socksMetrics).stockRejected();
+    }
+
+    @Test
+    void testDecreaseSocksQuantity() {
+        when(socksRepository.decreaseQuantity("red", 50, 10)).thenReturn(Mono.just(1));
+
+        StepVerifier.create(socksService.decreaseSocksQuantity("red", 50, 10)).verifyComplete();
+        verify(socksRepository, never()).existsByColorAndCottonPercentage(anyString(), anyInt());
+    }
+
+    @Test
+    void testProcessCsvFileAggregatesRowsBeforeUpsert() {
+        when(socksRepository.upsertQuantities(any(), any(), any())).thenReturn(Mono.just(2));
+
+        StepVerifier.create(socksService.processCsvFile(csvFile("color,cottonPercentage,quantity\n" +
+                        "red,50,10\nblue,80,5\nred,50,7\n")))
+                .expectNextMatches(result -> result.getRowsProcessed() == 3 && result.getChunks() == 1)
+                .verifyComplete();
+
+        ArgumentCaptor<String[]> colors = ArgumentCaptor.forClass(String[].class);
+        ArgumentCaptor<Integer[]> quantities = ArgumentCaptor.forClass(Integer[].class);
+        verify(socksRepository).upsertQuantities(colors.capture(), any(), quantities.capture());
+        assertArrayEquals(new String[]{"blue", "red"}, colors.getValue());
+        assertArrayEquals(new Integer[]{5, 17}, quantities.getValue());
+    }
+
+    @Test
+    void testProcessCsvFileKeepsQuotedLineBreaks() {
+        when(socksRepository.upsertQuantities(any(), any(), any())).thenReturn(Mono.just(1));
+
+        StepVerifier.create(socksService.processCsvFile(csvFile("color,cottonPercentage,quantity\n" +
+                        "\"red\nstriped\",50,10\n")))
+                .expectNextMatches(result -> result.getRowsProcessed() == 1 && result.getChunks() == 1)
+                .verifyComplete();
+
+        ArgumentCaptor<String[]> colors = ArgumentCaptor.forClass(String[].class);
+        verify(socksRepository).upsertQuantities(colors.capture(), any(), any());
+        assertArrayEquals(new String[]{"red\nstriped"}, colors.getValue());
+    }
+
+    @Test
+    void testProcessCsvFileWithInvalidRow() {
+        StepVerifier.create(socksService.processCsvFile(csvFile("color,cottonPercentage,quantity\nred,abc,10\n")))
+                .expectError(FileProcessingException.class)
+                .verify();
+        verify(socksRepository, never()).upsertQuantities(any(), any(), any());
+        verify(socksMetrics).batchFailed("csv", true);
+    }
+
+    private static FilePart csvFile(String content) {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(content.getBytes(StandardCharsets.UTF_8));
+        FilePart file = mock(FilePart.class);
+        when(file.filename()).thenReturn("socks.csv");
+        when(file.content()).thenReturn(Flux.just(buffer));
+        return file;
+    }
+}
@@ -0,0 +1,73 @@
+package kz.nik.socksbackspark.totaltest;
+
+import kz.nik.socksbackspark.api.SocksController;
+import kz.nik.socksbackspark.dto.SocksGroupTotalDto;
+import kz.nik.socksbackspark.dto.SocksTotalDto;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.service.SocksService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(SocksController.class)
+public class ControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SocksService socksService;
+
+    @Test
+    public void testTotalQuantity() throws Exception {
+        when(socksService.getTotalQuantity("red", "greaterThan", 50, null, null, null))
+                .thenReturn(SocksTotalDto.builder().totalQuantity(250).build());
+
+        mockMvc.perform(get("/api/socks/total")
+                        .param("color", "red")
+                        .param("operation", "greaterThan")
+                        .param("cottonPercentage", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalQuantity", is(250)))
+                .andExpect(jsonPath("$.groups").doesNotExist());
+    }
+
+    @Test
+    public void testTotalQuantityGroupedByColor() throws Exception {
+        when(socksService.getTotalQuantity(null, null, null, 30, 70, "color"))
+                .thenReturn(SocksTotalDto.builder().totalQuantity(15).groups(List.of(
+                        SocksGroupTotalDto.builder().color("blue").totalQuantity(10).build(),
+                        SocksGroupTotalDto.builder().color("red").totalQuantity(5).build())).build());
+
+        mockMvc.perform(get("/api/socks/total")
+                        .param("cottonPercentageFrom", "30")
+                        .param("cottonPercentageTo", "70")
+                        .param("groupBy", "color"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalQuantity", is(15)))
+                .andExpect(jsonPath("$.groups", hasSize(2)))
+                .andExpect(jsonPath("$.groups[0].color", is("blue")))
+                .andExpect(jsonPath("$.groups[0].cottonPercentage").doesNotExist());
+    }
+
+    @Test
+    public void testTotalQuantityInvalidOperation() throws Exception {
+        when(socksService.getTotalQuantity(null, "between", 50, null, null, null))
+                .thenThrow(new InvalidDataFormatException("Invalid operation."));
+
+        mockMvc.perform(get("/api/socks/total")
+                        .param("operation", "between")
+                        .param("cottonPercentage", "50"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,130 @@
+package kz.nik.socksbackspark.totaltest;
+
+import kz.nik.socksbackspark.dto.SocksTotalDto;
+import kz.nik.socksbackspark.exceptions.InvalidDataFormatException;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ServiceTest {
+    @Mock
+    private SocksRepository socksRepository;
+
+    @InjectMocks
+    private SocksServiceImpl socksService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testTotalByColorAndGreaterThan() {
+
+        when(socksRepository.sumQuantityByColor("red", 51, Integer.MAX_VALUE)).thenReturn(250L);
+
+        SocksTotalDto result = socksService.getTotalQuantity("red", "greaterThan", 50, null, null, null);
+
+        assertEquals(250L, result.getTotalQuantity());
+        assertNull(result.getGroups());
+        verify(socksRepository, never()).findAll();
+    }
+
+    @Test
+    void testTotalLessThanAndEqualTo() {
+
+        when(socksRepository.sumQuantity(Integer.MIN_VALUE, 49)).thenReturn(10L);
+        when(socksRepository.sumQuantity(50, 50)).thenReturn(20L);
+
+        assertEquals(10L, socksService.getTotalQuantity(null, "lessThan", 50, null, null, null)
+                .getTotalQuantity());
+        assertEquals(20L, socksService.getTotalQuantity(null, "equalTo", 50, null, null, null)
+                .getTotalQuantity());
+    }
+
+    @Test
+    void testTotalOfRangeAndOfEverything() {
+
+        when(socksRepository.sumQuantity(30, 70)).thenReturn(5L);
+        when(socksRepository.sumQuantity(Integer.MIN_VALUE, Integer.MAX_VALUE)).thenReturn(500L);
+
+        assertEquals(5L, socksService.getTotalQuantity(null, null, null, 30, 70, null).getTotalQuantity());
+        assertEquals(500L, socksService.getTotalQuantity(null, null, null, null, null, null).getTotalQuantity());
+    }
+
+    @Test
+    void testTotalGroupedByColor() {
+
+        SocksRepository.ColorTotal blue = colorTotal("blue", 150L);
+        SocksRepository.ColorTotal red = colorTotal("red", 100L);
+        when(socksRepository.sumQuantityGroupByColor(51, Integer.MAX_VALUE)).thenReturn(List.of(blue, red));
+
+        SocksTotalDto result = socksService.getTotalQuantity(null, "greaterThan", 50, null, null, "color");
+
+        assertEquals(250L, result.getTotalQuantity());
+        assertEquals(2, result.getGroups().size());
+        assertEquals("blue", result.getGroups().get(0).getColor());
+        assertEquals(150L, result.getGroups().get(0).getTotalQuantity());
+        assertNull(result.getGroups().get(0).getCottonPercentage());
+    }
+
+    @Test
+    void testTotalGroupedByCottonPercentage() {
+
+        SocksRepository.CottonPercentageTotal total = mock(SocksRepository.CottonPercentageTotal.class);
+        when(total.getCottonPercentage()).thenReturn(80);
+        when(total.getTotalQuantity()).thenReturn(40L);
+        when(socksRepository.sumQuantityByColorGroupByCottonPercentage("red", 80, 80)).thenReturn(List.of(total));
+
+        SocksTotalDto result = socksService.getTotalQuantity("red", "equalTo", 80, null, null, "cottonPercentage");
+
+        assertEquals(40L, result.getTotalQuantity());
+        assertEquals(80, result.getGroups().get(0).getCottonPercentage());
+    }
+
+    @Test
+    void testTotalOfImpossibleFilterSkipsDatabase() {
+
+        SocksTotalDto result = socksService.getTotalQuantity(null, null, null, 80, 20, null);
+
+        assertEquals(0L, result.getTotalQuantity());
+        verifyNoInteractions(socksRepository);
+    }
+
+    @Test
+    void testTotalWithInvalidParameters() {
+
+        assertThrows(InvalidDataFormatException.class,
+                () -> socksService.getTotalQuantity(null, "invalidOperation", 50, null, null, null));
+        assertThrows(InvalidDataFormatException.class,
+                () -> socksService.getTotalQuantity(null, "greaterThan", null, null, null, null));
+        assertThrows(InvalidDataFormatException.class,
+                () -> socksService.getTotalQuantity(null, null, 50, null, null, null));
+        assertThrows(InvalidDataFormatException.class,
+                () -> socksService.getTotalQuantity(null, null, null, null, null, "quantity"));
+    }
+
+    @Test
+    void testTotalError() {
+
+        when(socksRepository.sumQuantity(anyInt(), anyInt())).thenThrow(new RuntimeException("Database error"));
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> socksService.getTotalQuantity(null, null, null, null, null, null));
+        assertEquals("Error totalling socks", exception.getMessage());
+    }
+
+    private static SocksRepository.ColorTotal colorTotal(String color, long quantity) {
+        SocksRepository.ColorTotal total = mock(SocksRepository.ColorTotal.class);
+        when(total.getColor()).thenReturn(color);
+        when(total.getTotalQuantity()).thenReturn(quantity);
+        return total;
+    }
+}
@@ -4,14 +4,19 @@ import kz.nik.socksbackspark.dto.SocksDto;
 import kz.nik.socksbackspark.exceptions.InsufficientStockException;
 import kz.nik.socksbackspark.mapper.SocksMapper;
 import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
 import kz.nik.socksbackspark.repository.SocksRepository;
 import static org.mockito.Mockito.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.inventory.SocksChangedEvent;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.Mockito.when;
@@ -23,6 +28,9 @@ public class ServiceTest {
     @Mock
     private SocksMapper socksMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private SocksServiceImpl socksService;
 
@@ -59,6 +67,29 @@ public class ServiceTest {
 
         verify(socksRepository, times(1)).findById(1L);
         verify(socksRepository, times(1)).save(any(Socks.class));
+        verify(eventPublisher, times(1)).publishEvent(SocksChangedEvent.of(new SocksKey("red", 50),
+                new SocksKey("blue", 60)));
+    }
+
+    @Test
+    void testUpdateSockOntoExistingItemMergesRows() {
+
+        Socks targetSock = new Socks(2L, "blue", 60, 40);
+        when(socksRepository.findById(1L)).thenReturn(Optional.of(existingSock));
+        when(socksRepository.findByColorAndCottonPercentage("blue", 60)).thenReturn(List.of(targetSock));
+        when(socksRepository.save(any(Socks.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(socksMapper.toDto(any(Socks.class))).thenReturn(new SocksDto(2L, "blue", 60, 190));
+
+        SocksDto result = socksService.updateSock(1L, socksDto);
+
+        assertEquals(2L, result.getId());
+        assertEquals(190, result.getQuantity());
+        assertEquals(190, targetSock.getQuantity());
+        verify(socksRepository).delete(existingSock);
+        verify(socksRepository).save(targetSock);
+        verify(socksRepository, never()).save(existingSock);
+        verify(eventPublisher, times(1)).publishEvent(SocksChangedEvent.of(new SocksKey("red", 50),
+                new SocksKey("blue", 60)));
     }
 
     @Test
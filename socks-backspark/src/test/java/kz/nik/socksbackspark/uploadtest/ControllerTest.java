@@ -0,0 +1,100 @@
+package kz.nik.socksbackspark.uploadtest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import kz.nik.socksbackspark.api.SocksController;
+import kz.nik.socksbackspark.dto.BatchImportResult;
+import kz.nik.socksbackspark.exceptions.UploadTooLargeException;
+import kz.nik.socksbackspark.service.SocksService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+
+@WebMvcTest(SocksController.class)
+@TestPropertySource(properties = "socks.batch.upload.max-size=64B")
+public class ControllerTest {
+
+    private static final byte[] CSV = "color,cottonPercentage,quantity\nRed,80,10\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private SocksService socksService;
+
+    @Test
+    void testAddBatchStream_csvBodyIsParsedWithoutMultipart() throws Exception {
+        when(socksService.processCsvStream(any())).thenReturn(BatchImportResult.builder()
+                .rowsProcessed(1)
+                .chunks(1)
+                .peakChunkSize(1)
+                .durationMillis(10)
+                .build());
+
+        mockMvc.perform(post("/api/socks/batch/stream")
+                        .contentType("text/csv")
+                        .content(CSV))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Rows-Processed", "1"))
+                .andExpect(content().string("Batch processed successfully. Успешная загрузка."));
+
+        verify(socksService, times(1)).processCsvStream(any());
+        verify(socksService, never()).processExcelStream(any());
+        verify(socksService, never()).processCsvFile(any());
+    }
+
+    @Test
+    void testAddBatchStream_excelBodyGoesToExcelImport() throws Exception {
+
+        mockMvc.perform(post("/api/socks/batch/stream")
+                        .contentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                        .content(new byte[]{1, 2, 3}))
+                .andExpect(status().isOk());
+
+        verify(socksService, times(1)).processExcelStream(any());
+        verify(socksService, never()).processCsvStream(any());
+    }
+
+    @Test
+    void testAddBatchStream_declaredLengthOverLimitIsRejectedUnread() throws Exception {
+
+        mockMvc.perform(post("/api/socks/batch/stream")
+                        .contentType("text/csv")
+                        .header(HttpHeaders.CONTENT_LENGTH, 1024)
+                        .content(new byte[1024]))
+                .andExpect(status().isPayloadTooLarge());
+
+        verifyNoInteractions(socksService);
+    }
+
+    @Test
+    void testAddBatchStream_streamOverLimitIsRejected() throws Exception {
+        when(socksService.processCsvStream(any())).thenThrow(new UploadTooLargeException("too large"));
+
+        mockMvc.perform(post("/api/socks/batch/stream")
+                        .contentType("text/csv")
+                        .content(CSV))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    void testAddBatchStream_unsupportedContentType() throws Exception {
+
+        mockMvc.perform(post("/api/socks/batch/stream")
+                        .contentType("text/plain")
+                        .content("Invalid content"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyNoInteractions(socksService);
+    }
+}
@@ -0,0 +1,85 @@
+package kz.nik.socksbackspark.uploadtest;
+
+import kz.nik.socksbackspark.exceptions.UploadTooLargeException;
+import kz.nik.socksbackspark.service.batch.LimitedInputStream;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.batch.SpoolFiles;
+import kz.nik.socksbackspark.service.impl.SocksServiceImpl;
+import kz.nik.socksbackspark.service.metrics.SocksMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ServiceTest {
+
+    @InjectMocks
+    private SocksServiceImpl socksService;
+
+    @Mock
+    private SocksUpsertEngine upsertEngine;
+
+    @Mock
+    private SocksMetrics socksMetrics;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void testSpoolCopiesTheWholeStream() throws Exception {
+        // larger than one transfer, so the copy has to loop
+        byte[] content = new byte[9 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+
+        Path spoolFile = SpoolFiles.spool(new ByteArrayInputStream(content), ".bin");
+        try {
+            assertArrayEquals(content, Files.readAllBytes(spoolFile));
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    @Test
+    void testLimitedStreamStopsPastTheLimit() throws Exception {
+        InputStream limited = new LimitedInputStream(new ByteArrayInputStream(new byte[100]), 99);
+
+        assertThrows(UploadTooLargeException.class, limited::readAllBytes);
+        assertEquals(100, new LimitedInputStream(new ByteArrayInputStream(new byte[100]), 100)
+                .readAllBytes().length);
+    }
+
+    @Test
+    void testProcessCsvStream_overLimitIsRejected() {
+        byte[] csv = "color,cottonPercentage,quantity\nRed,50,100\nBlue,80,200\n".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(UploadTooLargeException.class, () -> socksService.processCsvStream(
+                new LimitedInputStream(new ByteArrayInputStream(csv), 16)));
+
+        verify(socksMetrics).batchFailed("csv", true);
+        verify(upsertEngine, never()).apply(anyMap());
+    }
+
+    @Test
+    void testProcessExcelStream_overLimitStopsSpooling() {
+
+        assertThrows(UploadTooLargeException.class, () -> socksService.processExcelStream(
+                new LimitedInputStream(new ByteArrayInputStream(new byte[1024]), 16)));
+
+        verify(socksMetrics).batchFailed("xlsx", true);
+    }
+}
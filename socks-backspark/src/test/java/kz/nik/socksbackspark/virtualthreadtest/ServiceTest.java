@@ -0,0 +1,33 @@
+package kz.nik.socksbackspark.virtualthreadtest;
+
+import kz.nik.socksbackspark.config.VirtualThreadConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceTest {
+
+    private final VirtualThreadConfig virtualThreadConfig = new VirtualThreadConfig();
+
+    @Test
+    void testExecutorRunsTasksOnVirtualThreadsOrFailsBeforeJava21() throws Exception {
+
+        if (Runtime.version().feature() < 21) {
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                    virtualThreadConfig::virtualThreadExecutor);
+            assertTrue(exception.getMessage().startsWith("socks.threads.virtual=true needs Java 21"));
+            return;
+        }
+
+        ExecutorService executor = virtualThreadConfig.virtualThreadExecutor();
+        try {
+            boolean virtual = executor.submit(() -> (Boolean) Thread.class.getMethod("isVirtual")
+                    .invoke(Thread.currentThread())).get();
+            assertTrue(virtual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package kz.nik.socksbackspark.writebehindtest;
+
+import kz.nik.socksbackspark.exceptions.InsufficientStockException;
+import kz.nik.socksbackspark.model.Socks;
+import kz.nik.socksbackspark.model.SocksKey;
+import kz.nik.socksbackspark.repository.SocksRepository;
+import kz.nik.socksbackspark.service.batch.SocksUpsertEngine;
+import kz.nik.socksbackspark.service.writebehind.StockDeltaBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ServiceTest {
+    @Mock
+    private SocksUpsertEngine upsertEngine;
+
+    @Mock
+    private SocksRepository socksRepository;
+
+    private StockDeltaBuffer stockDeltaBuffer;
+
+    private final SocksKey red = new SocksKey("Red", 80);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // the scheduled flush is pushed far out so that the tests decide when to flush
+        stockDeltaBuffer = new StockDeltaBuffer(upsertEngine, socksRepository, StockDeltaBuffer.Durability.BUFFERED,
+                3_600_000, 1_000_000, 1000);
+        when(socksRepository.findByColorAndCottonPercentage("Red", 80))
+                .thenReturn(List.of(new Socks(1L, "Red", 80, 10)));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        stockDeltaBuffer.close();
+    }
+
+    @Test
+    void testOutcomesAreValidatedAgainstBufferedBalance() {
+        when(upsertEngine.applyDelta(red, -6)).thenReturn(OptionalInt.of(4));
+
+        stockDeltaBuffer.outcome("Red", 80, 6);
+        InsufficientStockException exception = assertThrows(InsufficientStockException.class,
+                () -> stockDeltaBuffer.outcome("Red", 80, 5));
+        assertEquals("Not enough socks in stock", exception.getMessage());
+        verifyNoInteractions(upsertEngine);
+
+        stockDeltaBuffer.flush();
+
+        verify(upsertEngine, times(1)).applyDelta(red, -6);
+        assertEquals(0, stockDeltaBuffer.getPendingItems());
+    }
+
+    @Test
+    void testDeltasAreCombinedIntoOneWritePerDirection() {
+        when(upsertEngine.applyDelta(red, 6)).thenReturn(OptionalInt.of(16));
+        when(upsertEngine.applyDelta(red, -4)).thenReturn(OptionalInt.of(12));
+
+        stockDeltaBuffer.income("Red", 80, 5);
+        stockDeltaBuffer.outcome("Red", 80, 3);
+        stockDeltaBuffer.income("Red", 80, 1);
+        stockDeltaBuffer.outcome("Red", 80, 1);
+        stockDeltaBuffer.flush();
+
+        InOrder inOrder = inOrder(upsertEngine);
+        inOrder.verify(upsertEngine).applyDelta(red, 6);
+        inOrder.verify(upsertEngine).applyDelta(red, -4);
+        verifyNoMoreInteractions(upsertEngine);
+        verify(socksRepository, times(1)).findByColorAndCottonPercentage("Red", 80);
+    }
+
+    @Test
+    void testRejectedOutcomeKeepsIncomes() {
+        when(upsertEngine.applyDelta(red, 5)).thenReturn(OptionalInt.of(15));
+        when(upsertEngine.applyDelta(red, -12)).thenReturn(OptionalInt.empty());
+        when(socksRepository.findByColorAndCottonPercentage("Red", 80))
+                .thenReturn(List.of(new Socks(1L, "Red", 80, 10)))
+                .thenReturn(List.of(new Socks(1L, "Red", 80, 8)));
+
+        stockDeltaBuffer.income("Red", 80, 5);
+        stockDeltaBuffer.outcome("Red", 80, 12);
+        stockDeltaBuffer.flush();
+
+        verify(upsertEngine, times(1)).applyDelta(red, 5);
+        assertEquals(1, stockDeltaBuffer.getRejectedDeltas());
+        assertEquals(0, stockDeltaBuffer.getPendingItems());
+        // the balance was re-read after the rejection
+        assertThrows(InsufficientStockException.class, () -> stockDeltaBuffer.outcome("Red", 80, 9));
+    }
+
+    @Test
+    void testRejectedOutcomeIsReportedToFlushedCaller() throws Exception {
+        when(upsertEngine.applyDelta(red, -6)).thenReturn(OptionalInt.empty());
+
+        StockDeltaBuffer flushedBuffer = new StockDeltaBuffer(upsertEngine, socksRepository,
+                StockDeltaBuffer.Durability.FLUSHED, 10, 1_000_000, 5000);
+        try {
+            InsufficientStockException exception = assertThrows(InsufficientStockException.class,
+                    () -> flushedBuffer.outcome("Red", 80, 6));
+            assertEquals("Not enough socks in stock", exception.getMessage());
+        } finally {
+            flushedBuffer.close();
+        }
+    }
+
+    @Test
+    void testOutcomeForMissingItem() {
+        when(socksRepository.findByColorAndCottonPercentage("Blue", 60)).thenReturn(List.of());
+
+        InsufficientStockException exception = assertThrows(InsufficientStockException.class,
+                () -> stockDeltaBuffer.outcome("Blue", 60, 1));
+        assertEquals("No socks found with the given color and cotton percentage", exception.getMessage());
+    }
+
+    @Test
+    void testFailedFlushKeepsDelta() {
+        when(upsertEngine.applyDelta(red, 3))
+                .thenThrow(new RuntimeException("Database error"))
+                .thenReturn(OptionalInt.of(13));
+
+        stockDeltaBuffer.income("Red", 80, 3);
+        stockDeltaBuffer.flush();
+        assertEquals(1, stockDeltaBuffer.getPendingItems());
+
+        stockDeltaBuffer.flush();
+        assertEquals(0, stockDeltaBuffer.getPendingItems());
+        verify(upsertEngine, times(2)).applyDelta(red, 3);
+    }
+
+    @Test
+    void testCloseDrainsPendingDeltas() throws Exception {
+        when(upsertEngine.applyDelta(red, 7)).thenReturn(OptionalInt.of(17));
+
+        stockDeltaBuffer.income("Red", 80, 7);
+        stockDeltaBuffer.close();
+
+        verify(upsertEngine, times(1)).applyDelta(red, 7);
+        assertThrows(IllegalStateException.class, () -> stockDeltaBuffer.income("Red", 80, 1));
+    }
+}